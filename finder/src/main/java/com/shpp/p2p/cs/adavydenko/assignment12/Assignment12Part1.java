@@ -0,0 +1,446 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.*;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * This class takes user image, reads it and defines the number of silhouettes
+ * on the image. The background of the image and the color of the silhouettes
+ * shall be in contrast.
+ * <p>
+ * One can control program outputs by changing three parameters:
+ * --- COLORS_SIMILARITY_THRESHOLD
+ * The larger this value, the fewer pixels with a similar color to the background color
+ * will be considered as background color.
+ * --- MINIMUM_SILHOUETTE_SIZE
+ * If this parameter is set to zero, the program will define all kind of small objects
+ * as silhouettes. It is advised to keep this parameter at 30-50 pixels level to get
+ * correct results. But if one checks a big image (with one of the sides having 2 000
+ * or more pixels), one shall increase this parameter significantly.
+ * --- MINIMUM_SILHOUETTE_SIZE
+ * The value of this parameter defines which objects on the image will be deemed as
+ * non-silhouettes e.g. posterized pixels, artifacts and small insignificant objects
+ * (fuzzy objects etc).
+ * <p>
+ * I took part of ideas from external resources:
+ * - The BufferedImage concept
+ * https://docs.oracle.com/javase/7/docs/api/java/awt/image/BufferedImage.html
+ * - The File concept
+ * https://metanit.com/java/tutorial/6.11.php
+ * - The idea how to calculate pixel color difference
+ * https://stackoverflow.com/questions/15262258/how-could-i-compare-colors-in-java
+ * - The idea of using stack- and visited-arrays
+ * https://evileg.com/ru/post/494/
+ */
+public class Assignment12Part1 {
+
+    /**
+     * The value indicating that two colors are totally equal.
+     */
+    static final double COLORS_ARE_TOTALLY_EQUIVALENT = 510.0;
+
+    /**
+     * The proportion of similarity between the two colors.
+     * If a certain value is less than this value, the colors
+     * are considered different. If larger, the colors
+     * are considered equivalent.
+     */
+    static final double COLORS_SIMILARITY_THRESHOLD = 0.95;
+
+    /**
+     * The minimum number of pixels of a particular non-background
+     * object to be deemed as a silhouette.
+     */
+    static final int MINIMUM_SILHOUETTE_SIZE = 60;
+
+    /**
+     * Main method launching the finding silhouettes on the user image algorithm.
+     *
+     * @param args are command line arguments provided by user.
+     */
+    public static void main(String[] args) {
+        findSilhouettes(args);
+    }
+
+    /**
+     * Uploads user image, converts it to a pixel buffer, defines background color,
+     * iterates through all pixels and looks for silhouettes using dfs-algorithm.
+     * If the user provides the "--parallelism=N" argument after the image location,
+     * the silhouettes are searched on N threads at once. The "--engine=dfs|bfs|scanline"
+     * argument chooses the algorithm of the search on a single thread. The "--mode=streaming"
+     * argument makes the program decode and inspect the image band by band, and the
+     * "--mode=batch" one makes it inspect all images of a directory or a glob pattern.
+     * The "--mode=count" argument only counts the silhouettes without keeping them,
+     * and with "--stop-after=N" it stops as soon as N silhouettes are found.
+     * The "--mode=export" argument saves the decoded pixels to a raw pixel file
+     * ("--raw-file=PATH", by default the image path with ".silr" added), which
+     * can be given instead of the image afterwards to skip the decoding.
+     * The "--mode=sequence" argument inspects the frames of a directory or a glob pattern
+     * in the order of their names re-labeling only the parts that changed since the previous frame.
+     * The "--mode=pyramid" argument inspects the image, the directory or the glob pattern coarse
+     * to fine with blocks of "--pyramid-scale=N" pixels, and "--verify=true" compares the counts
+     * with the full resolution pass.
+     * The "--mode=sweep" argument prints the number of silhouettes for every combination
+     * of the "--thresholds=T1,T2,..." and "--min-sizes=N1,N2,..." lists.
+     * The "--mode=serve" argument keeps the program running and inspects the images sent to it:
+     * over HTTP on the loopback address if the first argument is the port number, or from
+     * the paths on the standard input if the first argument is "-".
+     * The "--label-image=PATH", "--overlay=PATH" and "--masks=PATH" arguments save the silhouettes
+     * themselves: the label map as a PNG image, the image with the silhouettes painted over it,
+     * and the runs of the pixels of each silhouette as JSON lines.
+     * The "--background=local" argument compares each pixel with the background of the tiles
+     * of "--background-tile=N" pixels around it, for the photos with a gradient or a vignette.
+     * The "--output=json" argument prints the results with the time of each stage as JSON,
+     * and the "--jmx=true" one publishes the totals of all images through JMX.
+     *
+     * @param args are command line arguments provided by user.
+     */
+    private static void findSilhouettes(String[] args) {
+        try {
+            SilhouetteDetector detector = new SilhouetteDetector(DetectorSettings.fromArgs(args));
+            String mode = DetectorSettings.getOption(args, "mode", "single");
+            boolean jsonOutput = DetectorSettings.getOption(args, "output", "text").equals("json");
+            DetectionStats stats = Boolean.parseBoolean(DetectorSettings.getOption(args, "jmx", "false"))
+                    ? DetectionStats.register() : null;
+
+            if (mode.equals("batch")) {
+                inspectImages(detector, args, jsonOutput, stats); // Inspects all images of the directory
+                return;
+            }
+            if (mode.equals("serve")) {
+                serve(detector, args, stats);        // Inspects the images sent to the program
+                return;
+            }
+            if (mode.equals("pyramid")) {
+                inspectPyramid(detector, args);      // Inspects the images coarse to fine
+                return;
+            }
+            if (mode.equals("sequence")) {
+                inspectFrames(detector, args);       // Inspects the frames one after another
+                return;
+            }
+            File file = new File(getFilePath(args)); // Gets image location
+            if (mode.equals("count")) {
+                countSilhouettes(detector, file);    // Only counts the silhouettes
+                return;
+            }
+            if (mode.equals("sweep")) {
+                sweepParameters(detector, file, args); // Counts silhouettes for many parameters
+                return;
+            }
+            if (mode.equals("export")) {
+                exportPixels(file, DetectorSettings.getOption(args, "raw-file", file + ".silr"));
+                return;
+            }
+            DetectionResult result;
+            PixelBuffer pixelBuffer = null;
+            if (mode.equals("streaming")) {
+                if (savesSegmentation(args)) {
+                    throw new IllegalArgumentException("--label-image, --overlay and --masks need the label map,"
+                            + " which --mode=streaming does not keep; run them without --mode");
+                }
+                result = detector.detectStreaming(file); // Inspects the image band by band
+            } else {
+                DetectorWorkspace workspace = detector.newWorkspace();
+                result = detector.detect(file, workspace); // Reads the image and finds silhouettes on it
+                pixelBuffer = workspace.pixelBuffer;
+            }
+            //displayBackgroundColor(result.getBgColor()); // Displays background color (for debugging purposes)
+            long reportStart = System.nanoTime();
+            if (jsonOutput) {
+                System.out.println(result.toJson()); // Displays the result and the metrics as JSON
+            } else {
+                countAndDisplayNumOfSilhouettes(result); // Counts and displays number of silhouettes
+            }
+            saveSegmentation(result, pixelBuffer, args, !jsonOutput); // Saves the silhouette pixels
+            result.getMetrics().addStageNanos(DetectionMetrics.Stage.REPORT, System.nanoTime() - reportStart);
+            if (stats != null) {
+                stats.add(result.getMetrics());
+            }
+        } catch (Exception evt) {
+            System.out.println(evt);                 // Display the error occurred if any
+        }
+    }
+
+    /**
+     * Defines the user image location.
+     *
+     * @param args are the command line arguments provided by user.
+     * @return user image location as a string.
+     */
+    private static String getFilePath(String[] args) {
+        String filePath;
+
+        if (args.length == 0) {
+            filePath = "test.jpg";
+        } else {
+            filePath = args[0];
+        }
+        return filePath;
+    }
+
+    /**
+     * Inspects all images of the directory or the glob pattern provided by user
+     * and prints one line per image. The "--workers=N" argument sets the number
+     * of images inspected at once, by default it is the number of processors.
+     *
+     * @param detector   is the detector to use.
+     * @param args       are the command line arguments provided by user.
+     * @param jsonOutput is whether the result lines are JSON objects.
+     * @param stats      are the statistics published through JMX or null.
+     * @throws IOException          if the directory can not be read.
+     * @throws InterruptedException if the program was interrupted while waiting.
+     */
+    private static void inspectImages(SilhouetteDetector detector, String[] args, boolean jsonOutput,
+                                      DetectionStats stats) throws IOException, InterruptedException {
+        int workers = Integer.parseInt(DetectorSettings.getOption(args, "workers",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        BatchRunner runner = new BatchRunner(detector, workers, System.out, jsonOutput, stats);
+        runner.run(BatchRunner.findImages(getFilePath(args)));
+    }
+
+    /**
+     * Keeps one detector warm and inspects the images sent to the program. If the first
+     * argument is "-", the image paths are read from the standard input line by line,
+     * otherwise the first argument is the port of the HTTP server. The "--max-in-flight=N"
+     * argument sets the number of images inspected at once, by default it is the number
+     * of processors, and "--warmup=N" sets the number of inspections of a synthetic image
+     * done before the first request.
+     *
+     * @param detector is the detector to use.
+     * @param args     are the command line arguments provided by user.
+     * @param stats    are the statistics published through JMX or null.
+     * @throws IOException          if the port can not be listened on or the input can not be read.
+     * @throws InterruptedException if the program was interrupted while waiting.
+     */
+    private static void serve(SilhouetteDetector detector, String[] args, DetectionStats stats)
+            throws IOException, InterruptedException {
+        int maxInFlight = Integer.parseInt(DetectorSettings.getOption(args, "max-in-flight",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        DetectionServer server = new DetectionServer(detector, maxInFlight, stats);
+        server.warmUp(Integer.parseInt(DetectorSettings.getOption(args, "warmup", "10")));
+
+        String location = getFilePath(args);
+        if (location.equals("-")) {
+            server.serveLines(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                    System.out);
+            server.shutdown();
+            return;
+        }
+        HttpServer httpServer = server.startHttp(Integer.parseInt(location));
+        InetSocketAddress address = httpServer.getAddress();
+        System.out.println("Listening on http://" + address.getHostString() + ":" + address.getPort()
+                + DetectionServer.CONTEXT_PATH);
+    }
+
+    /**
+     * Says whether the user asked for any of the files of the silhouettes.
+     *
+     * @param args are the command line arguments provided by user.
+     * @return true if there is a "--label-image", "--overlay" or "--masks" argument.
+     */
+    private static boolean savesSegmentation(String[] args) {
+        return DetectorSettings.getOption(args, "label-image", null) != null
+                || DetectorSettings.getOption(args, "overlay", null) != null
+                || DetectorSettings.getOption(args, "masks", null) != null;
+    }
+
+    /**
+     * Saves the files of the silhouettes the user asked for with the "--label-image",
+     * "--overlay" and "--masks" arguments.
+     *
+     * @param result      is the result of the silhouettes search.
+     * @param pixelBuffer is the buffer with the image pixels the result was found on.
+     * @param args        are the command line arguments provided by user.
+     * @param printPaths  is whether to print where each file is saved.
+     * @throws IOException if a file can not be written.
+     */
+    private static void saveSegmentation(DetectionResult result, PixelBuffer pixelBuffer, String[] args,
+                                         boolean printPaths) throws IOException {
+        String labelImage = DetectorSettings.getOption(args, "label-image", null);
+        String overlay = DetectorSettings.getOption(args, "overlay", null);
+        String masks = DetectorSettings.getOption(args, "masks", null);
+        if (labelImage == null && overlay == null && masks == null) {
+            return;
+        }
+
+        SegmentationWriter writer = new SegmentationWriter(result);
+        if (labelImage != null) {
+            writer.writeLabelImage(Paths.get(labelImage));
+            if (printPaths) {
+                System.out.println("The label image is saved to " + labelImage);
+            }
+        }
+        if (overlay != null) {
+            writer.writeOverlay(pixelBuffer, Paths.get(overlay));
+            if (printPaths) {
+                System.out.println("The overlay is saved to " + overlay);
+            }
+        }
+        if (masks != null) {
+            writer.writeMasks(Paths.get(masks));
+            if (printPaths) {
+                System.out.println("The silhouette masks are saved to " + masks);
+            }
+        }
+    }
+
+    /**
+     * Inspects the image, or all images of the directory or the glob pattern provided by user,
+     * coarse to fine and prints one line per image: its path, the number of silhouettes and the
+     * share of the pixels compared with the background color, separated by tabs. With the
+     * "--verify=true" argument each image is inspected at full resolution too, the line gets
+     * the full resolution count and whether the counts match, and the number of matching
+     * images is printed at the end. The images that can not be read get an error line.
+     *
+     * @param detector is the detector to use.
+     * @param args     are the command line arguments provided by user.
+     * @throws IOException if the directory can not be read.
+     */
+    private static void inspectPyramid(SilhouetteDetector detector, String[] args) throws IOException {
+        boolean verify = Boolean.parseBoolean(DetectorSettings.getOption(args, "verify", "false"));
+        int images = 0;
+        int matches = 0;
+        for (Path image : BatchRunner.findImages(getFilePath(args))) {
+            images++;
+            DetectionResult result;
+            try {
+                result = detector.detectPyramid(image.toFile());
+            } catch (IOException e) {
+                System.out.println(image + "\tERROR " + e);
+                continue;
+            }
+            LabelMap labelMap = result.getLabelMap();
+            double share = 100.0 * result.getMetrics().getPixelsClassified() / labelMap.getWidth()
+                    / labelMap.getHeight();
+            String line = image + "\t" + result.getNumOfSilhouettes() + "\t" + String.format("%.1f%%", share);
+            if (verify) {
+                int fullCount = detector.detect(image.toFile()).getNumOfSilhouettes();
+                boolean match = fullCount == result.getNumOfSilhouettes();
+                line += "\t" + fullCount + "\t" + (match ? "OK" : "DIFFERENT");
+                matches += match ? 1 : 0;
+            }
+            System.out.println(line);
+        }
+        if (verify) {
+            System.out.println("Matched the full resolution counts on " + matches + " of " + images + " images");
+        }
+    }
+
+    /**
+     * Inspects the frames of the directory or the glob pattern provided by user one after
+     * another and prints one line per frame: its path, the number of silhouettes and
+     * the number of changed tiles out of all tiles, separated by tabs.
+     *
+     * @param detector is the detector to use.
+     * @param args     are the command line arguments provided by user.
+     * @throws IOException if a frame can not be read.
+     */
+    private static void inspectFrames(SilhouetteDetector detector, String[] args) throws IOException {
+        SequenceDetector sequence = detector.newSequence();
+        // The sequence keeps its own copy of the pixels, so every frame is read into the same buffer
+        PixelBuffer pixelBuffer = new PixelBuffer(0, 0);
+        for (Path frame : BatchRunner.findImages(getFilePath(args))) {
+            SilhouetteDetector.readPixels(frame.toFile(), new DetectionMetrics(), pixelBuffer);
+            DetectionResult result = sequence.nextFrame(pixelBuffer);
+            System.out.println(frame + "\t" + result.getNumOfSilhouettes() + "\t" + sequence.getChangedTiles()
+                    + "/" + SequenceDetector.countTiles(pixelBuffer.width, pixelBuffer.height));
+        }
+    }
+
+    /**
+     * Counts the silhouettes on the image without keeping them and displays the total.
+     * If the counting stopped after the given number of silhouettes, there may be more.
+     *
+     * @param detector is the detector to use.
+     * @param file     is the image file.
+     * @throws IOException if the image can not be read.
+     */
+    private static void countSilhouettes(SilhouetteDetector detector, File file) throws IOException {
+        int numOfSilhouettes = detector.count(file);
+        if (detector.stopsAfter(numOfSilhouettes)) {
+            System.out.println("Total number of silhouettes: at least " + numOfSilhouettes);
+        } else {
+            System.out.println("Total number of silhouettes: " + numOfSilhouettes);
+        }
+    }
+
+    /**
+     * Counts the silhouettes for every combination of the thresholds and the minimum sizes
+     * the user provided and prints a table with one line per combination. By default
+     * the lists contain only COLORS_SIMILARITY_THRESHOLD and MINIMUM_SILHOUETTE_SIZE.
+     *
+     * @param detector is the detector to use.
+     * @param file     is the image file.
+     * @param args     are the command line arguments provided by user.
+     * @throws IOException if the image can not be read.
+     */
+    private static void sweepParameters(SilhouetteDetector detector, File file, String[] args) throws IOException {
+        double[] thresholds = Arrays.stream(DetectorSettings.getOption(args, "thresholds",
+                String.valueOf(COLORS_SIMILARITY_THRESHOLD)).split(",")).mapToDouble(Double::parseDouble).toArray();
+        int[] minimumSizes = Arrays.stream(DetectorSettings.getOption(args, "min-sizes",
+                String.valueOf(MINIMUM_SILHOUETTE_SIZE)).split(",")).mapToInt(Integer::parseInt).toArray();
+
+        int[][] counts = detector.sweep(file, thresholds, minimumSizes);
+        System.out.println("threshold\tmin-size\tsilhouettes");
+        for (int i = 0; i < thresholds.length; i++) {
+            for (int j = 0; j < minimumSizes.length; j++) {
+                System.out.println(thresholds[i] + "\t" + minimumSizes[j] + "\t" + counts[i][j]);
+            }
+        }
+    }
+
+    /**
+     * Decodes the image and saves its pixels to the raw pixel file.
+     *
+     * @param file    is the image file.
+     * @param rawFile is the path of the raw pixel file.
+     * @throws IOException if the image can not be read or the raw file can not be written.
+     */
+    private static void exportPixels(File file, String rawFile) throws IOException {
+        RawPixelFile.write(PixelBuffer.fromImage(SilhouetteDetector.readImage(file)), Paths.get(rawFile));
+        System.out.println("The pixels are saved to " + rawFile);
+    }
+
+    /**
+     * Prints to console the red, green, blue and alpha channels
+     * values of the color the program defined as the background color.
+     *
+     * @param bgColor is the background color.
+     */
+    private static void displayBackgroundColor(Color bgColor) {
+        System.out.println("The background color is: "
+                + "\n" + "-- red: " + bgColor.getRed()
+                + "\n" + "-- green: " + bgColor.getGreen()
+                + "\n" + "-- blue: " + bgColor.getBlue()
+                + "\n" + "-- alpha: " + bgColor.getAlpha());
+    }
+
+    /**
+     * Takes all detected silhouettes and displays only those
+     * with more than {minimumSilhouetteSize} pixels.
+     *
+     * @param result is the result of the silhouettes search.
+     */
+    private static void countAndDisplayNumOfSilhouettes(DetectionResult result) {
+        // Number of silhouettes detected on the image
+        int numOfSilhouettes = 0;
+
+        // Only the silhouettes with more than {minimumSilhouetteSize} pixels are taken
+        for (Silhouette silhouette : result.getSilhouettes()) {
+            numOfSilhouettes++;
+            System.out.println("Silhouette №" + numOfSilhouettes + " - " + silhouette.numOfPixels + " pixels");
+        }
+        System.out.println("Total number of silhouettes: " + numOfSilhouettes);
+    }
+}
@@ -0,0 +1,161 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+/**
+ * Decides which pixels of the image have background color and which
+ * belong to silhouettes.
+ * <p>
+ * The program deems two colors similar if their color equivalence coefficient
+ * (COLORS_ARE_TOTALLY_EQUIVALENT - distance) / COLORS_ARE_TOTALLY_EQUIVALENT
+ * is larger than the similarity threshold, where the distance is the euclidean
+ * distance between the RGBA channels of the colors. The coefficient only decreases
+ * when the distance grows, so the classifier finds once the smallest squared distance
+ * at which a color stops being similar to the background and afterwards compares
+ * integer squared distances only. No square roots or divisions are calculated per pixel.
+ */
+public class BackgroundClassifier {
+
+    /**
+     * The largest possible squared distance between two RGBA colors.
+     */
+    static final int MAX_SQUARED_DISTANCE = 4 * 255 * 255;
+
+    /**
+     * RGBA-components of the background color.
+     */
+    private final int bgRed;
+    private final int bgGreen;
+    private final int bgBlue;
+    private final int bgAlpha;
+
+    /**
+     * The smallest squared distance to the background color at which
+     * the color of a pixel is deemed a silhouette color.
+     */
+    private final int minSquaredDistance;
+
+    /**
+     * Creates a classifier for the background color.
+     *
+     * @param bgArgb              is the ARGB background color.
+     * @param similarityThreshold is the proportion of similarity at which colors are deemed equivalent.
+     */
+    public BackgroundClassifier(int bgArgb, double similarityThreshold) {
+        this.bgRed = (bgArgb >> 16) & 0xFF;
+        this.bgGreen = (bgArgb >> 8) & 0xFF;
+        this.bgBlue = bgArgb & 0xFF;
+        this.bgAlpha = bgArgb >>> 24;
+        this.minSquaredDistance = findMinSquaredDistance(similarityThreshold);
+    }
+
+    /**
+     * Finds the smallest squared distance between two colors at which the colors are not similar
+     * any more. The search runs the original floating point formula, so the integer comparison
+     * gives exactly the same answers for all colors.
+     *
+     * @param similarityThreshold is the proportion of similarity at which colors are deemed equivalent.
+     * @return the smallest squared distance of non-similar colors or MAX_SQUARED_DISTANCE + 1
+     * if no pair of colors is far enough.
+     */
+    static int findMinSquaredDistance(double similarityThreshold) {
+        int low = 0;
+        int high = MAX_SQUARED_DISTANCE + 1;
+
+        // Binary search of the first squared distance the formula deems not similar
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (isNotSimilar(middle, similarityThreshold)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Calculates the color equivalence coefficient for the colors at the squared distance
+     * and compares it with the threshold.
+     *
+     * @param squaredDistance     is the sum of squared differences of the four channels.
+     * @param similarityThreshold is the proportion of similarity at which colors are deemed equivalent.
+     * @return true if the colors are not similar.
+     */
+    private static boolean isNotSimilar(int squaredDistance, double similarityThreshold) {
+        double colorDifference = Math.pow(squaredDistance, 0.5);
+        double colorEquivalenceCoefficient = (Assignment12Part1.COLORS_ARE_TOTALLY_EQUIVALENT - colorDifference)
+                / Assignment12Part1.COLORS_ARE_TOTALLY_EQUIVALENT;
+        return !(colorEquivalenceCoefficient > similarityThreshold);
+    }
+
+    /**
+     * Calculates the squared distance between the color and the background color.
+     *
+     * @param argb is the ARGB color.
+     * @return the sum of squared differences of the four channels.
+     */
+    public int squaredDistance(int argb) {
+        int red = ((argb >> 16) & 0xFF) - bgRed;
+        int green = ((argb >> 8) & 0xFF) - bgGreen;
+        int blue = (argb & 0xFF) - bgBlue;
+        int alpha = (argb >>> 24) - bgAlpha;
+        return red * red + green * green + blue * blue + alpha * alpha;
+    }
+
+    /**
+     * Says whether the color is not similar to the background color.
+     *
+     * @param argb is the ARGB color.
+     * @return true if the color is a silhouette color.
+     */
+    public boolean isNotSimilarToBackground(int argb) {
+        return squaredDistance(argb) >= minSquaredDistance;
+    }
+
+    /**
+     * Classifies every image pixel of the buffer exactly once and collects
+     * the silhouette pixels into a bitmask. The loop has no branches in its body,
+     * the bit of a pixel is the sign bit of (minSquaredDistance - 1 - distance).
+     *
+     * @param buffer is the buffer with the image pixels.
+     * @return the mask of the pixels with non-background colors.
+     */
+    public ForegroundMask classify(PixelBuffer buffer) {
+        ForegroundMask mask = new ForegroundMask(buffer.width, buffer.height);
+        classify(buffer, mask);
+        return mask;
+    }
+
+    /**
+     * Classifies every image pixel of the buffer into the existing mask,
+     * which is reset to the size of the buffer first. The mask keeps the pixel colors
+     * of the buffer, so the silhouettes can sum them while they are labeled.
+     *
+     * @param buffer is the buffer with the image pixels.
+     * @param mask   is the mask to save the pixels with non-background colors to.
+     */
+    public void classify(PixelBuffer buffer, ForegroundMask mask) {
+        mask.reset(buffer.width, buffer.height);
+        mask.colors = buffer.pixels;
+        for (int y = 1; y <= buffer.height; y++) {
+            int rowStart = y * buffer.rowLength + 1;
+            classifyRow(buffer.pixels, mask.bits, rowStart, rowStart + buffer.width);
+        }
+    }
+
+    /**
+     * Classifies the pixels of the range and sets the bits of the silhouette pixels.
+     * The bits of the background pixels are left as they are.
+     *
+     * @param pixels are the ARGB colors of the pixel buffer.
+     * @param bits   are the bits of the mask of the same layout.
+     * @param from   is the index of the first pixel of the range.
+     * @param to     is the index of the first pixel after the range.
+     */
+    void classifyRow(int[] pixels, long[] bits, int from, int to) {
+        int limit = minSquaredDistance - 1;
+        for (int pixel = from; pixel < to; pixel++) {
+            long foreground = (limit - squaredDistance(pixels[pixel])) >>> 31;
+            bits[pixel >>> 6] |= foreground << pixel;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Defines which color shall be deemed as background color. The estimator counts
+ * the colors of the pixels on the image edges in the color histogram, then the
+ * strategy picks the background color: the most frequent one (the mode) or the
+ * median of each channel, which is less sensitive to JPEG noise on the edges.
+ * <p>
+ * The pixels can be added either from the whole image, then its three-pixel-thick
+ * edges are inspected, or region by region, so the whole image does not need to be
+ * in memory at once.
+ */
+public class BackgroundEstimator {
+
+    /**
+     * The ways to pick the background color from the colors of the image edges.
+     */
+    public enum Strategy {
+        /**
+         * The most frequent color of the edges.
+         */
+        MODE,
+        /**
+         * The median of each channel of the edge pixels.
+         */
+        MEDIAN
+    }
+
+    /**
+     * The number of pixel rows / columns of each image edge inspected.
+     */
+    static final int EDGE_THICKNESS = 3;
+
+    /**
+     * All colors which can be found on the picture
+     * edges and the number of pixels with these colors.
+     */
+    private final ColorHistogram numOfColors;
+
+    /**
+     * The way to pick the background color.
+     */
+    private final Strategy strategy;
+
+    /**
+     * Creates the estimator deeming the most frequent color of the edges the background color.
+     */
+    public BackgroundEstimator() {
+        this(Strategy.MODE);
+    }
+
+    /**
+     * Creates the estimator.
+     *
+     * @param strategy is the way to pick the background color.
+     */
+    public BackgroundEstimator(Strategy strategy) {
+        this(strategy, new ColorHistogram());
+    }
+
+    /**
+     * Creates the estimator counting the colors in the existing histogram,
+     * which is cleared first. This way the histogram arrays are allocated
+     * once for many images.
+     *
+     * @param strategy  is the way to pick the background color.
+     * @param histogram is the histogram to count the colors in.
+     */
+    BackgroundEstimator(Strategy strategy, ColorHistogram histogram) {
+        this.strategy = strategy;
+        this.numOfColors = histogram;
+        histogram.clear();
+    }
+
+    /**
+     * Inspects three top, bottom, left and right pixel rows of the picture.
+     * The corner pixels belong to two edges, so they are counted twice.
+     *
+     * @param image is the picture provided by user.
+     */
+    public void inspectImageEdges(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int edgeRows = Math.min(EDGE_THICKNESS, height);
+        int edgeColumns = Math.min(EDGE_THICKNESS, width);
+
+        inspectRectangle(image, 0, 0, width, edgeRows);                       // Top edge
+        inspectRectangle(image, 0, height - edgeRows, width, edgeRows);       // Bottom edge
+        inspectRectangle(image, 0, 0, edgeColumns, height);                   // Left edge
+        inspectRectangle(image, width - edgeColumns, 0, edgeColumns, height); // Right edge
+    }
+
+    /**
+     * Inspects three top, bottom, left and right pixel rows of the image kept in the
+     * pixel buffer. The pixels are counted in the same order as inspectImageEdges
+     * counts them, so the background color is the same.
+     *
+     * @param buffer is the buffer with the image pixels.
+     */
+    public void inspectBufferEdges(PixelBuffer buffer) {
+        int edgeRows = Math.min(EDGE_THICKNESS, buffer.height);
+        int edgeColumns = Math.min(EDGE_THICKNESS, buffer.width);
+
+        inspectRectangle(buffer, 0, 0, buffer.width, edgeRows);                              // Top edge
+        inspectRectangle(buffer, 0, buffer.height - edgeRows, buffer.width, edgeRows);       // Bottom edge
+        inspectRectangle(buffer, 0, 0, edgeColumns, buffer.height);                          // Left edge
+        inspectRectangle(buffer, buffer.width - edgeColumns, 0, edgeColumns, buffer.height); // Right edge
+    }
+
+    /**
+     * Counts the colors of all pixels of the region. The regions of the four
+     * image edges shall be inspected this way in the order top, bottom, left, right
+     * to get the same result as inspectImageEdges gives.
+     *
+     * @param region is a part of the picture provided by user.
+     */
+    public void inspectRegion(BufferedImage region) {
+        inspectRectangle(region, 0, 0, region.getWidth(), region.getHeight());
+    }
+
+    /**
+     * Counts the colors of the pixels of the range of the array. The pixels of the four
+     * image edges shall be given in the order top, bottom, left, right, each edge row
+     * by row, to get the same result as inspectImageEdges gives.
+     *
+     * @param pixels are the ARGB colors.
+     * @param from   is the index of the first pixel.
+     * @param to     is the index after the last pixel.
+     */
+    void inspectPixels(int[] pixels, int from, int to) {
+        numOfColors.addAll(pixels, from, to);
+    }
+
+    /**
+     * Counts the colors of the pixels of the rectangle reading them row by row in bulk.
+     *
+     * @param image  is the picture provided by user.
+     * @param x      is the x-coordinate of the left top pixel of the rectangle.
+     * @param y      is the y-coordinate of the left top pixel of the rectangle.
+     * @param width  is the width of the rectangle.
+     * @param height is the height of the rectangle.
+     */
+    private void inspectRectangle(BufferedImage image, int x, int y, int width, int height) {
+        int[] row = new int[width];
+        for (int i = y; i < y + height; i++) {
+            image.getRGB(x, i, width, 1, row, 0, width);
+            numOfColors.addAll(row, 0, width);
+        }
+    }
+
+    /**
+     * Counts the colors of the pixels of the rectangle of the buffer row by row.
+     *
+     * @param buffer is the buffer with the image pixels.
+     * @param x      is the x-coordinate of the left top pixel of the rectangle.
+     * @param y      is the y-coordinate of the left top pixel of the rectangle.
+     * @param width  is the width of the rectangle.
+     * @param height is the height of the rectangle.
+     */
+    private void inspectRectangle(PixelBuffer buffer, int x, int y, int width, int height) {
+        for (int i = y; i < y + height; i++) {
+            int rowStart = (i + 1) * buffer.rowLength + x + 1;
+            numOfColors.addAll(buffer.pixels, rowStart, rowStart + width);
+        }
+    }
+
+    /**
+     * Picks the background color from the colors of the inspected pixels.
+     * If several colors are the most frequent ones, the one seen first wins.
+     *
+     * @return the color that is deemed to be a background color.
+     */
+    public Color getBackgroundColor() {
+        int argb = strategy == Strategy.MEDIAN ? numOfColors.getMedian() : numOfColors.getMode();
+        return new Color(argb, true);
+    }
+}
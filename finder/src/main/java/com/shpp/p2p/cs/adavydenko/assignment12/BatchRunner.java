@@ -0,0 +1,325 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Finds silhouettes on many images at once.
+ * <p>
+ * Each image goes through the pipeline: decode, then classify and label, then report.
+ * The images are decoded on the I/O threads (virtual threads if the Java version has them),
+ * classified and labeled on a pool of as many threads as there are workers, and the
+ * result line of each image is printed as soon as it is ready. Only a limited number of
+ * images are in the pipeline at the same time, so the decoded images never fill the memory.
+ * Each image is decoded into a workspace taken from the pool and the workspace is given back
+ * as soon as the image is labeled, so the buffers are allocated once per image in flight
+ * rather than once per image.
+ * <p>
+ * The result lines are either tab-separated text or JSON objects with the metrics of each
+ * image. The metrics of all images can also be summed up in the statistics published through JMX.
+ */
+public class BatchRunner {
+
+    /**
+     * The number of images per worker that can be decoded and waiting for labeling.
+     */
+    private static final int IMAGES_IN_FLIGHT_PER_WORKER = 2;
+
+    /**
+     * The detector used for every image.
+     */
+    private final SilhouetteDetector detector;
+
+    /**
+     * The number of threads classifying and labeling the images.
+     */
+    private final int workers;
+
+    /**
+     * Where the result lines are printed.
+     */
+    private final PrintStream out;
+
+    /**
+     * Whether the result lines are JSON objects instead of tab-separated text.
+     */
+    private final boolean jsonOutput;
+
+    /**
+     * The statistics the metrics of every image are added to, or null if there are none.
+     */
+    private final DetectionStats stats;
+
+    /**
+     * The workspaces the images are decoded into and labeled with.
+     */
+    private final WorkspacePool workspaces;
+
+    /**
+     * Creates the runner printing the result lines as tab-separated text.
+     *
+     * @param detector is the detector used for every image.
+     * @param workers  is the number of threads classifying and labeling the images.
+     * @param out      is where the result lines are printed.
+     */
+    public BatchRunner(SilhouetteDetector detector, int workers, PrintStream out) {
+        this(detector, workers, out, false, null);
+    }
+
+    /**
+     * Creates the runner.
+     *
+     * @param detector   is the detector used for every image.
+     * @param workers    is the number of threads classifying and labeling the images.
+     * @param out        is where the result lines are printed.
+     * @param jsonOutput is whether the result lines are JSON objects.
+     * @param stats      are the statistics to add the metrics of every image to, or null.
+     */
+    public BatchRunner(SilhouetteDetector detector, int workers, PrintStream out, boolean jsonOutput,
+                       DetectionStats stats) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("The number of workers shall be positive: " + workers);
+        }
+        this.detector = detector;
+        this.workers = workers;
+        this.out = out;
+        this.jsonOutput = jsonOutput;
+        this.stats = stats;
+        this.workspaces = new WorkspacePool(detector);
+    }
+
+    /**
+     * Finds the images to inspect. If the location is a directory, all files in it are taken,
+     * otherwise the location is a glob pattern like "photos/*.jpg" or "photos/**.png".
+     *
+     * @param location is a directory or a glob pattern.
+     * @return the image files sorted by their paths.
+     * @throws IOException if the directory can not be read.
+     */
+    public static List<Path> findImages(String location) throws IOException {
+        Path directory = Paths.get(location);
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+        }
+
+        // The directory to search in is the part of the pattern before the first wildcard
+        int wildcard = indexOfWildcard(location);
+        int separator = Math.max(location.lastIndexOf('/', wildcard), location.lastIndexOf('\\', wildcard));
+        Path root = Paths.get(separator < 0 ? "." : location.substring(0, separator + 1));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:"
+                + (separator < 0 ? location : location.substring(separator + 1)));
+
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> matcher.matches(root.relativize(file)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Finds the first character of the glob pattern having a special meaning.
+     *
+     * @param pattern is the glob pattern.
+     * @return the index of the character or the pattern length if there is none.
+     */
+    private static int indexOfWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if ("*?[{".indexOf(pattern.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return pattern.length();
+    }
+
+    /**
+     * Inspects all images and prints one line per image: its path and the number of
+     * silhouettes on it separated by a tab, or its path and the error.
+     *
+     * @param images are the image files.
+     * @return the number of images that could not be inspected.
+     * @throws InterruptedException if the thread was interrupted while waiting.
+     */
+    public int run(List<Path> images) throws InterruptedException {
+        ExecutorService decoders = newIoExecutor(
+                () -> Executors.newFixedThreadPool(workers * IMAGES_IN_FLIGHT_PER_WORKER));
+        ExecutorService labelers = Executors.newFixedThreadPool(workers);
+        int maxInFlight = workers * IMAGES_IN_FLIGHT_PER_WORKER;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicInteger failures = new AtomicInteger();
+
+        try {
+            for (Path image : images) {
+                inFlight.acquire(); // Waits until one of the images leaves the pipeline
+                CompletableFuture
+                        .supplyAsync(() -> decode(image), decoders)
+                        .thenApplyAsync(this::detect, labelers)
+                        .whenComplete((result, error) -> {
+                            try {
+                                report(image, result, error, failures);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+            }
+            inFlight.acquire(maxInFlight); // Waits until all images leave the pipeline
+        } finally {
+            decoders.shutdown();
+            labelers.shutdown();
+        }
+        return failures.get();
+    }
+
+    /**
+     * Decodes the image file and copies its pixels to the pixel buffer of a workspace from the pool.
+     * If the image can not be read, the workspace is given back right away.
+     *
+     * @param image is the image file or the raw pixel file.
+     * @return the decoded image and the metrics with the decoding time.
+     */
+    private DecodedImage decode(Path image) {
+        DetectorWorkspace workspace = workspaces.acquire();
+        try {
+            DetectionMetrics metrics = new DetectionMetrics();
+            SilhouetteDetector.readPixels(image.toFile(), metrics, workspace.pixelBuffer);
+            return new DecodedImage(workspace, metrics);
+        } catch (IOException e) {
+            workspaces.release(workspace);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            workspaces.release(workspace);
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the silhouettes on the decoded image and gives its workspace back to the pool.
+     * The report only needs the silhouette sizes, not the label map of the workspace.
+     *
+     * @param image is the decoded image.
+     * @return the silhouettes found.
+     */
+    private DetectionResult detect(DecodedImage image) {
+        try {
+            return detector.detect(image.workspace.pixelBuffer, image.metrics, image.workspace);
+        } finally {
+            workspaces.release(image.workspace);
+        }
+    }
+
+    /**
+     * Prints the result line of the image.
+     *
+     * @param image    is the image file.
+     * @param result   is the result of the detection or null if it failed.
+     * @param error    is the error of the detection or null if it succeeded.
+     * @param failures is the number of failed images.
+     */
+    private void report(Path image, DetectionResult result, Throwable error, AtomicInteger failures) {
+        long start = System.nanoTime();
+        String line;
+        if (error == null) {
+            line = jsonOutput
+                    ? "{\"path\":" + quote(image.toString()) + "," + result.toJson().substring(1)
+                    : image + "\t" + result.getNumOfSilhouettes();
+        } else {
+            failures.incrementAndGet();
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            line = jsonOutput
+                    ? "{\"path\":" + quote(image.toString()) + ",\"error\":" + quote(cause.toString()) + "}"
+                    : image + "\tERROR " + cause;
+        }
+        synchronized (out) {
+            out.println(line);
+        }
+
+        // The report time can not be a part of the line already printed, only of the statistics
+        if (stats != null) {
+            if (error == null) {
+                result.getMetrics().addStageNanos(DetectionMetrics.Stage.REPORT, System.nanoTime() - start);
+                stats.add(result.getMetrics());
+            } else {
+                stats.addFailure();
+            }
+        }
+    }
+
+    /**
+     * Writes the text as a JSON string escaping the quotes, the backslashes and the control characters.
+     *
+     * @param text is the text.
+     * @return the JSON string with the quotes around it.
+     */
+    static String quote(String text) {
+        StringBuilder json = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * Creates the executor for the tasks that mostly wait for the disk or the network,
+     * like decoding the images. On Java 21 and later every task gets its own virtual
+     * thread. On the older versions the fallback executor is created instead.
+     *
+     * @param fallback creates the executor used if there are no virtual threads.
+     * @return the executor.
+     */
+    static ExecutorService newIoExecutor(Supplier<ExecutorService> fallback) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return fallback.get();
+        }
+    }
+
+    /**
+     * The decoded image waiting for labeling together with the time its decoding took.
+     */
+    private static class DecodedImage {
+
+        /**
+         * The workspace with the image pixels in its pixel buffer.
+         */
+        private final DetectorWorkspace workspace;
+
+        /**
+         * The metrics with the decoding time.
+         */
+        private final DetectionMetrics metrics;
+
+        /**
+         * @param workspace is the workspace with the image pixels.
+         * @param metrics   are the metrics with the decoding time.
+         */
+        private DecodedImage(DetectorWorkspace workspace, DetectionMetrics metrics) {
+            this.workspace = workspace;
+            this.metrics = metrics;
+        }
+    }
+}
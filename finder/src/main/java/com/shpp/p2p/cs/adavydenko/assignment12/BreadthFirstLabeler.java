@@ -0,0 +1,38 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+/**
+ * Finds silhouettes with the breadth-first search (BFS) algorithm.
+ * The search is the same as the depth-first one except that the pixels are taken
+ * from the work queue in the order they were found, so the silhouette grows
+ * from its first pixel in all directions at once. On compact silhouettes this keeps
+ * the queue shorter and the inspected pixels closer to each other in memory.
+ */
+public class BreadthFirstLabeler extends DepthFirstLabeler {
+
+    /**
+     * Creates the labeler connecting the pixels touching by a side.
+     */
+    public BreadthFirstLabeler() {
+        super();
+    }
+
+    /**
+     * Creates the labeler.
+     *
+     * @param connectivity is the number of neighbors a pixel is connected to, 4 or 8.
+     */
+    public BreadthFirstLabeler(int connectivity) {
+        super(connectivity);
+    }
+
+    /**
+     * Takes the pixel that was found first among the ones waiting for inspection.
+     *
+     * @param queue is the queue of the pixels waiting for inspection.
+     * @return the index of the pixel.
+     */
+    @Override
+    protected int takeNextPixel(PixelQueue queue) {
+        return queue.poll();
+    }
+}
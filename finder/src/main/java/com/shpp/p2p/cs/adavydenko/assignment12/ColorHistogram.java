@@ -0,0 +1,200 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.Arrays;
+
+/**
+ * Counts the pixels of each ARGB color without creating a Color object
+ * or boxing an Integer per pixel.
+ * <p>
+ * The colors and their counts are kept in the order the colors were seen first.
+ * The hash table only keeps the position of each color in these arrays and is
+ * searched with linear probing, so adding a pixel is a few array reads.
+ */
+public class ColorHistogram {
+
+    /**
+     * The number of colors the histogram can hold before it grows for the first time.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The cell of the hash table with no color in it.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * The colors in the order they were seen first.
+     */
+    private int[] colors = new int[INITIAL_CAPACITY];
+
+    /**
+     * The number of pixels of each color.
+     */
+    private int[] counts = new int[INITIAL_CAPACITY];
+
+    /**
+     * The number of different colors.
+     */
+    private int size = 0;
+
+    /**
+     * The position of each color in the colors array, at the cell its hash points to
+     * or at one of the cells after it. The table is never more than half full.
+     */
+    private int[] table = newTable(INITIAL_CAPACITY * 2);
+
+    /**
+     * Counts one more pixel of the color.
+     *
+     * @param argb is the color of the pixel.
+     */
+    public void add(int argb) {
+        int mask = table.length - 1;
+        int cell = hash(argb) & mask;
+
+        // Looks for the color until an empty cell is met
+        while (table[cell] != EMPTY) {
+            int position = table[cell];
+            if (colors[position] == argb) {
+                counts[position]++;
+                return;
+            }
+            cell = (cell + 1) & mask;
+        }
+
+        if (size == colors.length) {
+            grow();
+            add(argb);
+            return;
+        }
+        table[cell] = size;
+        colors[size] = argb;
+        counts[size] = 1;
+        size++;
+    }
+
+    /**
+     * Counts the colors of the pixels of the array.
+     *
+     * @param pixels are the ARGB colors of the pixels.
+     * @param from   is the position of the first pixel.
+     * @param to     is the position right after the last pixel.
+     */
+    public void addAll(int[] pixels, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(pixels[i]);
+        }
+    }
+
+    /**
+     * @return the number of different colors counted.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the color of the most pixels. If several colors have as many pixels,
+     * the one seen first wins, so the result does not depend on the hashes.
+     *
+     * @return the most frequent ARGB color.
+     * @throws IllegalStateException if no pixels were counted.
+     */
+    public int getMode() {
+        if (size == 0) {
+            throw new IllegalStateException("No pixels were counted");
+        }
+        int mode = 0;
+        for (int i = 1; i < size; i++) {
+            if (counts[i] > counts[mode]) {
+                mode = i;
+            }
+        }
+        return colors[mode];
+    }
+
+    /**
+     * Finds the median of each channel of all counted pixels separately. Unlike the mode,
+     * it does not jump to a noise color if the edge has many slightly different shades.
+     * If the number of pixels is even, the lower of the two middle values is taken.
+     *
+     * @return the ARGB color made of the channel medians.
+     * @throws IllegalStateException if no pixels were counted.
+     */
+    public int getMedian() {
+        if (size == 0) {
+            throw new IllegalStateException("No pixels were counted");
+        }
+        // The number of pixels having each value of each channel, the channels are alpha, red, green, blue
+        long[][] channelCounts = new long[4][256];
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            for (int channel = 0; channel < 4; channel++) {
+                channelCounts[channel][(colors[i] >>> (24 - 8 * channel)) & 0xFF] += counts[i];
+            }
+            total += counts[i];
+        }
+
+        int median = 0;
+        for (int channel = 0; channel < 4; channel++) {
+            // The value of the pixel at the middle position when the values are sorted
+            long middle = (total - 1) / 2;
+            int value = 0;
+            while (middle >= channelCounts[channel][value]) {
+                middle -= channelCounts[channel][value];
+                value++;
+            }
+            median |= value << (24 - 8 * channel);
+        }
+        return median;
+    }
+
+    /**
+     * Removes all colors keeping the already allocated arrays.
+     */
+    public void clear() {
+        Arrays.fill(table, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Doubles the arrays and puts all colors to the new hash table.
+     */
+    private void grow() {
+        colors = Arrays.copyOf(colors, colors.length * 2);
+        counts = Arrays.copyOf(counts, counts.length * 2);
+        table = newTable(colors.length * 2);
+
+        int mask = table.length - 1;
+        for (int position = 0; position < size; position++) {
+            int cell = hash(colors[position]) & mask;
+            while (table[cell] != EMPTY) {
+                cell = (cell + 1) & mask;
+            }
+            table[cell] = position;
+        }
+    }
+
+    /**
+     * Creates a hash table with all cells empty.
+     *
+     * @param length is the number of cells, a power of two.
+     * @return the table.
+     */
+    private static int[] newTable(int length) {
+        int[] newTable = new int[length];
+        Arrays.fill(newTable, EMPTY);
+        return newTable;
+    }
+
+    /**
+     * Mixes the bits of the color, so similar colors do not land in neighboring cells.
+     *
+     * @param argb is the color.
+     * @return the hash of the color.
+     */
+    private static int hash(int argb) {
+        int hash = argb * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,78 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A union-find (disjoint set) structure several threads can join elements in
+ * at the same time without locks.
+ * <p>
+ * A root is always linked under the smaller root, so the parent of an element
+ * is never larger than the element and the root of a set is its smallest element.
+ * Both linking and path halving are done with compare-and-set operations, a thread
+ * that loses a race just looks for the roots again.
+ * <p>
+ * The idea of the lock-free linking was taken from:
+ * https://en.wikipedia.org/wiki/Disjoint-set_data_structure#Concurrency
+ */
+public class ConcurrentUnionFind {
+
+    /**
+     * The parent of each element, the roots are their own parents.
+     */
+    private final AtomicIntegerArray parents;
+
+    /**
+     * Creates the structure with each element in its own set.
+     *
+     * @param size is the number of elements.
+     */
+    public ConcurrentUnionFind(int size) {
+        parents = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            parents.set(i, i);
+        }
+    }
+
+    /**
+     * Finds the root of the set the element belongs to and halves
+     * the path to it on the way.
+     *
+     * @param element is the element.
+     * @return the smallest element of the set.
+     */
+    public int find(int element) {
+        int parent = parents.get(element);
+        while (parent != element) {
+            int grandparent = parents.get(parent);
+            parents.compareAndSet(element, parent, grandparent);
+            element = grandparent;
+            parent = parents.get(element);
+        }
+        return element;
+    }
+
+    /**
+     * Joins the sets of both elements into one.
+     *
+     * @param first  is an element of the first set.
+     * @param second is an element of the second set.
+     */
+    public void union(int first, int second) {
+        while (true) {
+            first = find(first);
+            second = find(second);
+            if (first == second) {
+                return;
+            }
+            // The larger root is linked under the smaller one
+            if (first < second) {
+                int smaller = first;
+                first = second;
+                second = smaller;
+            }
+            if (parents.compareAndSet(first, first, second)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.ArrayList;
+
+/**
+ * Finds silhouettes with the iterative depth-first search (DFS) algorithm.
+ * Whenever the program meets a pixel of non-background color that is not a
+ * part of any silhouette yet, it creates a new silhouette and visits all pixels
+ * connected to it using the work queue instead of recursion.
+ * <p>
+ * The labeler can be restricted to a horizontal strip of the image, that is
+ * how the parallel labeler searches each of its strips.
+ * <p>
+ * The four side neighbors of a pixel are checked one by one, it is the fast path
+ * every search takes. In the 8-connected mode the four corner neighbors are then
+ * taken from the precomputed table of offsets.
+ * <p>
+ * The labeler keeps its work queue between the searches, so one instance
+ * shall not be used by several threads at the same time.
+ */
+public class DepthFirstLabeler implements LabelingEngine {
+
+    /**
+     * A queue containing the silhouette pixels the program found
+     * but has not inspected the neighbors of yet.
+     */
+    private final PixelQueue queue = new PixelQueue();
+
+    /**
+     * The number of neighbors a pixel is connected to, 4 or 8.
+     */
+    private final int connectivity;
+
+    /**
+     * Creates the labeler connecting the pixels touching by a side.
+     */
+    public DepthFirstLabeler() {
+        this(ForegroundMask.FOUR_CONNECTED);
+    }
+
+    /**
+     * Creates the labeler.
+     *
+     * @param connectivity is the number of neighbors a pixel is connected to, 4 or 8.
+     */
+    public DepthFirstLabeler(int connectivity) {
+        this.connectivity = ForegroundMask.checkConnectivity(connectivity);
+    }
+
+    @Override
+    public ArrayList<Silhouette> findSilhouettes(ForegroundMask mask, LabelMap labelMap) {
+        return findSilhouettes(mask, labelMap, 1, mask.height);
+    }
+
+    /**
+     * Finds all silhouettes within the rows of the image. The pixels outside these rows
+     * are not inspected, so a silhouette crossing the strip border is cut by it.
+     * Silhouette ids start from one for every strip.
+     *
+     * @param mask     is the mask of the pixels of non-background color.
+     * @param labelMap is the map to mark the silhouette pixels in.
+     * @param firstRow is the first row of the strip in the mask (the image rows start from one).
+     * @param lastRow  is the last row of the strip in the mask.
+     * @return the silhouettes of the strip ordered by their ids.
+     */
+    public ArrayList<Silhouette> findSilhouettes(ForegroundMask mask, LabelMap labelMap, int firstRow, int lastRow) {
+        ArrayList<Silhouette> silhouettes = new ArrayList<>();
+        queue.resetMaxSize();
+        long[] bits = mask.bits;
+        int[] labels = labelMap.labels;
+        int[] neighborOffsets = mask.getNeighborOffsets(connectivity);
+
+        // Indexes of the first pixel of the strip and of the first pixel after it
+        int stripStart = firstRow * mask.rowLength;
+        int stripEnd = (lastRow + 1) * mask.rowLength;
+
+        for (int word = stripStart >>> 6; word <= (stripEnd - 1) >>> 6; word++) {
+            long foregroundBits = bits[word];
+            while (foregroundBits != 0) {
+                int pixel = (word << 6) + Long.numberOfTrailingZeros(foregroundBits);
+                foregroundBits &= foregroundBits - 1; // Clears the lowest set bit
+
+                // Only the pixels of the strip which are not a part of any silhouette yet start a search
+                if (pixel >= stripStart && pixel < stripEnd && labels[pixel] == LabelMap.NO_SILHOUETTE) {
+                    Silhouette silhouette = new Silhouette(silhouettes.size() + 1, labelMap);
+                    silhouettes.add(silhouette);
+                    dfs(pixel, silhouette, mask, neighborOffsets, stripStart, stripEnd);
+                }
+            }
+        }
+        return silhouettes;
+    }
+
+    /**
+     * Iterative depth-first search (DFS) algorithm that detects all pixels belonging to a silhouette.
+     * Instead of recursing once per pixel, the pixels still to be inspected are kept in the
+     * work queue as packed ints, so the call stack depth does not depend on the silhouette size.
+     * The starting pixel shall be a non-visited pixel of non-background color.
+     *
+     * @param start      is the index of the starting pixel for dfs-algorithm
+     * @param silhouette is the object containing the number of pixels this particular
+     *                   silhouette consists of and the silhouette`s pixels coordinates
+     * @param mask            is the mask of the pixels of non-background color
+     * @param neighborOffsets are the offsets of the connected neighbors, the side ones first
+     * @param stripStart      is the index of the first pixel the search may visit
+     * @param stripEnd        is the index of the first pixel after the ones the search may visit
+     */
+    private void dfs(int start, Silhouette silhouette, ForegroundMask mask, int[] neighborOffsets,
+                     int stripStart, int stripEnd) {
+        // Length of one row of the mask, the neighbors above and below are that far away
+        int rowLength = mask.rowLength;
+        int[] labels = silhouette.labelMap.labels;
+        int[] colors = mask.colors;
+        int id = silhouette.id;
+
+        /* The sums of the silhouette are kept in local variables while the search runs
+         and are saved to the silhouette once at the end, which is much faster than
+         updating the fields of the silhouette object for every pixel */
+        int numOfPixels = 0;
+        int numOfPerimeterPixels = 0;
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        long sumX = 0, sumY = 0, sumXX = 0, sumYY = 0, sumXY = 0;
+        long sumRed = 0, sumGreen = 0, sumBlue = 0;
+
+        labels[start] = id;
+        queue.push(start);
+
+        while (!queue.isEmpty()) {
+            int pixel = takeNextPixel(queue);
+
+            // The map rows and columns are the image ones shifted by the one-pixel-thick edge
+            int row = pixel / rowLength;
+            int x = pixel - row * rowLength - 1;
+            int y = row - 1;
+            numOfPixels++;
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+            sumX += x;
+            sumY += y;
+            sumXX += (long) x * x;
+            sumYY += (long) y * y;
+            sumXY += (long) x * y;
+            if (colors != null) {
+                int argb = colors[pixel];
+                sumRed += (argb >>> 16) & 0xFF;
+                sumGreen += (argb >>> 8) & 0xFF;
+                sumBlue += argb & 0xFF;
+            }
+
+            /* Silhouette pixels never lie on the one-pixel-thick background edges of the mask,
+             so all four neighbors of the pixel exist, only the strip borders are checked.
+             The neighbors beyond the strip borders are not visited, but they still tell
+             whether the pixel lies on the silhouette perimeter */
+            boolean inside = pixel + rowLength < stripEnd
+                    ? visitNeighbor(pixel + rowLength, id, labels, mask)
+                    : mask.isForeground(pixel + rowLength);
+            inside &= pixel - rowLength >= stripStart
+                    ? visitNeighbor(pixel - rowLength, id, labels, mask)
+                    : mask.isForeground(pixel - rowLength);
+            inside &= visitNeighbor(pixel + 1, id, labels, mask);
+            inside &= visitNeighbor(pixel - 1, id, labels, mask);
+            if (!inside) {
+                numOfPerimeterPixels++;
+            }
+
+            // The corner neighbors connect the pixels, but do not make the pixel a perimeter one
+            for (int i = 4; i < neighborOffsets.length; i++) {
+                int neighbor = pixel + neighborOffsets[i];
+                if (neighbor >= stripStart && neighbor < stripEnd) {
+                    visitNeighbor(neighbor, id, labels, mask);
+                }
+            }
+        }
+
+        silhouette.numOfPixels = numOfPixels;
+        silhouette.numOfPerimeterPixels = numOfPerimeterPixels;
+        silhouette.minX = minX;
+        silhouette.minY = minY;
+        silhouette.maxX = maxX;
+        silhouette.maxY = maxY;
+        silhouette.sumX = sumX;
+        silhouette.sumY = sumY;
+        silhouette.sumXX = sumXX;
+        silhouette.sumYY = sumYY;
+        silhouette.sumXY = sumXY;
+        if (colors != null) {
+            silhouette.sumRed = sumRed;
+            silhouette.sumGreen = sumGreen;
+            silhouette.sumBlue = sumBlue;
+            silhouette.numOfColoredPixels = numOfPixels;
+        }
+    }
+
+    /**
+     * Takes the next pixel to inspect the neighbors of. The depth-first search
+     * takes the pixel found last.
+     *
+     * @param queue is the queue of the pixels waiting for inspection.
+     * @return the index of the pixel.
+     */
+    protected int takeNextPixel(PixelQueue queue) {
+        return queue.pop();
+    }
+
+    @Override
+    public int getMaxQueueDepth() {
+        return queue.getMaxSize();
+    }
+
+    /**
+     * Marks the neighbor pixel with the silhouette id in the label map and adds it
+     * to the work queue if it is not visited yet and has non-background color.
+     *
+     * @param pixel  is the index of the neighbor pixel in the mask.
+     * @param id     is the id of the silhouette the neighbor pixel may belong to.
+     * @param labels are the labels of the label map.
+     * @param mask   is the mask of the pixels of non-background color.
+     * @return true if the neighbor pixel has non-background color.
+     */
+    private boolean visitNeighbor(int pixel, int id, int[] labels, ForegroundMask mask) {
+        if (!mask.isForeground(pixel)) {
+            return false;
+        }
+        if (labels[pixel] == LabelMap.NO_SILHOUETTE) {
+            labels[pixel] = id;
+            queue.push(pixel);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.Locale;
+
+/**
+ * The numbers describing how the silhouettes search on one image went:
+ * how long each stage took and how much work and memory it needed.
+ * They help to find out which stage is to blame when an image takes long.
+ */
+public class DetectionMetrics {
+
+    /**
+     * The stages of the silhouettes search.
+     */
+    public enum Stage {
+        DECODE, BACKGROUND, BUFFER, CLASSIFY, LABEL, REPORT
+    }
+
+    /**
+     * The wall-clock time of each stage in nanoseconds.
+     */
+    private final long[] stageNanos = new long[Stage.values().length];
+
+    /**
+     * The number of pixels compared with the background color.
+     */
+    long pixelsClassified = 0;
+
+    /**
+     * The number of objects of non-background color found, including the small ones.
+     */
+    long componentsFound = 0;
+
+    /**
+     * The number of objects not larger than the minimum silhouette size.
+     */
+    long componentsFiltered = 0;
+
+    /**
+     * The largest number of pixels waiting in the work queue of the labeling engine.
+     */
+    int maxQueueDepth = 0;
+
+    /**
+     * The number of bytes of the pixel buffer, the foreground mask and the label map.
+     */
+    long bufferBytes = 0;
+
+    /**
+     * Adds the time to the stage.
+     *
+     * @param stage is the stage.
+     * @param nanos is the wall-clock time in nanoseconds.
+     */
+    public void addStageNanos(Stage stage, long nanos) {
+        stageNanos[stage.ordinal()] += nanos;
+    }
+
+    /**
+     * @param stage is the stage.
+     * @return the wall-clock time of the stage in nanoseconds.
+     */
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    /**
+     * @return the wall-clock time of all stages in nanoseconds.
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : stageNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of pixels compared with the background color.
+     */
+    public long getPixelsClassified() {
+        return pixelsClassified;
+    }
+
+    /**
+     * @return the number of objects of non-background color found, including the small ones.
+     */
+    public long getComponentsFound() {
+        return componentsFound;
+    }
+
+    /**
+     * @return the number of objects not larger than the minimum silhouette size.
+     */
+    public long getComponentsFiltered() {
+        return componentsFiltered;
+    }
+
+    /**
+     * @return the largest number of pixels waiting in the work queue of the labeling engine.
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * @return the number of bytes of the pixel buffer, the foreground mask and the label map.
+     */
+    public long getBufferBytes() {
+        return bufferBytes;
+    }
+
+    /**
+     * Writes the metrics as a JSON object. The times are in milliseconds.
+     *
+     * @return the JSON text.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"stagesMillis\":{");
+        for (Stage stage : Stage.values()) {
+            if (stage.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(stage.name().toLowerCase(Locale.ROOT)).append("\":")
+                    .append(String.format(Locale.ROOT, "%.3f", stageNanos[stage.ordinal()] / 1e6));
+        }
+        return json.append("},\"pixelsClassified\":").append(pixelsClassified)
+                .append(",\"componentsFound\":").append(componentsFound)
+                .append(",\"componentsFiltered\":").append(componentsFiltered)
+                .append(",\"maxQueueDepth\":").append(maxQueueDepth)
+                .append(",\"bufferBytes\":").append(bufferBytes)
+                .append('}').toString();
+    }
+}
@@ -0,0 +1,168 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Everything the detector found on one image: the background color,
+ * all objects of non-background color and the map of their pixels.
+ */
+public class DetectionResult {
+
+    /**
+     * The color the detector deemed the background color.
+     */
+    private final Color bgColor;
+
+    /**
+     * The map saying which silhouette each pixel belongs to. It is null
+     * if the image was inspected band by band.
+     */
+    private final LabelMap labelMap;
+
+    /**
+     * All objects of non-background color found on the image including
+     * the ones too small to be deemed silhouettes.
+     */
+    private final ArrayList<Silhouette> allSilhouettes;
+
+    /**
+     * The minimum number of pixels of an object to be deemed a silhouette.
+     */
+    private final int minimumSize;
+
+    /**
+     * The time of the search stages and the amount of work done.
+     */
+    private final DetectionMetrics metrics;
+
+    /**
+     * Creates the result.
+     *
+     * @param bgColor        is the background color.
+     * @param labelMap       is the map of the silhouette pixels or null.
+     * @param allSilhouettes are all objects of non-background color.
+     * @param minimumSize    is the minimum number of pixels of a silhouette.
+     * @param metrics        are the metrics of the search.
+     */
+    public DetectionResult(Color bgColor, LabelMap labelMap, ArrayList<Silhouette> allSilhouettes, int minimumSize,
+                           DetectionMetrics metrics) {
+        this.bgColor = bgColor;
+        this.labelMap = labelMap;
+        this.allSilhouettes = allSilhouettes;
+        this.minimumSize = minimumSize;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Takes all detected objects and keeps only those with more
+     * than {minimumSize} pixels.
+     *
+     * @return the silhouettes in the order their first pixels appear in the image.
+     */
+    public ArrayList<Silhouette> getSilhouettes() {
+        ArrayList<Silhouette> silhouettes = new ArrayList<>();
+        for (Silhouette silhouette : allSilhouettes) {
+            if (silhouette.numOfPixels > minimumSize) {
+                silhouettes.add(silhouette);
+            }
+        }
+        return silhouettes;
+    }
+
+    /**
+     * @return the number of objects with more than {minimumSize} pixels.
+     */
+    public int getNumOfSilhouettes() {
+        int numOfSilhouettes = 0;
+        for (Silhouette silhouette : allSilhouettes) {
+            if (silhouette.numOfPixels > minimumSize) {
+                numOfSilhouettes++;
+            }
+        }
+        return numOfSilhouettes;
+    }
+
+    /**
+     * @return all objects of non-background color including the small ones.
+     */
+    public ArrayList<Silhouette> getAllSilhouettes() {
+        return allSilhouettes;
+    }
+
+    /**
+     * @return the background color.
+     */
+    public Color getBgColor() {
+        return bgColor;
+    }
+
+    /**
+     * @return the map of the silhouette pixels or null if the image was inspected band by band.
+     */
+    public LabelMap getLabelMap() {
+        return labelMap;
+    }
+
+    /**
+     * @return the minimum number of pixels of a silhouette.
+     */
+    public int getMinimumSize() {
+        return minimumSize;
+    }
+
+    /**
+     * @return the time of the search stages and the amount of work done.
+     */
+    public DetectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Writes the result as a single-line JSON object: the background color,
+     * the number of silhouettes, their sizes, their shapes and the metrics of the search.
+     *
+     * @return the JSON text.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"bgColor\":\"")
+                .append(String.format("#%06X", bgColor.getRGB() & 0xFFFFFF))
+                .append("\",\"silhouettes\":").append(getNumOfSilhouettes())
+                .append(",\"sizes\":[");
+        ArrayList<Silhouette> silhouettes = getSilhouettes();
+        for (int i = 0; i < silhouettes.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(silhouettes.get(i).numOfPixels);
+        }
+        json.append("],\"shapes\":[");
+        for (int i = 0; i < silhouettes.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendShape(json, silhouettes.get(i));
+        }
+        return json.append("],\"metrics\":").append(metrics.toJson()).append('}').toString();
+    }
+
+    /**
+     * Writes the bounding box, the centroid, the orientation, the number of perimeter
+     * pixels and the mean color of the silhouette as a JSON object.
+     *
+     * @param json       is the text to append the object to.
+     * @param silhouette is the silhouette.
+     */
+    private static void appendShape(StringBuilder json, Silhouette silhouette) {
+        Color meanColor = silhouette.getMeanColor();
+        json.append("{\"box\":[").append(silhouette.minX).append(',').append(silhouette.minY)
+                .append(',').append(silhouette.maxX).append(',').append(silhouette.maxY)
+                .append(String.format(Locale.ROOT, "],\"centroid\":[%.2f,%.2f],\"orientation\":%.4f",
+                        silhouette.getCentroidX(), silhouette.getCentroidY(), silhouette.getOrientation()))
+                .append(",\"perimeter\":").append(silhouette.numOfPerimeterPixels)
+                .append(",\"meanColor\":").append(meanColor == null ? "null"
+                        : String.format("\"#%06X\"", meanColor.getRGB() & 0xFFFFFF))
+                .append('}');
+    }
+}
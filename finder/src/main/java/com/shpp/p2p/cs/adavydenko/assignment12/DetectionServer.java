@@ -0,0 +1,334 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Inspects images sent to the running program, so the JIT-compiled code, the detector
+ * and the buffers of its workspaces stay warm between the images instead of being
+ * started from scratch for each one.
+ * <p>
+ * The images come either over HTTP on the loopback address or as lines of the standard input.
+ * Over HTTP, "POST /detect" with the image bytes as the body or "GET /detect?path=FILE"
+ * answers with the result as JSON. If too many images are already being inspected, the
+ * request is answered with 503 right away, so the caller knows to retry later instead of
+ * waiting in a queue that only grows. On the standard input each line is the path of an
+ * image, and the next line is not read until there is room for one more image, so a fast
+ * writer is slowed down to the speed of the detection. Each answer is a JSON line with
+ * the path, in the order the images are finished.
+ * <p>
+ * Every request runs on a virtual thread if the Java version has them, otherwise on a
+ * pool of threads that grows with the requests. The pool shall not be limited to the
+ * number of images in flight, or the extra requests would wait in its queue instead
+ * of being answered with 503.
+ */
+public class DetectionServer {
+
+    /**
+     * The path the HTTP requests are answered at.
+     */
+    public static final String CONTEXT_PATH = "/detect";
+
+    /**
+     * The detector used for every image.
+     */
+    private final SilhouetteDetector detector;
+
+    /**
+     * The workspaces the images are inspected with.
+     */
+    private final WorkspacePool workspaces;
+
+    /**
+     * The number of images that can be inspected at the same time.
+     */
+    private final int maxInFlight;
+
+    /**
+     * The permits of the images being inspected now.
+     */
+    private final Semaphore inFlight;
+
+    /**
+     * The statistics the metrics of every image are added to, or null if there are none.
+     */
+    private final DetectionStats stats;
+
+    /**
+     * The threads the requests are handled on.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Creates the server.
+     *
+     * @param detector    is the detector used for every image.
+     * @param maxInFlight is the number of images that can be inspected at the same time.
+     * @param stats       are the statistics to add the metrics of every image to, or null.
+     */
+    public DetectionServer(SilhouetteDetector detector, int maxInFlight, DetectionStats stats) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The number of images in flight shall be positive: " + maxInFlight);
+        }
+        this.detector = detector;
+        this.workspaces = new WorkspacePool(detector);
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.stats = stats;
+        this.executor = BatchRunner.newIoExecutor(Executors::newCachedThreadPool);
+    }
+
+    /**
+     * Inspects a synthetic image several times before the first request comes,
+     * so the hot loops are already compiled when the real images arrive.
+     *
+     * @param iterations is the number of inspections.
+     */
+    public void warmUp(int iterations) {
+        BufferedImage image = SyntheticImages.generate(512, 512, 40, 60, 0.01, 1);
+        DetectorWorkspace workspace = workspaces.acquire();
+        try {
+            for (int i = 0; i < iterations; i++) {
+                detector.detect(image, workspace);
+            }
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    /**
+     * Starts answering the HTTP requests on the loopback address. The server keeps
+     * running on its own threads until it is stopped.
+     *
+     * @param port is the port to listen on, 0 for any free port.
+     * @return the started server, its address has the actual port.
+     * @throws IOException if the port can not be listened on.
+     */
+    public HttpServer startHttp(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(CONTEXT_PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+        return server;
+    }
+
+    /**
+     * Stops the threads of the requests after the running ones are finished.
+     * The HTTP server shall be stopped before.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Answers one HTTP request with the result of the image it has or points to.
+     *
+     * @param exchange is the request and its response.
+     * @throws IOException if the response can not be sent.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!inFlight.tryAcquire()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "{\"error\":\"Too many images in flight\"}");
+                return;
+            }
+            try {
+                String path = getQueryParameter(exchange.getRequestURI().getRawQuery(), "path");
+                if (path != null) {
+                    respond(exchange, 200, "{\"path\":" + BatchRunner.quote(path) + ","
+                            + inspect(new File(path)).substring(1));
+                } else if (exchange.getRequestMethod().equals("POST")) {
+                    respond(exchange, 200, inspect(exchange.getRequestBody()));
+                } else {
+                    respond(exchange, 400, "{\"error\":\"POST an image or give its path with ?path=\"}");
+                }
+            } catch (IOException e) {
+                countFailure();
+                respond(exchange, 400, "{\"error\":" + BatchRunner.quote(e.toString()) + "}");
+            } catch (RuntimeException e) {
+                countFailure();
+                respond(exchange, 500, "{\"error\":" + BatchRunner.quote(e.toString()) + "}");
+            } finally {
+                inFlight.release();
+            }
+        }
+    }
+
+    /**
+     * Reads the image paths from the lines of the input and prints a JSON line with
+     * the result or the error of each image. Empty lines are skipped. Returns after
+     * the input ends and all images read from it are finished.
+     *
+     * @param in  is where the image paths are read from.
+     * @param out is where the result lines are printed.
+     * @throws IOException          if the input can not be read.
+     * @throws InterruptedException if the thread was interrupted while waiting.
+     */
+    public void serveLines(BufferedReader in, PrintStream out) throws IOException, InterruptedException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String path = line.trim();
+            if (path.isEmpty()) {
+                continue;
+            }
+            inFlight.acquire(); // Waits until one of the images is finished
+            executor.execute(() -> {
+                try {
+                    printLine(out, answerLine(path));
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        inFlight.acquire(maxInFlight); // Waits until all images are finished
+        inFlight.release(maxInFlight);
+    }
+
+    /**
+     * Inspects the image file and makes its result line.
+     *
+     * @param path is the path of the image file.
+     * @return the JSON object with the path and the result or the error.
+     */
+    private String answerLine(String path) {
+        try {
+            return "{\"path\":" + BatchRunner.quote(path) + "," + inspect(new File(path)).substring(1);
+        } catch (IOException | RuntimeException e) {
+            countFailure();
+            return "{\"path\":" + BatchRunner.quote(path) + ",\"error\":" + BatchRunner.quote(e.toString()) + "}";
+        }
+    }
+
+    /**
+     * Finds the silhouettes on the image file with a workspace from the pool.
+     *
+     * @param file is the image file or the raw pixel file.
+     * @return the result as JSON.
+     * @throws IOException if the file can not be read or its format is unknown.
+     */
+    private String inspect(File file) throws IOException {
+        DetectorWorkspace workspace = workspaces.acquire();
+        try {
+            return report(detector.detect(file, workspace));
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    /**
+     * Decodes the image bytes and finds the silhouettes on the image with a workspace from the pool.
+     *
+     * @param body is the stream of the image bytes.
+     * @return the result as JSON.
+     * @throws IOException if the stream can not be read or the image format is unknown.
+     */
+    private String inspect(InputStream body) throws IOException {
+        long start = System.nanoTime();
+        BufferedImage image = ImageIO.read(body);
+        if (image == null) {
+            throw new IOException("Unknown image format");
+        }
+        long decodeNanos = System.nanoTime() - start;
+
+        DetectorWorkspace workspace = workspaces.acquire();
+        try {
+            DetectionResult result = detector.detect(image, workspace);
+            result.getMetrics().addStageNanos(DetectionMetrics.Stage.DECODE, decodeNanos);
+            return report(result);
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    /**
+     * Makes the JSON of the result while its workspace is still taken,
+     * and adds its metrics to the statistics.
+     *
+     * @param result is the result of the detection.
+     * @return the result as JSON.
+     */
+    private String report(DetectionResult result) {
+        long start = System.nanoTime();
+        String json = result.toJson();
+        if (stats != null) {
+            result.getMetrics().addStageNanos(DetectionMetrics.Stage.REPORT, System.nanoTime() - start);
+            stats.add(result.getMetrics());
+        }
+        return json;
+    }
+
+    /**
+     * Counts the failed image in the statistics if there are any.
+     */
+    private void countFailure() {
+        if (stats != null) {
+            stats.addFailure();
+        }
+    }
+
+    /**
+     * Prints the line so the lines of different threads do not mix.
+     *
+     * @param out  is where the line is printed.
+     * @param line is the line.
+     */
+    private static void printLine(PrintStream out, String line) {
+        synchronized (out) {
+            out.println(line);
+        }
+    }
+
+    /**
+     * Sends the JSON response.
+     *
+     * @param exchange is the request and its response.
+     * @param status   is the HTTP status code.
+     * @param json     is the body of the response.
+     * @throws IOException if the response can not be sent.
+     */
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    /**
+     * Finds the value of the parameter in the query of the request.
+     *
+     * @param query is the raw query without the question mark, or null if there is none.
+     * @param name  is the name of the parameter.
+     * @return the decoded value or null if the query has no such parameter.
+     */
+    static String getQueryParameter(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).equals(name)) {
+                return URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+}
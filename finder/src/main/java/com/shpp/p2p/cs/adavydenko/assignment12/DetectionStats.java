@@ -0,0 +1,160 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sums up the metrics of all silhouettes searches of the running program.
+ * Several threads can add their metrics at the same time.
+ */
+public class DetectionStats implements DetectionStatsMBean {
+
+    /**
+     * The name the statistics are published under in JMX.
+     */
+    public static final String OBJECT_NAME = "com.shpp.p2p.cs.adavydenko.assignment12:type=DetectionStats";
+
+    /**
+     * The totals of the searches.
+     */
+    private final LongAdder imagesProcessed = new LongAdder();
+    private final LongAdder imagesFailed = new LongAdder();
+    private final LongAdder pixelsClassified = new LongAdder();
+    private final LongAdder componentsFound = new LongAdder();
+    private final LongAdder componentsFiltered = new LongAdder();
+    private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder bufferBytes = new LongAdder();
+
+    /**
+     * The total time of each stage in nanoseconds.
+     */
+    private final AtomicLong[] stageNanos = new AtomicLong[DetectionMetrics.Stage.values().length];
+
+    /**
+     * Creates the statistics with all totals equal to zero.
+     */
+    public DetectionStats() {
+        for (int i = 0; i < stageNanos.length; i++) {
+            stageNanos[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Creates the statistics and publishes them in the platform MBean server.
+     *
+     * @return the published statistics.
+     * @throws JMException if the statistics can not be published.
+     */
+    public static DetectionStats register() throws JMException {
+        DetectionStats stats = new DetectionStats();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(stats, name);
+        return stats;
+    }
+
+    /**
+     * Adds the metrics of one search to the totals.
+     *
+     * @param metrics are the metrics of the search.
+     */
+    public void add(DetectionMetrics metrics) {
+        imagesProcessed.increment();
+        pixelsClassified.add(metrics.getPixelsClassified());
+        componentsFound.add(metrics.getComponentsFound());
+        componentsFiltered.add(metrics.getComponentsFiltered());
+        maxQueueDepth.accumulate(metrics.getMaxQueueDepth());
+        bufferBytes.add(metrics.getBufferBytes());
+        for (DetectionMetrics.Stage stage : DetectionMetrics.Stage.values()) {
+            stageNanos[stage.ordinal()].addAndGet(metrics.getStageNanos(stage));
+        }
+    }
+
+    /**
+     * Counts an image that could not be inspected.
+     */
+    public void addFailure() {
+        imagesFailed.increment();
+    }
+
+    /**
+     * @param stage is the stage.
+     * @return the total time of the stage in milliseconds.
+     */
+    private long getStageMillis(DetectionMetrics.Stage stage) {
+        return stageNanos[stage.ordinal()].get() / 1_000_000;
+    }
+
+    @Override
+    public long getImagesProcessed() {
+        return imagesProcessed.sum();
+    }
+
+    @Override
+    public long getImagesFailed() {
+        return imagesFailed.sum();
+    }
+
+    @Override
+    public long getPixelsClassified() {
+        return pixelsClassified.sum();
+    }
+
+    @Override
+    public long getComponentsFound() {
+        return componentsFound.sum();
+    }
+
+    @Override
+    public long getComponentsFiltered() {
+        return componentsFiltered.sum();
+    }
+
+    @Override
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    @Override
+    public long getBufferBytes() {
+        return bufferBytes.sum();
+    }
+
+    @Override
+    public long getDecodeMillis() {
+        return getStageMillis(DetectionMetrics.Stage.DECODE);
+    }
+
+    @Override
+    public long getBackgroundMillis() {
+        return getStageMillis(DetectionMetrics.Stage.BACKGROUND);
+    }
+
+    @Override
+    public long getBufferMillis() {
+        return getStageMillis(DetectionMetrics.Stage.BUFFER);
+    }
+
+    @Override
+    public long getClassifyMillis() {
+        return getStageMillis(DetectionMetrics.Stage.CLASSIFY);
+    }
+
+    @Override
+    public long getLabelMillis() {
+        return getStageMillis(DetectionMetrics.Stage.LABEL);
+    }
+
+    @Override
+    public long getReportMillis() {
+        return getStageMillis(DetectionMetrics.Stage.REPORT);
+    }
+}
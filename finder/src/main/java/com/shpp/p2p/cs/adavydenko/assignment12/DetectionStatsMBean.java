@@ -0,0 +1,73 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+/**
+ * The totals of the silhouettes searches of the running program published
+ * through JMX, so they can be watched with JConsole or exported to dashboards.
+ */
+public interface DetectionStatsMBean {
+
+    /**
+     * @return the number of images inspected.
+     */
+    long getImagesProcessed();
+
+    /**
+     * @return the number of images that could not be inspected.
+     */
+    long getImagesFailed();
+
+    /**
+     * @return the number of pixels compared with the background color.
+     */
+    long getPixelsClassified();
+
+    /**
+     * @return the number of objects of non-background color found.
+     */
+    long getComponentsFound();
+
+    /**
+     * @return the number of objects not larger than the minimum silhouette size.
+     */
+    long getComponentsFiltered();
+
+    /**
+     * @return the largest work queue of all searches.
+     */
+    long getMaxQueueDepth();
+
+    /**
+     * @return the number of bytes of the buffers of all searches.
+     */
+    long getBufferBytes();
+
+    /**
+     * @return the time spent decoding images in milliseconds.
+     */
+    long getDecodeMillis();
+
+    /**
+     * @return the time spent defining background colors in milliseconds.
+     */
+    long getBackgroundMillis();
+
+    /**
+     * @return the time spent copying images to pixel buffers in milliseconds.
+     */
+    long getBufferMillis();
+
+    /**
+     * @return the time spent classifying pixels in milliseconds.
+     */
+    long getClassifyMillis();
+
+    /**
+     * @return the time spent grouping pixels into silhouettes in milliseconds.
+     */
+    long getLabelMillis();
+
+    /**
+     * @return the time spent reporting the results in milliseconds.
+     */
+    long getReportMillis();
+}
@@ -0,0 +1,336 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.awt.*;
+import java.util.Locale;
+
+/**
+ * The parameters of the silhouettes search. The defaults are the constants of
+ * Assignment12Part1, each of them can be changed with a "--name=value" command
+ * line argument or with the corresponding setter.
+ * <p>
+ * The detector copies the settings when it is created, so changing them
+ * afterwards does not affect detectors already created.
+ */
+public class DetectorSettings {
+
+    /**
+     * The proportion of similarity at which a pixel color is deemed the background color.
+     */
+    private double similarityThreshold = Assignment12Part1.COLORS_SIMILARITY_THRESHOLD;
+
+    /**
+     * The minimum number of pixels of an object to be deemed a silhouette.
+     */
+    private int minimumSize = Assignment12Part1.MINIMUM_SILHOUETTE_SIZE;
+
+    /**
+     * The name of the single-threaded labeling engine: "dfs", "bfs" or "scanline".
+     */
+    private String engine = "dfs";
+
+    /**
+     * The number of threads searching for silhouettes on one image.
+     */
+    private int parallelism = 1;
+
+    /**
+     * The number of image rows decoded at once in the streaming mode.
+     */
+    private int bandHeight = StreamingDetector.DEFAULT_BAND_HEIGHT;
+
+    /**
+     * The number of image pixels per side of a block in the pyramid mode.
+     */
+    private int pyramidScale = PyramidClassifier.DEFAULT_SCALE;
+
+    /**
+     * The number of pixels per side of the tiles the local background is estimated in,
+     * or zero to compare every pixel with one background color of the whole image.
+     */
+    private int backgroundTile = 0;
+
+    /**
+     * The way to pick the background color from the colors of the image edges.
+     */
+    private BackgroundEstimator.Strategy backgroundStrategy = BackgroundEstimator.Strategy.MODE;
+
+    /**
+     * The background color given by the user, or null if it shall be defined from the image edges.
+     */
+    private Color backgroundColor = null;
+
+    /**
+     * The number of silhouettes after which the counting mode stops, or zero to count all of them.
+     */
+    private int stopAfter = 0;
+
+    /**
+     * The number of neighbors a pixel is connected to: 4 connects the pixels touching
+     * by a side only, 8 connects the pixels touching by a corner too.
+     */
+    private int connectivity = ForegroundMask.FOUR_CONNECTED;
+
+    /**
+     * Reads the settings from the command line arguments. The arguments the user
+     * did not provide keep their default values.
+     *
+     * @param args are the command line arguments provided by user.
+     * @return the settings.
+     * @throws IllegalArgumentException if "--background-tile" is given without "--background=local".
+     */
+    public static DetectorSettings fromArgs(String[] args) {
+        DetectorSettings settings = new DetectorSettings();
+
+        settings.similarityThreshold = Double.parseDouble(getOption(args, "threshold",
+                String.valueOf(settings.similarityThreshold)));
+        settings.minimumSize = Integer.parseInt(getOption(args, "min-size",
+                String.valueOf(settings.minimumSize)));
+        settings.engine = getOption(args, "engine", settings.engine);
+        settings.parallelism = Integer.parseInt(getOption(args, "parallelism",
+                String.valueOf(settings.parallelism)));
+        settings.bandHeight = Integer.parseInt(getOption(args, "band-height",
+                String.valueOf(settings.bandHeight)));
+        settings.pyramidScale = Integer.parseInt(getOption(args, "pyramid-scale",
+                String.valueOf(settings.pyramidScale)));
+        String background = getOption(args, "background", "mode");
+        settings.setBackground(background);
+        String backgroundTile = getOption(args, "background-tile", null);
+        if (backgroundTile != null) {
+            if (!background.equalsIgnoreCase("local")) {
+                throw new IllegalArgumentException("--background-tile only applies to --background=local");
+            }
+            settings.backgroundTile = Integer.parseInt(backgroundTile);
+        }
+        settings.stopAfter = Integer.parseInt(getOption(args, "stop-after",
+                String.valueOf(settings.stopAfter)));
+        settings.connectivity = Integer.parseInt(getOption(args, "connectivity",
+                String.valueOf(settings.connectivity)));
+        return settings;
+    }
+
+    /**
+     * Sets how the background color is defined from its text form: "mode" or "median"
+     * choose the strategy of picking it from the image edges, a hexadecimal RGB color
+     * like "#FFFFFF" is used as the background color of every image. "local" estimates the
+     * background in tiles of the default size, starting from the mode of the image edges.
+     *
+     * @param background is the strategy name or the color.
+     * @return these settings.
+     * @throws IllegalArgumentException if the background is neither a known strategy nor a color.
+     */
+    public DetectorSettings setBackground(String background) {
+        if (background.equalsIgnoreCase("local")) {
+            backgroundStrategy = BackgroundEstimator.Strategy.MODE;
+            backgroundColor = null;
+            backgroundTile = LocalBackgroundClassifier.DEFAULT_TILE_SIZE;
+        } else if (background.matches("#[0-9A-Fa-f]{6}")) {
+            backgroundColor = new Color(Integer.parseInt(background.substring(1), 16));
+        } else {
+            try {
+                backgroundStrategy = BackgroundEstimator.Strategy.valueOf(background.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown background: " + background
+                        + " (expected mode, median, local or #RRGGBB)");
+            }
+            backgroundColor = null;
+        }
+        return this;
+    }
+
+    /**
+     * Reads the value of the "--name=value" command line argument.
+     * The first argument is the image location, so it is skipped.
+     *
+     * @param args         are the command line arguments provided by user.
+     * @param name         is the name of the argument.
+     * @param defaultValue is the value to use if the user did not provide the argument.
+     * @return the value of the argument.
+     */
+    static String getOption(String[] args, String name, String defaultValue) {
+        String prefix = "--" + name + "=";
+
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith(prefix)) {
+                return args[i].substring(prefix.length());
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @return the proportion of similarity at which colors are deemed equivalent.
+     */
+    public double getSimilarityThreshold() {
+        return similarityThreshold;
+    }
+
+    /**
+     * @param similarityThreshold is the proportion of similarity at which colors are deemed equivalent.
+     * @return these settings.
+     */
+    public DetectorSettings setSimilarityThreshold(double similarityThreshold) {
+        this.similarityThreshold = similarityThreshold;
+        return this;
+    }
+
+    /**
+     * @return the minimum number of pixels of a silhouette.
+     */
+    public int getMinimumSize() {
+        return minimumSize;
+    }
+
+    /**
+     * @param minimumSize is the minimum number of pixels of a silhouette.
+     * @return these settings.
+     */
+    public DetectorSettings setMinimumSize(int minimumSize) {
+        this.minimumSize = minimumSize;
+        return this;
+    }
+
+    /**
+     * @return the name of the single-threaded labeling engine.
+     */
+    public String getEngine() {
+        return engine;
+    }
+
+    /**
+     * @param engine is the name of the single-threaded labeling engine.
+     * @return these settings.
+     */
+    public DetectorSettings setEngine(String engine) {
+        this.engine = engine;
+        return this;
+    }
+
+    /**
+     * @return the number of threads searching for silhouettes on one image.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism is the number of threads searching for silhouettes on one image.
+     * @return these settings.
+     */
+    public DetectorSettings setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @return the number of image rows decoded at once in the streaming mode.
+     */
+    public int getBandHeight() {
+        return bandHeight;
+    }
+
+    /**
+     * @param bandHeight is the number of image rows decoded at once in the streaming mode.
+     * @return these settings.
+     */
+    public DetectorSettings setBandHeight(int bandHeight) {
+        this.bandHeight = bandHeight;
+        return this;
+    }
+
+    /**
+     * @return the number of image pixels per side of a block in the pyramid mode.
+     */
+    public int getPyramidScale() {
+        return pyramidScale;
+    }
+
+    /**
+     * @param pyramidScale is the number of image pixels per side of a block in the pyramid mode.
+     * @return these settings.
+     */
+    public DetectorSettings setPyramidScale(int pyramidScale) {
+        this.pyramidScale = pyramidScale;
+        return this;
+    }
+
+    /**
+     * @return the number of pixels per side of the local background tiles, or zero for one global background.
+     */
+    public int getBackgroundTile() {
+        return backgroundTile;
+    }
+
+    /**
+     * @param backgroundTile is the number of pixels per side of the local background tiles,
+     *                       or zero for one global background.
+     * @return these settings.
+     */
+    public DetectorSettings setBackgroundTile(int backgroundTile) {
+        this.backgroundTile = backgroundTile;
+        return this;
+    }
+
+    /**
+     * @return the way to pick the background color from the colors of the image edges.
+     */
+    public BackgroundEstimator.Strategy getBackgroundStrategy() {
+        return backgroundStrategy;
+    }
+
+    /**
+     * @param backgroundStrategy is the way to pick the background color from the colors of the image edges.
+     * @return these settings.
+     */
+    public DetectorSettings setBackgroundStrategy(BackgroundEstimator.Strategy backgroundStrategy) {
+        this.backgroundStrategy = backgroundStrategy;
+        return this;
+    }
+
+    /**
+     * @return the background color given by the user or null.
+     */
+    public Color getBackgroundColor() {
+        return backgroundColor;
+    }
+
+    /**
+     * @param backgroundColor is the background color of every image, or null to define it from the image edges.
+     * @return these settings.
+     */
+    public DetectorSettings setBackgroundColor(Color backgroundColor) {
+        this.backgroundColor = backgroundColor;
+        return this;
+    }
+
+    /**
+     * @return the number of silhouettes after which the counting mode stops, or zero.
+     */
+    public int getStopAfter() {
+        return stopAfter;
+    }
+
+    /**
+     * @param stopAfter is the number of silhouettes after which the counting mode stops, or zero to count all.
+     * @return these settings.
+     */
+    public DetectorSettings setStopAfter(int stopAfter) {
+        this.stopAfter = stopAfter;
+        return this;
+    }
+
+    /**
+     * @return the number of neighbors a pixel is connected to, 4 or 8.
+     */
+    public int getConnectivity() {
+        return connectivity;
+    }
+
+    /**
+     * @param connectivity is the number of neighbors a pixel is connected to, 4 or 8.
+     * @return these settings.
+     */
+    public DetectorSettings setConnectivity(int connectivity) {
+        this.connectivity = connectivity;
+        return this;
+    }
+}
@@ -0,0 +1,50 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+/**
+ * The buffers one silhouettes search needs: the pixel buffer, the foreground mask,
+ * the label map, the color histogram of the background estimation and the labeling
+ * engine with its work queue. A workspace is reused from image to image, its arrays
+ * grow to the largest image seen and are only cleared between the images, so a program
+ * inspecting many images of the same size allocates almost nothing per image. Only
+ * the silhouette objects and the result are new for every image.
+ * <p>
+ * A workspace is created by the detector it is used with and can be used by one thread
+ * at a time. The result of a search shares the label map of the workspace, so it is
+ * only valid until the workspace is used for the next image.
+ */
+public class DetectorWorkspace {
+
+    /**
+     * The buffer with the pixels of the current image.
+     */
+    final PixelBuffer pixelBuffer = new PixelBuffer(0, 0);
+
+    /**
+     * The mask of the pixels of non-background color of the current image.
+     */
+    final ForegroundMask mask = new ForegroundMask(0, 0);
+
+    /**
+     * The map of the silhouette pixels of the current image.
+     */
+    final LabelMap labelMap = new LabelMap(0, 0);
+
+    /**
+     * The histogram of the edge colors of the current image.
+     */
+    final ColorHistogram histogram = new ColorHistogram();
+
+    /**
+     * The labeling engine of the detector, it keeps its work queue between the images.
+     */
+    final LabelingEngine engine;
+
+    /**
+     * Creates an empty workspace, its arrays are allocated for the first image.
+     *
+     * @param engine is the labeling engine of the detector.
+     */
+    DetectorWorkspace(LabelingEngine engine) {
+        this.engine = engine;
+    }
+}
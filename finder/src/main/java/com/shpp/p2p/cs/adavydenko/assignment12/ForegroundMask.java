@@ -0,0 +1,248 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.Arrays;
+
+/**
+ * A bitmask saying which pixels of the image have non-background color.
+ * Each pixel takes a single bit, 64 pixels are packed into one long.
+ * <p>
+ * The mask has the same layout as the pixel buffer and the label map, so the bit
+ * of the image pixel (x, y) has index (y + 1) * rowLength + (x + 1). The bits of
+ * the one-pixel-thick edges are never set.
+ * <p>
+ * The pixels touching each other by a side always belong to one silhouette. In the
+ * 8-connected mode the pixels touching only by a corner do too, which keeps thin
+ * diagonal lines whole.
+ */
+public class ForegroundMask {
+
+    /**
+     * The connectivity in which only the pixels touching by a side are connected.
+     */
+    public static final int FOUR_CONNECTED = 4;
+
+    /**
+     * The connectivity in which the pixels touching by a corner are connected too.
+     */
+    public static final int EIGHT_CONNECTED = 8;
+
+    /**
+     * Width and height of the image.
+     */
+    protected int width;
+    protected int height;
+
+    /**
+     * The length of one row of the mask including both edge cells.
+     */
+    protected int rowLength;
+
+    /**
+     * The bits of all pixels stored row after row. The array can be longer than
+     * the image needs if the mask was used for a larger image before, its extra
+     * bits are never set.
+     */
+    protected long[] bits;
+
+    /**
+     * The ARGB colors of the pixel buffer the mask was classified from, in the same layout,
+     * or null if the mask was not made from a buffer. The labeling engines take the colors
+     * of the silhouette pixels from here.
+     */
+    protected int[] colors;
+
+    /**
+     * Creates a mask with all pixels deemed background ones.
+     *
+     * @param width  is the width of the image.
+     * @param height is the height of the image.
+     */
+    public ForegroundMask(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.rowLength = width + 2;
+        this.bits = new long[(rowLength * (height + 2) + 63) >>> 6];
+    }
+
+    /**
+     * Deems all pixels background ones and changes the size of the image the mask is for.
+     * The array of the mask is reused if it is long enough, otherwise a new one is created.
+     *
+     * @param width  is the width of the image.
+     * @param height is the height of the image.
+     */
+    public void reset(int width, int height) {
+        int usedWords = (rowLength * (this.height + 2) + 63) >>> 6;
+        this.width = width;
+        this.height = height;
+        this.rowLength = width + 2;
+        int words = (rowLength * (height + 2) + 63) >>> 6;
+        if (bits.length < words) {
+            bits = new long[words];
+        } else {
+            // Clears the bits of the previous image too, so no bit is set outside of the new one
+            Arrays.fill(bits, 0, Math.max(words, usedWords), 0);
+        }
+    }
+
+    /**
+     * @return the number of cells of the mask including the edges.
+     */
+    public int getLength() {
+        return rowLength * (height + 2);
+    }
+
+    /**
+     * Lists the distances from a pixel to its connected neighbors in the mask, the label map
+     * and the pixel buffer of the same image. The side neighbors below, above, right and left
+     * go first, the corner ones follow in the 8-connected mode. Thanks to the one-pixel-thick
+     * edges every neighbor of an image pixel exists, so the offsets need no bounds checks.
+     *
+     * @param connectivity is FOUR_CONNECTED or EIGHT_CONNECTED.
+     * @return the offsets of the neighbors.
+     */
+    public int[] getNeighborOffsets(int connectivity) {
+        if (checkConnectivity(connectivity) == FOUR_CONNECTED) {
+            return new int[]{rowLength, -rowLength, 1, -1};
+        }
+        return new int[]{rowLength, -rowLength, 1, -1, rowLength + 1, rowLength - 1, -rowLength + 1, -rowLength - 1};
+    }
+
+    /**
+     * Makes sure the connectivity is one of the two supported.
+     *
+     * @param connectivity is the number of neighbors a pixel is connected to.
+     * @return the same connectivity.
+     * @throws IllegalArgumentException if it is neither 4 nor 8.
+     */
+    public static int checkConnectivity(int connectivity) {
+        if (connectivity != FOUR_CONNECTED && connectivity != EIGHT_CONNECTED) {
+            throw new IllegalArgumentException("Connectivity shall be 4 or 8: " + connectivity);
+        }
+        return connectivity;
+    }
+
+    /**
+     * Says whether the pixel has non-background color.
+     *
+     * @param index is the index of the pixel in the mask.
+     * @return true if the pixel is a foreground pixel.
+     */
+    public boolean isForeground(int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Says whether the image pixel has non-background color.
+     *
+     * @param x is the x-coordinate of the image pixel.
+     * @param y is the y-coordinate of the image pixel.
+     * @return true if the pixel is a foreground pixel.
+     */
+    public boolean isForeground(int x, int y) {
+        return isForeground((y + 1) * rowLength + x + 1);
+    }
+
+    /**
+     * Marks the pixel as a foreground pixel.
+     *
+     * @param index is the index of the pixel in the mask.
+     */
+    public void setForeground(int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Marks all pixels of the range as foreground pixels, whole words at once.
+     *
+     * @param from is the index of the first pixel of the range.
+     * @param to   is the index of the first pixel after the range.
+     */
+    public void setForeground(int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long firstBits = -1L << from;
+        long lastBits = -1L >>> (63 - ((to - 1) & 63));
+        if (firstWord == lastWord) {
+            bits[firstWord] |= firstBits & lastBits;
+            return;
+        }
+        bits[firstWord] |= firstBits;
+        Arrays.fill(bits, firstWord + 1, lastWord, -1L);
+        bits[lastWord] |= lastBits;
+    }
+
+    /**
+     * Marks the pixel as a background pixel.
+     *
+     * @param index is the index of the pixel in the mask.
+     */
+    public void clearForeground(int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    /**
+     * Finds the first pixel of non-background color in the range.
+     * Whole words of background pixels are skipped at once.
+     *
+     * @param from is the index of the first pixel of the range.
+     * @param to   is the index of the first pixel after the range.
+     * @return the index of the found pixel or {to} if there is none.
+     */
+    public int nextForeground(int from, int to) {
+        if (from >= to) {
+            return to;
+        }
+        int word = from >>> 6;
+        long wordBits = bits[word] & (-1L << from);
+        while (wordBits == 0) {
+            word++;
+            if (word << 6 >= to) {
+                return to;
+            }
+            wordBits = bits[word];
+        }
+        return Math.min(to, (word << 6) + Long.numberOfTrailingZeros(wordBits));
+    }
+
+    /**
+     * Finds the first pixel of background color in the range.
+     * Whole words of foreground pixels are skipped at once.
+     *
+     * @param from is the index of the first pixel of the range.
+     * @param to   is the index of the first pixel after the range.
+     * @return the index of the found pixel or {to} if there is none.
+     */
+    public int nextBackground(int from, int to) {
+        if (from >= to) {
+            return to;
+        }
+        int word = from >>> 6;
+        long wordBits = ~bits[word] & (-1L << from);
+        while (wordBits == 0) {
+            word++;
+            if (word << 6 >= to) {
+                return to;
+            }
+            wordBits = ~bits[word];
+        }
+        return Math.min(to, (word << 6) + Long.numberOfTrailingZeros(wordBits));
+    }
+
+    /**
+     * @return the width of the image.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the image.
+     */
+    public int getHeight() {
+        return height;
+    }
+}
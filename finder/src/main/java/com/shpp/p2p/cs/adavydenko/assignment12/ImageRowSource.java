@@ -0,0 +1,30 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Gives the pixels of an image row by row from the top one to the bottom one,
+ * so an image is read in one pass without keeping more than a row of it.
+ */
+interface ImageRowSource extends Closeable {
+
+    /**
+     * @return the width of the image.
+     */
+    int getWidth();
+
+    /**
+     * @return the height of the image.
+     */
+    int getHeight();
+
+    /**
+     * Reads the next row of the image.
+     *
+     * @param argb   is the array to put the ARGB colors of the row pixels to.
+     * @param offset is the index of the first pixel of the row in the array.
+     * @throws IOException if the image can not be read or all rows are already read.
+     */
+    void readRow(int[] argb, int offset) throws IOException;
+}
@@ -0,0 +1,104 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.Arrays;
+
+/**
+ * A single map shared by all silhouettes of the image which says what silhouette
+ * each pixel belongs to. Every cell keeps the id of the silhouette or zero if the
+ * pixel belongs to none of them.
+ * <p>
+ * The map has the same one-pixel-thick edges as the image array, so the cell of the
+ * image pixel (x, y) is stored at index (y + 1) * rowLength + (x + 1).
+ */
+public class LabelMap {
+
+    /**
+     * The label of the pixels that do not belong to any silhouette.
+     */
+    public static final int NO_SILHOUETTE = 0;
+
+    /**
+     * Width and height of the image the map was built for.
+     */
+    protected int width;
+    protected int height;
+
+    /**
+     * The length of one row of the map including both edge cells.
+     */
+    protected int rowLength;
+
+    /**
+     * Silhouette ids of all pixels stored row after row. The array can be longer than
+     * the image needs if the map was used for a larger image before, its extra cells
+     * are always NO_SILHOUETTE.
+     */
+    protected int[] labels;
+
+    /**
+     * Creates a map with all pixels belonging to no silhouette.
+     *
+     * @param width  is the width of the image.
+     * @param height is the height of the image.
+     */
+    public LabelMap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.rowLength = width + 2;
+        this.labels = new int[rowLength * (height + 2)];
+    }
+
+    /**
+     * Marks all pixels as belonging to no silhouette and changes the size of the image
+     * the map is for. The array of the map is reused if it is long enough, otherwise
+     * a new one is created.
+     *
+     * @param width  is the width of the image.
+     * @param height is the height of the image.
+     */
+    public void reset(int width, int height) {
+        int usedLength = getLength();
+        this.width = width;
+        this.height = height;
+        this.rowLength = width + 2;
+        int length = getLength();
+        if (labels.length < length) {
+            labels = new int[length];
+        } else {
+            // Clears the cells of the previous image too, so no cell is marked outside of the new one
+            Arrays.fill(labels, 0, Math.max(length, usedLength), NO_SILHOUETTE);
+        }
+    }
+
+    /**
+     * @return the number of cells of the map including the edges.
+     */
+    public int getLength() {
+        return rowLength * (height + 2);
+    }
+
+    /**
+     * Gives the id of the silhouette the image pixel belongs to.
+     *
+     * @param x is the x-coordinate of the image pixel.
+     * @param y is the y-coordinate of the image pixel.
+     * @return the silhouette id or NO_SILHOUETTE.
+     */
+    public int getLabel(int x, int y) {
+        return labels[(y + 1) * rowLength + x + 1];
+    }
+
+    /**
+     * @return the width of the image.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the image.
+     */
+    public int getHeight() {
+        return height;
+    }
+}
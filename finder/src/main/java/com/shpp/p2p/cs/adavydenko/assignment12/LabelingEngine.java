@@ -0,0 +1,33 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.ArrayList;
+
+/**
+ * An algorithm that groups connected pixels of non-background color into silhouettes.
+ * <p>
+ * Whatever algorithm is used, the silhouettes shall be numbered in the order their
+ * first pixels (the topmost, then leftmost ones) appear in the image, starting from one,
+ * and every silhouette pixel shall be marked with the silhouette id in the label map.
+ * This way all engines give exactly the same result for the same image.
+ */
+public interface LabelingEngine {
+
+    /**
+     * Finds all silhouettes in the foreground mask.
+     *
+     * @param mask     is the mask of the pixels of non-background color.
+     * @param labelMap is the map to mark the silhouette pixels in. All its cells shall be NO_SILHOUETTE.
+     * @return the silhouettes ordered by their ids.
+     */
+    ArrayList<Silhouette> findSilhouettes(ForegroundMask mask, LabelMap labelMap);
+
+    /**
+     * Tells how many pixels at most were waiting in the work queue during the last search
+     * of this engine. The engines without a work queue have nothing to report.
+     *
+     * @return the largest number of pixels in the work queue.
+     */
+    default int getMaxQueueDepth() {
+        return 0;
+    }
+}
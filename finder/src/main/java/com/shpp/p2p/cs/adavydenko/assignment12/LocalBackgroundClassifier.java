@@ -0,0 +1,327 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.Arrays;
+
+/**
+ * Decides which pixels belong to silhouettes comparing each pixel with the background
+ * color around it rather than with one color of the whole image, so the photos with
+ * a gradient or a vignette do not turn into one huge silhouette.
+ * <p>
+ * The image is split into square tiles and the median of each channel of each tile is
+ * taken as the background color the tile seems to have. A tile mostly covered by a
+ * silhouette gives the silhouette color though, so the estimates are only trusted if they
+ * are close to the background of a neighbor tile: starting from the edge tiles similar to
+ * the global background color, the background spreads from tile to tile. A tile whose
+ * estimate is similar to the background of the tile it is reached from keeps its estimate,
+ * any other tile takes the background of that neighbor. The trusted tiles spread first,
+ * so the background flows around a silhouette before it goes through it.
+ * <p>
+ * Each pixel is compared with the background interpolated bilinearly between the centers
+ * of the four nearest tiles, so there are no steps at the tile borders. The tiles are
+ * counted in one pass over the pixels and the pixels are classified in another one.
+ */
+public class LocalBackgroundClassifier {
+
+    /**
+     * The default number of pixels per side of a tile.
+     */
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    /**
+     * The number of fractional bits of the interpolation weights.
+     */
+    private static final int WEIGHT_BITS = 8;
+
+    /**
+     * The global background color, the edge tiles similar to it are trusted first.
+     */
+    private final int bgArgb;
+
+    /**
+     * The smallest squared distance to the background color at which
+     * the color of a pixel is deemed a silhouette color.
+     */
+    private final int minSquaredDistance;
+
+    /**
+     * The number of pixels per side of a tile.
+     */
+    private final int tileSize;
+
+    /**
+     * Creates the classifier.
+     *
+     * @param bgArgb              is the ARGB global background color.
+     * @param similarityThreshold is the proportion of similarity at which colors are deemed equivalent.
+     * @param tileSize            is the number of pixels per side of a tile, at least 2.
+     */
+    public LocalBackgroundClassifier(int bgArgb, double similarityThreshold, int tileSize) {
+        if (tileSize < 2) {
+            throw new IllegalArgumentException("The background tile size shall be at least 2: " + tileSize);
+        }
+        this.bgArgb = bgArgb;
+        this.minSquaredDistance = BackgroundClassifier.findMinSquaredDistance(similarityThreshold);
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Classifies every image pixel of the buffer into the mask, which is reset to the size
+     * of the buffer first. The mask keeps the pixel colors of the buffer.
+     *
+     * @param buffer is the buffer with the image pixels.
+     * @param mask   is the mask to save the pixels with non-background colors to.
+     */
+    public void classify(PixelBuffer buffer, ForegroundMask mask) {
+        mask.reset(buffer.width, buffer.height);
+        mask.colors = buffer.pixels;
+        int columns = (buffer.width + tileSize - 1) / tileSize;
+        int rows = (buffer.height + tileSize - 1) / tileSize;
+        int[] backgrounds = spreadBackground(estimateTiles(buffer, columns, rows), columns, rows);
+
+        // The tile column to the left of each pixel center and the weight of the one to the right
+        int[] leftColumns = new int[buffer.width];
+        int[] rightWeights = new int[buffer.width];
+        for (int x = 0; x < buffer.width; x++) {
+            leftColumns[x] = findFirstTile(x, columns);
+            rightWeights[x] = findWeight(x, leftColumns[x], columns);
+        }
+
+        // The background of each tile column interpolated vertically at the current row, channel by channel
+        int[][] rowChannels = new int[4][columns];
+        long[] bits = mask.bits;
+        for (int y = 0; y < buffer.height; y++) {
+            int topRow = findFirstTile(y, rows);
+            int bottomWeight = findWeight(y, topRow, rows);
+            int top = topRow * columns;
+            int bottom = Math.min(topRow + 1, rows - 1) * columns;
+            for (int column = 0; column < columns; column++) {
+                for (int channel = 0; channel < 4; channel++) {
+                    int shift = 24 - 8 * channel;
+                    rowChannels[channel][column] = interpolate((backgrounds[top + column] >>> shift) & 0xFF,
+                            (backgrounds[bottom + column] >>> shift) & 0xFF, bottomWeight);
+                }
+            }
+
+            int rowStart = (y + 1) * buffer.rowLength + 1;
+            for (int x = 0; x < buffer.width; x++) {
+                int left = leftColumns[x];
+                int right = Math.min(left + 1, columns - 1);
+                int weight = rightWeights[x];
+                int argb = buffer.pixels[rowStart + x];
+                // The interpolated channels are multiplied by 256 twice, once per axis
+                int alpha = (argb >>> 24) - (interpolate(rowChannels[0][left], rowChannels[0][right], weight)
+                        >> 2 * WEIGHT_BITS);
+                int red = ((argb >> 16) & 0xFF) - (interpolate(rowChannels[1][left], rowChannels[1][right], weight)
+                        >> 2 * WEIGHT_BITS);
+                int green = ((argb >> 8) & 0xFF) - (interpolate(rowChannels[2][left], rowChannels[2][right], weight)
+                        >> 2 * WEIGHT_BITS);
+                int blue = (argb & 0xFF) - (interpolate(rowChannels[3][left], rowChannels[3][right], weight)
+                        >> 2 * WEIGHT_BITS);
+                long foreground = (minSquaredDistance - 1 - (red * red + green * green + blue * blue + alpha * alpha))
+                        >>> 31;
+                bits[(rowStart + x) >>> 6] |= foreground << (rowStart + x);
+            }
+        }
+    }
+
+    /**
+     * Takes the median of each channel of each tile as the background the tile seems to have.
+     *
+     * @param buffer  is the buffer with the image pixels.
+     * @param columns is the number of tiles in a row.
+     * @param rows    is the number of rows of the tiles.
+     * @return the ARGB estimates of the tiles row after row.
+     */
+    private int[] estimateTiles(PixelBuffer buffer, int columns, int rows) {
+        int[] estimates = new int[columns * rows];
+        // The number of pixels having each value of each channel in every tile of the current tile row
+        int[][] channelCounts = new int[columns][4 * 256];
+
+        for (int row = 0; row < rows; row++) {
+            int top = row * tileSize;
+            int bottom = Math.min(top + tileSize, buffer.height);
+            for (int[] counts : channelCounts) {
+                Arrays.fill(counts, 0);
+            }
+            for (int y = top; y < bottom; y++) {
+                int rowStart = (y + 1) * buffer.rowLength + 1;
+                for (int column = 0; column < columns; column++) {
+                    int[] counts = channelCounts[column];
+                    int end = rowStart + Math.min((column + 1) * tileSize, buffer.width);
+                    for (int pixel = rowStart + column * tileSize; pixel < end; pixel++) {
+                        int argb = buffer.pixels[pixel];
+                        counts[argb >>> 24]++;
+                        counts[256 + ((argb >> 16) & 0xFF)]++;
+                        counts[512 + ((argb >> 8) & 0xFF)]++;
+                        counts[768 + (argb & 0xFF)]++;
+                    }
+                }
+            }
+            for (int column = 0; column < columns; column++) {
+                int pixels = (bottom - top) * (Math.min((column + 1) * tileSize, buffer.width) - column * tileSize);
+                estimates[row * columns + column] = median(channelCounts[column], pixels);
+            }
+        }
+        return estimates;
+    }
+
+    /**
+     * Finds the median of each channel from the channel value counts. If the number
+     * of pixels is even, the lower of the two middle values is taken.
+     *
+     * @param counts are the counts of the 256 values of alpha, red, green and blue one after another.
+     * @param pixels is the number of pixels counted.
+     * @return the ARGB color made of the channel medians.
+     */
+    private static int median(int[] counts, int pixels) {
+        int median = 0;
+        for (int channel = 0; channel < 4; channel++) {
+            int middle = (pixels - 1) / 2;
+            int value = 0;
+            while (middle >= counts[channel * 256 + value]) {
+                middle -= counts[channel * 256 + value];
+                value++;
+            }
+            median |= value << (24 - 8 * channel);
+        }
+        return median;
+    }
+
+    /**
+     * Spreads the background from the trusted edge tiles to all tiles. If no edge tile is
+     * similar to the global background color, every tile gets the global background color.
+     *
+     * @param estimates are the ARGB estimates of the tiles row after row.
+     * @param columns   is the number of tiles in a row.
+     * @param rows      is the number of rows of the tiles.
+     * @return the ARGB backgrounds of the tiles row after row.
+     */
+    private int[] spreadBackground(int[] estimates, int columns, int rows) {
+        int[] backgrounds = new int[estimates.length];
+        boolean[] reached = new boolean[estimates.length];
+        // The tiles are kept as their indexes, so no tile is boxed or wrapped in an array
+        PixelQueue trusted = new PixelQueue();
+        PixelQueue inherited = new PixelQueue();
+
+        for (int tile = 0; tile < estimates.length; tile++) {
+            int row = tile / columns;
+            int column = tile % columns;
+            boolean edge = row == 0 || row == rows - 1 || column == 0 || column == columns - 1;
+            if (edge && squaredDistance(estimates[tile], bgArgb) < minSquaredDistance) {
+                backgrounds[tile] = estimates[tile];
+                reached[tile] = true;
+                trusted.push(tile);
+            }
+        }
+        if (trusted.isEmpty()) {
+            Arrays.fill(backgrounds, bgArgb);
+            return backgrounds;
+        }
+
+        while (!trusted.isEmpty() || !inherited.isEmpty()) {
+            int tile = !trusted.isEmpty() ? trusted.poll() : inherited.poll();
+            int row = tile / columns;
+            int column = tile % columns;
+            if (row > 0) {
+                spreadTo(tile - columns, backgrounds[tile], estimates, backgrounds, reached, trusted, inherited);
+            }
+            if (row < rows - 1) {
+                spreadTo(tile + columns, backgrounds[tile], estimates, backgrounds, reached, trusted, inherited);
+            }
+            if (column > 0) {
+                spreadTo(tile - 1, backgrounds[tile], estimates, backgrounds, reached, trusted, inherited);
+            }
+            if (column < columns - 1) {
+                spreadTo(tile + 1, backgrounds[tile], estimates, backgrounds, reached, trusted, inherited);
+            }
+        }
+        return backgrounds;
+    }
+
+    /**
+     * Spreads the background to the neighbor tile if it is not reached yet. The neighbor keeps
+     * its estimate if it is similar to the background it is reached from, otherwise it takes
+     * that background.
+     *
+     * @param neighbor    is the index of the neighbor tile.
+     * @param background  is the ARGB background of the tile the neighbor is reached from.
+     * @param estimates   are the ARGB estimates of the tiles.
+     * @param backgrounds are the ARGB backgrounds of the tiles.
+     * @param reached     says which tiles are reached already.
+     * @param trusted     are the tiles keeping their estimates waiting to spread the background.
+     * @param inherited   are the tiles with an inherited background waiting to spread it.
+     */
+    private void spreadTo(int neighbor, int background, int[] estimates, int[] backgrounds, boolean[] reached,
+                          PixelQueue trusted, PixelQueue inherited) {
+        if (reached[neighbor]) {
+            return;
+        }
+        reached[neighbor] = true;
+        if (squaredDistance(estimates[neighbor], background) < minSquaredDistance) {
+            backgrounds[neighbor] = estimates[neighbor];
+            trusted.push(neighbor);
+        } else {
+            backgrounds[neighbor] = background;
+            inherited.push(neighbor);
+        }
+    }
+
+    /**
+     * Finds the tile whose center is the last one before the pixel center along one axis.
+     * Before the first center the first tile is taken, after the last one the last tile.
+     *
+     * @param position is the coordinate of the pixel.
+     * @param tiles    is the number of tiles along the axis.
+     * @return the index of the tile.
+     */
+    private int findFirstTile(int position, int tiles) {
+        // Twice the distance from the center of the first tile, so the half-pixel centers stay integer
+        int offset = 2 * position + 1 - tileSize;
+        return offset <= 0 ? 0 : Math.min(offset / (2 * tileSize), tiles - 1);
+    }
+
+    /**
+     * Finds how close the pixel center is to the center of the tile after the first one.
+     *
+     * @param position  is the coordinate of the pixel.
+     * @param firstTile is the tile found by findFirstTile.
+     * @param tiles     is the number of tiles along the axis.
+     * @return the weight of the next tile, from 0 to 256, or 0 if there is no next tile
+     * or the pixel is before the first center.
+     */
+    private int findWeight(int position, int firstTile, int tiles) {
+        int offset = 2 * position + 1 - tileSize - firstTile * 2 * tileSize;
+        if (offset <= 0 || firstTile == tiles - 1) {
+            return 0;
+        }
+        return (offset << WEIGHT_BITS) / (2 * tileSize);
+    }
+
+    /**
+     * Mixes two values with the weight of the second one.
+     *
+     * @param first  is the first value.
+     * @param second is the second value.
+     * @param weight is the weight of the second value, from 0 to 256.
+     * @return the mixed value multiplied by 256.
+     */
+    private static int interpolate(int first, int second, int weight) {
+        return first * ((1 << WEIGHT_BITS) - weight) + second * weight;
+    }
+
+    /**
+     * Calculates the squared distance between two colors.
+     *
+     * @param first  is the first ARGB color.
+     * @param second is the second ARGB color.
+     * @return the sum of squared differences of the four channels.
+     */
+    private static int squaredDistance(int first, int second) {
+        int distance = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int difference = ((first >>> shift) & 0xFF) - ((second >>> shift) & 0xFF);
+            distance += difference * difference;
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,224 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Finds silhouettes on several threads at once.
+ * <p>
+ * The image is split into horizontal strips and the silhouettes of each strip are
+ * found independently with the depth-first search. A silhouette crossing a strip
+ * border is found as several parts, so afterwards the parts touching each other
+ * across the borders are joined with the union-find structure. At last the parts
+ * are renumbered so that the ids are the same as the sequential search gives.
+ * <p>
+ * The threads are taken from a pool shared by all labelers of the same parallelism,
+ * and the labeler keeps the strip searches between the images, so a labeler kept
+ * in a workspace does not start threads or allocate work queues for each image.
+ */
+public class ParallelStripLabeler implements LabelingEngine {
+
+    /**
+     * The smallest number of rows a strip has. Thinner strips make
+     * the joining of the parts more expensive than the search itself.
+     */
+    private static final int MIN_STRIP_HEIGHT = 64;
+
+    /**
+     * The number of strips per thread. A few strips per thread keep all threads
+     * busy if the silhouettes are unevenly spread through the image.
+     */
+    private static final int STRIPS_PER_THREAD = 4;
+
+    /**
+     * The thread pools by their parallelism. The pools live as long as the program,
+     * their threads are daemons and quit on their own after some time without work.
+     */
+    private static final ConcurrentHashMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    /**
+     * The number of threads searching for silhouettes.
+     */
+    private final int parallelism;
+
+    /**
+     * The number of neighbors a pixel is connected to, 4 or 8.
+     */
+    private final int connectivity;
+
+    /**
+     * The largest work queue of the strip searches.
+     */
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    /**
+     * The pool running the strip searches.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The search of each strip, kept with their work queues for the next images.
+     */
+    private final ArrayList<DepthFirstLabeler> stripLabelers = new ArrayList<>();
+
+    /**
+     * Creates the labeler.
+     *
+     * @param parallelism is the number of threads to use.
+     */
+    public ParallelStripLabeler(int parallelism) {
+        this(parallelism, ForegroundMask.FOUR_CONNECTED);
+    }
+
+    /**
+     * Creates the labeler.
+     *
+     * @param parallelism  is the number of threads to use.
+     * @param connectivity is the number of neighbors a pixel is connected to, 4 or 8.
+     */
+    public ParallelStripLabeler(int parallelism, int connectivity) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism shall be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.connectivity = ForegroundMask.checkConnectivity(connectivity);
+        this.pool = POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    @Override
+    public ArrayList<Silhouette> findSilhouettes(ForegroundMask mask, LabelMap labelMap) {
+        maxQueueDepth.set(0);
+        int stripCount = Math.max(1, Math.min(parallelism * STRIPS_PER_THREAD, mask.height / MIN_STRIP_HEIGHT));
+
+        // The first row of each strip, the last cell is the row after the last strip
+        int[] firstRows = new int[stripCount + 1];
+        for (int strip = 0; strip <= stripCount; strip++) {
+            firstRows[strip] = 1 + (int) ((long) strip * mask.height / stripCount);
+        }
+
+        while (stripLabelers.size() < stripCount) {
+            stripLabelers.add(new DepthFirstLabeler(connectivity));
+        }
+
+        // Finds parts of the silhouettes in each strip
+        List<ArrayList<Silhouette>> stripParts = runInParallel(pool, stripCount,
+                strip -> {
+                    DepthFirstLabeler labeler = stripLabelers.get(strip);
+                    ArrayList<Silhouette> found = labeler.findSilhouettes(mask, labelMap,
+                            firstRows[strip], firstRows[strip + 1] - 1);
+                    maxQueueDepth.accumulateAndGet(labeler.getMaxQueueDepth(), Math::max);
+                    return found;
+                });
+
+        // Numbers all parts of all strips one after another
+        int[] offsets = new int[stripCount];
+        ArrayList<Silhouette> parts = new ArrayList<>();
+        for (int strip = 0; strip < stripCount; strip++) {
+            offsets[strip] = parts.size();
+            parts.addAll(stripParts.get(strip));
+        }
+
+        // Joins the parts touching each other across the strip borders
+        ConcurrentUnionFind unionFind = new ConcurrentUnionFind(parts.size());
+        runInParallel(pool, stripCount - 1, border -> {
+            joinAcrossBorder(labelMap, firstRows[border + 1], offsets[border], offsets[border + 1],
+                    connectivity, unionFind);
+            return null;
+        });
+
+        // Gives final ids to the parts and collects whole silhouettes
+        ArrayList<Silhouette> silhouettes = new ArrayList<>();
+        int[] finalIds = Silhouette.joinParts(parts, unionFind::find, labelMap, silhouettes);
+
+        // Marks the pixels of each strip with the final ids
+        runInParallel(pool, stripCount, strip -> {
+            relabelStrip(labelMap, firstRows[strip], firstRows[strip + 1] - 1, offsets[strip], finalIds);
+            return null;
+        });
+        return silhouettes;
+    }
+
+    @Override
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * Joins the parts of silhouettes which have pixels right above and below the border,
+     * or in the 8-connected mode also diagonally across it.
+     *
+     * @param labelMap     is the map with the ids of the parts within their strips.
+     * @param row          is the first row below the border.
+     * @param offsetAbove  is the number of parts in the strips before the strip above the border.
+     * @param offsetBelow  is the number of parts in the strips before the strip below the border.
+     * @param connectivity is the number of neighbors a pixel is connected to, 4 or 8.
+     * @param unionFind    is the structure to join the parts in.
+     */
+    private static void joinAcrossBorder(LabelMap labelMap, int row, int offsetAbove, int offsetBelow,
+                                         int connectivity, ConcurrentUnionFind unionFind) {
+        int[] labels = labelMap.labels;
+        int rowStart = row * labelMap.rowLength + 1;
+        // How far to the sides the pixels above still touch the pixel below, the edges make this safe
+        int reach = connectivity == ForegroundMask.EIGHT_CONNECTED ? 1 : 0;
+
+        for (int pixel = rowStart; pixel < rowStart + labelMap.width; pixel++) {
+            int labelBelow = labels[pixel];
+            if (labelBelow == LabelMap.NO_SILHOUETTE) {
+                continue;
+            }
+            for (int above = pixel - labelMap.rowLength - reach; above <= pixel - labelMap.rowLength + reach; above++) {
+                int labelAbove = labels[above];
+                if (labelAbove != LabelMap.NO_SILHOUETTE) {
+                    unionFind.union(offsetAbove + labelAbove - 1, offsetBelow + labelBelow - 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the ids of the parts in the strip with the final silhouette ids.
+     *
+     * @param labelMap is the map with the ids of the parts within their strips.
+     * @param firstRow is the first row of the strip.
+     * @param lastRow  is the last row of the strip.
+     * @param offset   is the number of parts in the strips before this one.
+     * @param finalIds is the final silhouette id of each part.
+     */
+    private static void relabelStrip(LabelMap labelMap, int firstRow, int lastRow, int offset, int[] finalIds) {
+        int[] labels = labelMap.labels;
+
+        for (int pixel = firstRow * labelMap.rowLength; pixel < (lastRow + 1) * labelMap.rowLength; pixel++) {
+            if (labels[pixel] != LabelMap.NO_SILHOUETTE) {
+                labels[pixel] = finalIds[offset + labels[pixel] - 1];
+            }
+        }
+    }
+
+    /**
+     * Runs the tasks in the pool and waits for all of them to finish.
+     *
+     * @param pool      is the pool to run the tasks in.
+     * @param taskCount is the number of tasks.
+     * @param task      is the task taking its number and returning its result.
+     * @param <T>       is the type of the task results.
+     * @return the results of the tasks in the order of their numbers.
+     */
+    static <T> List<T> runInParallel(ForkJoinPool pool, int taskCount, IntFunction<T> task) {
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            int taskNumber = i;
+            tasks.add(pool.submit(() -> task.apply(taskNumber)));
+        }
+
+        List<T> results = new ArrayList<>(taskCount);
+        for (ForkJoinTask<T> forkJoinTask : tasks) {
+            results.add(forkJoinTask.join());
+        }
+        return results;
+    }
+}
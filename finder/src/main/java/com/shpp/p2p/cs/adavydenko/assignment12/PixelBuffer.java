@@ -0,0 +1,236 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * The colors of all pixels of the image kept as packed ARGB ints
+ * (the same format BufferedImage.getRGB returns) in one flat array.
+ * <p>
+ * Like the label map, the buffer has one-pixel-thick edges around the image,
+ * so the image pixel (x, y) is stored at index (y + 1) * rowLength + (x + 1)
+ * and every image pixel has all four neighbors inside the buffer.
+ * <p>
+ * The ideas of reading the raster data directly were taken from:
+ * https://docs.oracle.com/javase/8/docs/api/java/awt/image/DataBufferInt.html
+ * https://docs.oracle.com/javase/8/docs/api/java/awt/image/ComponentSampleModel.html
+ */
+public class PixelBuffer {
+
+    /**
+     * The alpha channel value of a fully opaque pixel.
+     */
+    private static final int OPAQUE = 0xFF000000;
+
+    /**
+     * Width and height of the image.
+     */
+    protected int width;
+    protected int height;
+
+    /**
+     * The length of one row of the buffer including both edge cells.
+     */
+    protected int rowLength;
+
+    /**
+     * ARGB colors of all pixels stored row after row. The array can be longer
+     * than the image needs if the buffer was used for a larger image before.
+     */
+    protected int[] pixels;
+
+    /**
+     * Creates a buffer for the image of the given size with all pixels transparent black.
+     *
+     * @param width  is the width of the image.
+     * @param height is the height of the image.
+     */
+    public PixelBuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.rowLength = width + 2;
+        this.pixels = new int[rowLength * (height + 2)];
+    }
+
+    /**
+     * Copies all pixels of the image to a new buffer. If the image keeps its pixels
+     * in one of the common layouts, the raster data is copied directly, otherwise
+     * the pixels are read row by row with getRGB.
+     *
+     * @param image is the image to read.
+     * @return the buffer with the image pixels, its edges are not filled yet.
+     */
+    public static PixelBuffer fromImage(BufferedImage image) {
+        PixelBuffer buffer = new PixelBuffer(image.getWidth(), image.getHeight());
+        buffer.copyImage(image);
+        return buffer;
+    }
+
+    /**
+     * Copies all pixels of the image to this buffer replacing its pixels. The array
+     * of the buffer is only replaced if the image does not fit into it.
+     *
+     * @param image is the image to read.
+     */
+    public void readImage(BufferedImage image) {
+        resize(image.getWidth(), image.getHeight());
+        copyImage(image);
+    }
+
+    /**
+     * Changes the size of the image the buffer keeps. The array of the buffer is
+     * reused if it is long enough, otherwise a new one is created. The pixels are
+     * not cleared, they shall all be written afterwards.
+     *
+     * @param width  is the width of the image.
+     * @param height is the height of the image.
+     */
+    public void resize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.rowLength = width + 2;
+        int length = rowLength * (height + 2);
+        if (pixels.length < length) {
+            pixels = new int[length];
+        }
+    }
+
+    /**
+     * Copies all pixels of the image of the buffer size to the buffer.
+     *
+     * @param image is the image to read.
+     */
+    private void copyImage(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+
+        // Sub-images share the raster of the parent image, so their data does not start at zero
+        boolean rasterStartsAtZero = raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0;
+
+        if (rasterStartsAtZero && (image.getType() == BufferedImage.TYPE_INT_ARGB
+                || image.getType() == BufferedImage.TYPE_INT_RGB)) {
+            copyIntRaster(raster, image.getType() == BufferedImage.TYPE_INT_RGB);
+        } else if (rasterStartsAtZero && (image.getType() == BufferedImage.TYPE_3BYTE_BGR
+                || image.getType() == BufferedImage.TYPE_4BYTE_ABGR)) {
+            copyByteRaster(raster);
+        } else {
+            copyRows(image);
+        }
+    }
+
+    /**
+     * Copies the pixels of an image which keeps each pixel as one int.
+     *
+     * @param raster the raster of the image.
+     * @param opaque true if the image has no alpha channel.
+     */
+    private void copyIntRaster(WritableRaster raster, boolean opaque) {
+        SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+        int[] data = dataBuffer.getData();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int alpha = opaque ? OPAQUE : 0;
+
+        for (int y = 0; y < height; y++) {
+            int source = dataBuffer.getOffset() + y * scanlineStride;
+            int target = (y + 1) * rowLength + 1;
+            if (opaque) {
+                for (int x = 0; x < width; x++) {
+                    pixels[target + x] = data[source + x] | alpha;
+                }
+            } else {
+                System.arraycopy(data, source, pixels, target, width);
+            }
+        }
+    }
+
+    /**
+     * Copies the pixels of an image which keeps each channel of a pixel as a separate byte.
+     *
+     * @param raster the raster of the image.
+     */
+    private void copyByteRaster(WritableRaster raster) {
+        ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] data = dataBuffer.getData();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int pixelStride = sampleModel.getPixelStride();
+
+        // Offsets of the red, green, blue and (if present) alpha bytes inside a pixel
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        int red = bandOffsets[0];
+        int green = bandOffsets[1];
+        int blue = bandOffsets[2];
+        boolean hasAlpha = bandOffsets.length > 3;
+        int alpha = hasAlpha ? bandOffsets[3] : 0;
+
+        for (int y = 0; y < height; y++) {
+            int source = dataBuffer.getOffset() + y * scanlineStride;
+            int target = (y + 1) * rowLength + 1;
+            for (int x = 0; x < width; x++, source += pixelStride) {
+                int a = hasAlpha ? (data[source + alpha] & 0xFF) << 24 : OPAQUE;
+                pixels[target + x] = a
+                        | (data[source + red] & 0xFF) << 16
+                        | (data[source + green] & 0xFF) << 8
+                        | (data[source + blue] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Copies the pixels of an image of any other type converting them to ARGB with getRGB.
+     *
+     * @param image is the image to read.
+     */
+    private void copyRows(BufferedImage image) {
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, pixels, (y + 1) * rowLength + 1, width);
+        }
+    }
+
+    /**
+     * Fills the very top, bottom, left and right edges of the buffer with the color.
+     *
+     * @param argb is the color to fill the edges with.
+     */
+    public void fillEdges(int argb) {
+        int lastRow = (height + 1) * rowLength;
+        for (int x = 0; x < rowLength; x++) {
+            pixels[x] = argb;
+            pixels[lastRow + x] = argb;
+        }
+        for (int y = 1; y <= height; y++) {
+            pixels[y * rowLength] = argb;
+            pixels[y * rowLength + rowLength - 1] = argb;
+        }
+    }
+
+    /**
+     * Gives the color of the image pixel.
+     *
+     * @param x is the x-coordinate of the image pixel.
+     * @param y is the y-coordinate of the image pixel.
+     * @return the ARGB color of the pixel.
+     */
+    public int getPixel(int x, int y) {
+        return pixels[(y + 1) * rowLength + x + 1];
+    }
+
+    /**
+     * @return the width of the image.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the image.
+     */
+    public int getHeight() {
+        return height;
+    }
+}
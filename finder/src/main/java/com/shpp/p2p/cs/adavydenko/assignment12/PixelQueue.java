@@ -0,0 +1,122 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.Arrays;
+
+/**
+ * A growable work queue of pixels the labeling algorithm still has to inspect.
+ * Each pixel is stored as a single packed int (row * rowLength + column) instead
+ * of an int[] object, so pushing a pixel never allocates anything unless the
+ * underlying array has to grow.
+ * <p>
+ * The pixels can be taken from the queue either in the last-in-first-out order
+ * with pop, then the queue drives a depth-first search, or in the first-in-first-out
+ * order with poll, then the queue drives a breadth-first search.
+ */
+public class PixelQueue {
+
+    /**
+     * The number of pixels the queue can hold before it grows for the first time.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Packed coordinates of the pixels waiting for inspection.
+     */
+    private int[] pixels = new int[INITIAL_CAPACITY];
+
+    /**
+     * The position of the first pixel in the queue.
+     */
+    private int head = 0;
+
+    /**
+     * The position right after the last pixel in the queue.
+     */
+    private int tail = 0;
+
+    /**
+     * The largest number of pixels the queue has held at once.
+     */
+    private int maxSize = 0;
+
+    /**
+     * Adds a pixel to the queue. If the array is full, the pixels are moved to
+     * its beginning or, if there is no free space there either, the array is doubled.
+     *
+     * @param pixel is the packed coordinates of the pixel.
+     */
+    public void push(int pixel) {
+        if (tail == pixels.length) {
+            if (head > pixels.length / 2) {
+                System.arraycopy(pixels, head, pixels, 0, tail - head);
+                tail -= head;
+                head = 0;
+            } else {
+                pixels = Arrays.copyOf(pixels, pixels.length * 2);
+            }
+        }
+        pixels[tail++] = pixel;
+        if (tail - head > maxSize) {
+            maxSize = tail - head;
+        }
+    }
+
+    /**
+     * Takes the pixel that was added to the queue last.
+     *
+     * @return the packed coordinates of the pixel.
+     */
+    public int pop() {
+        int pixel = pixels[--tail];
+        if (tail == head) {
+            clear();
+        }
+        return pixel;
+    }
+
+    /**
+     * Takes the pixel that was added to the queue first.
+     *
+     * @return the packed coordinates of the pixel.
+     */
+    public int poll() {
+        int pixel = pixels[head++];
+        if (tail == head) {
+            clear();
+        }
+        return pixel;
+    }
+
+    /**
+     * Says whether there are any pixels left to inspect.
+     *
+     * @return true if the queue is empty.
+     */
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * @return the largest number of pixels the queue has held at once since it was
+     * created or since the last reset.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Starts measuring the largest number of pixels held at once anew, so a queue reused
+     * for many images reports the depth of each one.
+     */
+    public void resetMaxSize() {
+        maxSize = tail - head;
+    }
+
+    /**
+     * Removes all pixels from the queue keeping the already allocated array.
+     */
+    public void clear() {
+        head = 0;
+        tail = 0;
+    }
+}
@@ -0,0 +1,16 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+/**
+ * An action performed on every pixel of a silhouette.
+ */
+@FunctionalInterface
+public interface PixelVisitor {
+
+    /**
+     * Is called once for each pixel of the silhouette.
+     *
+     * @param x is the x-coordinate of the image pixel.
+     * @param y is the y-coordinate of the image pixel.
+     */
+    void visit(int x, int y);
+}
@@ -0,0 +1,382 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads a PNG image row by row in one pass, so the rows of a huge image are decoded
+ * once each and in order.
+ * <p>
+ * ImageIO can read a region of a PNG image, but it decompresses the image from its
+ * first row every time, so reading a tall image band by band decodes the rows above
+ * each band again and again. This reader inflates the IDAT chunks as one stream and
+ * unfilters each row with the previous one, which is all PNG needs to go down the image.
+ * <p>
+ * Only the layouts whose colors ImageIO gives as they are stored can be read: 8-bit
+ * RGB, 8-bit RGBA and 8-bit palette images (with the palette transparency), not interlaced.
+ * Other images shall be read with ImageIO, so every mode sees the same colors.
+ * The CRCs of the chunks are not checked, like ImageIO does not check them.
+ */
+public class PngRowReader implements ImageRowSource {
+
+    /**
+     * The color types of PNG the reader supports.
+     */
+    private static final int RGB = 2;
+    private static final int PALETTE = 3;
+    private static final int RGBA = 6;
+
+    /**
+     * The eight bytes every PNG file starts with.
+     */
+    private static final byte[] SIGNATURE = {(byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+
+    /**
+     * The types of the chunks the reader looks at.
+     */
+    private static final int IHDR = 0x49484452;
+    private static final int PLTE = 0x504C5445;
+    private static final int TRNS = 0x74524E53;
+    private static final int IDAT = 0x49444154;
+
+    /**
+     * Inflates the image data, it is ended when the reader is closed.
+     */
+    private final Inflater inflater = new Inflater();
+
+    /**
+     * The stream of the inflated rows.
+     */
+    private final DataInputStream rows;
+
+    /**
+     * Width and height of the image.
+     */
+    private final int width;
+    private final int height;
+
+    /**
+     * The color type of the image.
+     */
+    private final int colorType;
+
+    /**
+     * The number of bytes of one pixel.
+     */
+    private final int pixelBytes;
+
+    /**
+     * The ARGB colors of the palette, or null if the image has no palette.
+     */
+    private final int[] palette;
+
+    /**
+     * The unfiltered bytes of the current row and of the previous one.
+     */
+    private byte[] row;
+    private byte[] previousRow;
+
+    /**
+     * The number of rows read so far.
+     */
+    private int rowsRead = 0;
+
+    /**
+     * Opens the PNG image if its layout is supported.
+     *
+     * @param file is the image file.
+     * @return the reader positioned at the first row, or null if the file is not a PNG
+     * image or its layout is not supported.
+     * @throws IOException if the file can not be read.
+     */
+    public static PngRowReader open(Path file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        PngRowReader reader = null;
+        try {
+            reader = readHeader(in);
+            return reader;
+        } finally {
+            if (reader == null) {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the chunks before the image data.
+     *
+     * @param in is the stream of the file.
+     * @return the reader positioned at the first row, or null if the layout is not supported.
+     * @throws IOException if the file can not be read.
+     */
+    private static PngRowReader readHeader(DataInputStream in) throws IOException {
+        byte[] signature = new byte[SIGNATURE.length];
+        if (in.readNBytes(signature, 0, signature.length) != signature.length
+                || !Arrays.equals(signature, SIGNATURE)) {
+            return null;
+        }
+        int width = 0;
+        int height = 0;
+        int colorType = -1;
+        int[] palette = null;
+
+        while (true) {
+            int length = in.readInt();
+            int type = in.readInt();
+            if (length < 0) {
+                throw new IOException("Damaged PNG chunk of length " + length);
+            }
+            if (type == IDAT) {
+                if (colorType == PALETTE && palette == null) {
+                    throw new IOException("The palette image has no palette");
+                }
+                return new PngRowReader(in, length, width, height, colorType, palette);
+            }
+            byte[] data = new byte[length];
+            in.readFully(data);
+            in.readInt(); // CRC
+
+            if (type == IHDR) {
+                DataInputStream header = new DataInputStream(new ByteArrayInputStream(data));
+                width = header.readInt();
+                height = header.readInt();
+                int bitDepth = header.readUnsignedByte();
+                colorType = header.readUnsignedByte();
+                header.readUnsignedByte(); // Compression method
+                header.readUnsignedByte(); // Filter method
+                int interlace = header.readUnsignedByte();
+                if (width < 1 || height < 1 || bitDepth != 8 || interlace != 0
+                        || (colorType != RGB && colorType != RGBA && colorType != PALETTE)) {
+                    return null;
+                }
+            } else if (type == PLTE && colorType == PALETTE) {
+                palette = new int[256];
+                for (int i = 0; i < Math.min(length / 3, palette.length); i++) {
+                    palette[i] = 0xFF000000 | (data[3 * i] & 0xFF) << 16 | (data[3 * i + 1] & 0xFF) << 8
+                            | (data[3 * i + 2] & 0xFF);
+                }
+            } else if (type == TRNS) {
+                if (colorType != PALETTE || palette == null) {
+                    return null; // ImageIO turns the transparent color of RGB images into alpha its own way
+                }
+                for (int i = 0; i < Math.min(length, palette.length); i++) {
+                    palette[i] = (data[i] & 0xFF) << 24 | (palette[i] & 0xFFFFFF);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the reader of the image data.
+     *
+     * @param in          is the stream of the file positioned at the data of the first IDAT chunk.
+     * @param firstLength is the length of the first IDAT chunk.
+     * @param width       is the width of the image.
+     * @param height      is the height of the image.
+     * @param colorType   is the color type of the image.
+     * @param palette     is the palette or null.
+     */
+    private PngRowReader(DataInputStream in, int firstLength, int width, int height, int colorType, int[] palette) {
+        this.width = width;
+        this.height = height;
+        this.colorType = colorType;
+        this.palette = palette;
+        this.pixelBytes = colorType == RGBA ? 4 : colorType == RGB ? 3 : 1;
+        this.row = new byte[width * pixelBytes];
+        this.previousRow = new byte[width * pixelBytes];
+        this.rows = new DataInputStream(new InflaterInputStream(new ImageDataStream(in, firstLength),
+                inflater, 64 * 1024));
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Inflates and unfilters the next row and converts its pixels to ARGB.
+     *
+     * @param argb   is the array to put the ARGB colors of the row pixels to.
+     * @param offset is the index of the first pixel of the row in the array.
+     * @throws IOException if the image data is damaged or all rows are already read.
+     */
+    @Override
+    public void readRow(int[] argb, int offset) throws IOException {
+        if (rowsRead == height) {
+            throw new IOException("All " + height + " rows are already read");
+        }
+        byte[] swap = previousRow;
+        previousRow = row;
+        row = swap;
+        try {
+            int filterType = rows.readUnsignedByte();
+            rows.readFully(row);
+            unfilter(filterType);
+        } catch (EOFException e) {
+            throw new IOException("The image data ends at row " + rowsRead + " of " + height, e);
+        }
+        rowsRead++;
+
+        switch (colorType) {
+            case RGBA:
+                for (int x = 0, i = 0; x < width; x++, i += 4) {
+                    argb[offset + x] = (row[i + 3] & 0xFF) << 24 | (row[i] & 0xFF) << 16
+                            | (row[i + 1] & 0xFF) << 8 | (row[i + 2] & 0xFF);
+                }
+                break;
+            case RGB:
+                for (int x = 0, i = 0; x < width; x++, i += 3) {
+                    argb[offset + x] = 0xFF000000 | (row[i] & 0xFF) << 16 | (row[i + 1] & 0xFF) << 8
+                            | (row[i + 2] & 0xFF);
+                }
+                break;
+            default:
+                for (int x = 0; x < width; x++) {
+                    argb[offset + x] = palette[row[x] & 0xFF];
+                }
+        }
+    }
+
+    /**
+     * Undoes the filter of the current row using the previous row, which is all zeros
+     * before the first row.
+     *
+     * @param filterType is the filter type byte of the row.
+     * @throws IOException if the filter type is unknown.
+     */
+    private void unfilter(int filterType) throws IOException {
+        switch (filterType) {
+            case 0: // None
+                break;
+            case 1: // Sub
+                for (int i = pixelBytes; i < row.length; i++) {
+                    row[i] += row[i - pixelBytes];
+                }
+                break;
+            case 2: // Up
+                for (int i = 0; i < row.length; i++) {
+                    row[i] += previousRow[i];
+                }
+                break;
+            case 3: // Average
+                for (int i = 0; i < row.length; i++) {
+                    int left = i >= pixelBytes ? row[i - pixelBytes] & 0xFF : 0;
+                    row[i] += (byte) ((left + (previousRow[i] & 0xFF)) >>> 1);
+                }
+                break;
+            case 4: // Paeth
+                for (int i = 0; i < row.length; i++) {
+                    int left = i >= pixelBytes ? row[i - pixelBytes] & 0xFF : 0;
+                    int up = previousRow[i] & 0xFF;
+                    int upLeft = i >= pixelBytes ? previousRow[i - pixelBytes] & 0xFF : 0;
+                    row[i] += (byte) paeth(left, up, upLeft);
+                }
+                break;
+            default:
+                throw new IOException("Unknown filter type " + filterType + " at row " + rowsRead);
+        }
+    }
+
+    /**
+     * Predicts a byte from its left, upper and upper left neighbors the way the Paeth filter does.
+     *
+     * @param left   is the byte to the left.
+     * @param up     is the byte above.
+     * @param upLeft is the byte above to the left.
+     * @return the neighbor closest to left + up - upLeft.
+     */
+    private static int paeth(int left, int up, int upLeft) {
+        int estimate = left + up - upLeft;
+        int toLeft = Math.abs(estimate - left);
+        int toUp = Math.abs(estimate - up);
+        int toUpLeft = Math.abs(estimate - upLeft);
+        if (toLeft <= toUp && toLeft <= toUpLeft) {
+            return left;
+        }
+        return toUp <= toUpLeft ? up : upLeft;
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if the file can not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            rows.close();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * The data of the consecutive IDAT chunks as one stream, the chunk headers and CRCs skipped.
+     */
+    private static class ImageDataStream extends InputStream {
+
+        /**
+         * The stream of the file.
+         */
+        private final DataInputStream in;
+
+        /**
+         * The number of bytes left in the current chunk, -1 after the last IDAT chunk.
+         */
+        private int remaining;
+
+        /**
+         * Creates the stream.
+         *
+         * @param in          is the stream of the file positioned at the data of the first IDAT chunk.
+         * @param firstLength is the length of the first IDAT chunk.
+         */
+        ImageDataStream(DataInputStream in, int firstLength) {
+            this.in = in;
+            this.remaining = firstLength;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            while (remaining == 0) {
+                in.readInt(); // CRC of the chunk
+                int nextLength = in.readInt();
+                remaining = in.readInt() == IDAT ? nextLength : -1;
+            }
+            if (remaining < 0) {
+                return -1;
+            }
+            int read = in.read(bytes, offset, Math.min(length, remaining));
+            if (read < 0) {
+                throw new EOFException("The file ends inside an IDAT chunk");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a PNG image row by row, so an image of any height is written without
+ * keeping more than one of its rows in memory.
+ * <p>
+ * ImageIO can only write a whole BufferedImage, which for a huge image is as large as
+ * the image itself. This writer takes the bytes of each row as they are made, compresses
+ * them right away and writes the compressed data in IDAT chunks as soon as the deflater
+ * gives it out. The rows are not filtered (filter type 0), which costs some compression
+ * but keeps the writer simple and fast.
+ */
+public class PngRowWriter implements Closeable {
+
+    /**
+     * The color types of PNG the writer supports.
+     */
+    public static final int GRAYSCALE = 0;
+    public static final int RGB = 2;
+    public static final int RGBA = 6;
+
+    /**
+     * The eight bytes every PNG file starts with.
+     */
+    private static final byte[] SIGNATURE = {(byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+
+    /**
+     * The size of the buffer the compressed data is collected in before it is written as a chunk.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The stream the file is written to.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * The number of bytes of one row without the filter type byte.
+     */
+    private final int rowBytes;
+
+    /**
+     * The number of rows of the image.
+     */
+    private final int height;
+
+    /**
+     * Compresses the rows.
+     */
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    /**
+     * The compressed data waiting to be written as a chunk.
+     */
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+
+    /**
+     * The filter type byte written before each row.
+     */
+    private final byte[] filterType = {0};
+
+    /**
+     * The number of rows written so far.
+     */
+    private int rowsWritten = 0;
+
+    /**
+     * Writes the signature and the header of the image.
+     *
+     * @param out       is the stream to write the file to, it is closed with the writer.
+     * @param width     is the width of the image.
+     * @param height    is the height of the image.
+     * @param colorType is GRAYSCALE, RGB or RGBA.
+     * @param bitDepth  is the number of bits of each channel, 8 or 16.
+     * @throws IOException if the stream can not be written.
+     */
+    public PngRowWriter(OutputStream out, int width, int height, int colorType, int bitDepth) throws IOException {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("The image shall have pixels: " + width + "x" + height);
+        }
+        if (bitDepth != 8 && bitDepth != 16) {
+            throw new IllegalArgumentException("Unsupported bit depth: " + bitDepth);
+        }
+        int channels;
+        switch (colorType) {
+            case GRAYSCALE:
+                channels = 1;
+                break;
+            case RGB:
+                channels = 3;
+                break;
+            case RGBA:
+                channels = 4;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported color type: " + colorType);
+        }
+        this.out = new DataOutputStream(out);
+        this.rowBytes = width * channels * bitDepth / 8;
+        this.height = height;
+
+        this.out.write(SIGNATURE);
+        ByteBuffer header = ByteBuffer.allocate(13).putInt(width).putInt(height)
+                .put((byte) bitDepth).put((byte) colorType)
+                .put((byte) 0).put((byte) 0).put((byte) 0); // Deflate, adaptive filters, no interlace
+        writeChunk("IHDR", header.array(), header.capacity());
+    }
+
+    /**
+     * Compresses the next row of the image and writes the compressed data that is ready.
+     *
+     * @param row are the bytes of the row, the channels of each pixel in order, 16-bit values big-endian.
+     * @throws IOException if the stream can not be written.
+     */
+    public void writeRow(byte[] row) throws IOException {
+        if (row.length != rowBytes) {
+            throw new IllegalArgumentException("A row shall have " + rowBytes + " bytes: " + row.length);
+        }
+        if (rowsWritten == height) {
+            throw new IllegalStateException("All " + height + " rows are already written");
+        }
+        deflate(filterType);
+        deflate(row);
+        rowsWritten++;
+    }
+
+    /**
+     * Writes the rest of the compressed data and the end of the file and closes the stream.
+     *
+     * @throws IOException if the stream can not be written or not all rows were written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rowsWritten != height) {
+                throw new IOException("Only " + rowsWritten + " of " + height + " rows were written");
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                if (length > 0) {
+                    writeChunk("IDAT", chunk, length);
+                }
+            }
+            writeChunk("IEND", chunk, 0);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    /**
+     * Gives the bytes to the deflater and writes the compressed data it gives out.
+     *
+     * @param bytes are the uncompressed bytes.
+     * @throws IOException if the stream can not be written.
+     */
+    private void deflate(byte[] bytes) throws IOException {
+        deflater.setInput(bytes);
+        while (!deflater.needsInput()) {
+            int length = deflater.deflate(chunk);
+            if (length > 0) {
+                writeChunk("IDAT", chunk, length);
+            }
+        }
+    }
+
+    /**
+     * Writes one chunk: its length, its type, its data and the CRC of the type and the data.
+     *
+     * @param type   is the four-letter type of the chunk.
+     * @param data   is the array with the data.
+     * @param length is the number of bytes of the data at the start of the array.
+     * @throws IOException if the stream can not be written.
+     */
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+}
@@ -0,0 +1,295 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.Arrays;
+
+/**
+ * Classifies the pixels of a huge image coarse to fine, so only the pixels near
+ * the borders of the large silhouettes are compared with the background color.
+ * <p>
+ * The image is split into square blocks of scale x scale pixels and the center pixel
+ * of each block is classified, which gives the image downsampled by the scale. The
+ * foreground blocks of this small image are labeled, and the candidate regions that
+ * could not hold a silhouette larger than the minimum size even with all blocks around
+ * them are dropped as noise. Afterwards a block is settled if it and all eight blocks
+ * around it have the same class: the settled background blocks are left background without
+ * looking at their pixels, and the settled foreground blocks are marked foreground as a whole.
+ * A thin background gap between two silhouettes can miss all block centers, so the pixels
+ * of the edges of each foreground block are checked first, and the block is not settled
+ * if any of them is a background one. Only the blocks that are not settled are classified
+ * pixel by pixel at full resolution.
+ * <p>
+ * The result is not exact: an object that no block center hits is missed, and a background
+ * hole inside a silhouette that does not reach the edges of a block is filled. That is why the scale shall be
+ * much smaller than the silhouettes searched for, and why the detector can compare the
+ * counts with the full resolution pass on the test images.
+ */
+public class PyramidClassifier {
+
+    /**
+     * The default number of image pixels per side of a block.
+     */
+    public static final int DEFAULT_SCALE = 8;
+
+    /**
+     * The classes of the blocks: background, foreground not labeled yet and labeled foreground.
+     */
+    private static final byte BACKGROUND = 0;
+    private static final byte FOREGROUND = 1;
+    private static final byte LABELED = 2;
+
+    /**
+     * The flags of the foreground blocks having a background pixel in their top row or left column.
+     */
+    private static final byte TOP_GAP = 1;
+    private static final byte LEFT_GAP = 2;
+
+    /**
+     * The classifier of the background color.
+     */
+    private final BackgroundClassifier classifier;
+
+    /**
+     * The number of image pixels per side of a block.
+     */
+    private final int scale;
+
+    /**
+     * The minimum number of pixels of a silhouette.
+     */
+    private final int minimumSize;
+
+    /**
+     * The number of pixels compared with the background color during the last classification.
+     */
+    private long pixelsClassified;
+
+    /**
+     * Creates the classifier.
+     *
+     * @param classifier  is the classifier of the background color.
+     * @param scale       is the number of image pixels per side of a block, at least 2.
+     * @param minimumSize is the minimum number of pixels of a silhouette.
+     */
+    public PyramidClassifier(BackgroundClassifier classifier, int scale, int minimumSize) {
+        if (scale < 2) {
+            throw new IllegalArgumentException("The pyramid scale shall be at least 2: " + scale);
+        }
+        this.classifier = classifier;
+        this.scale = scale;
+        this.minimumSize = minimumSize;
+    }
+
+    /**
+     * Classifies the image pixels of the buffer into the mask, which is reset to the size
+     * of the buffer first. The mask keeps the pixel colors of the buffer like the full
+     * resolution classification does.
+     *
+     * @param buffer is the buffer with the image pixels.
+     * @param mask   is the mask to save the pixels with non-background colors to.
+     */
+    public void classify(PixelBuffer buffer, ForegroundMask mask) {
+        mask.reset(buffer.width, buffer.height);
+        mask.colors = buffer.pixels;
+        int columns = (buffer.width + scale - 1) / scale;
+        int rows = (buffer.height + scale - 1) / scale;
+
+        // The blocks have a one-block-thick background edge like the buffer has a pixel one
+        int gridLength = columns + 2;
+        byte[] blocks = new byte[gridLength * (rows + 2)];
+        for (int row = 0; row < rows; row++) {
+            int y = Math.min(row * scale + scale / 2, buffer.height - 1);
+            for (int column = 0; column < columns; column++) {
+                int x = Math.min(column * scale + scale / 2, buffer.width - 1);
+                if (classifier.isNotSimilarToBackground(buffer.pixels[(y + 1) * buffer.rowLength + x + 1])) {
+                    blocks[(row + 1) * gridLength + column + 1] = FOREGROUND;
+                }
+            }
+        }
+        pixelsClassified = (long) columns * rows;
+        dropSmallRegions(blocks, gridLength);
+        byte[] gaps = findGaps(buffer, blocks, columns, rows, gridLength);
+
+        for (int row = 0; row < rows; row++) {
+            int top = row * scale;
+            int bottom = Math.min(top + scale, buffer.height);
+            for (int column = 0; column < columns; column++) {
+                int block = (row + 1) * gridLength + column + 1;
+                int left = column * scale;
+                int right = Math.min(left + scale, buffer.width);
+                if (!isSettled(blocks, block, gridLength) || hasGap(gaps, block, gridLength)) {
+                    for (int y = top; y < bottom; y++) {
+                        int rowStart = (y + 1) * buffer.rowLength + 1;
+                        classifier.classifyRow(buffer.pixels, mask.bits, rowStart + left, rowStart + right);
+                    }
+                    pixelsClassified += (long) (bottom - top) * (right - left);
+                } else if (blocks[block] != BACKGROUND) {
+                    for (int y = top; y < bottom; y++) {
+                        int rowStart = (y + 1) * buffer.rowLength + 1;
+                        mask.setForeground(rowStart + left, rowStart + right);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of pixels compared with the background color during the last
+     * classification, the block centers and the checked block edges included. A pixel
+     * compared twice is counted twice.
+     */
+    public long getPixelsClassified() {
+        return pixelsClassified;
+    }
+
+    /**
+     * Labels the 8-connected foreground blocks and turns into background the regions
+     * whose bounding box, grown by one block on every side, has fewer pixels than
+     * a silhouette needs. No silhouette can be found there at full resolution.
+     *
+     * @param blocks     are the classes of the blocks with the edge.
+     * @param gridLength is the length of one row of the blocks including the edges.
+     */
+    private void dropSmallRegions(byte[] blocks, int gridLength) {
+        int[] offsets = {gridLength, -gridLength, 1, -1, gridLength + 1, gridLength - 1, -gridLength + 1, -gridLength - 1};
+        int[] region = new int[16];
+
+        for (int start = 0; start < blocks.length; start++) {
+            if (blocks[start] != FOREGROUND) {
+                continue;
+            }
+            // Collects the region with the breadth-first search, the collected blocks are the queue too
+            blocks[start] = LABELED;
+            region[0] = start;
+            int size = 1;
+            int minColumn = start % gridLength;
+            int maxColumn = minColumn;
+            int minRow = start / gridLength;
+            int maxRow = minRow;
+            for (int next = 0; next < size; next++) {
+                for (int offset : offsets) {
+                    int neighbor = region[next] + offset;
+                    if (blocks[neighbor] == FOREGROUND) {
+                        blocks[neighbor] = LABELED;
+                        if (size == region.length) {
+                            region = Arrays.copyOf(region, size * 2);
+                        }
+                        region[size++] = neighbor;
+                        minColumn = Math.min(minColumn, neighbor % gridLength);
+                        maxColumn = Math.max(maxColumn, neighbor % gridLength);
+                        minRow = Math.min(minRow, neighbor / gridLength);
+                        maxRow = Math.max(maxRow, neighbor / gridLength);
+                    }
+                }
+            }
+
+            long largestSize = (long) (maxColumn - minColumn + 3) * (maxRow - minRow + 3) * scale * scale;
+            if (largestSize <= minimumSize) {
+                for (int i = 0; i < size; i++) {
+                    blocks[region[i]] = BACKGROUND;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the top row and the left column of the foreground blocks for background pixels.
+     * The bottom row and the right column of a block are the top row and the left column
+     * of the blocks below and to the right of it, so a row or a column is only checked if
+     * a settled foreground block is on either side of it.
+     *
+     * @param buffer     is the buffer with the image pixels.
+     * @param blocks     are the classes of the blocks with the edge.
+     * @param columns    is the number of blocks in a row.
+     * @param rows       is the number of rows of the blocks.
+     * @param gridLength is the length of one row of the blocks including the edges.
+     * @return the gap flags of the blocks with the edge.
+     */
+    private byte[] findGaps(PixelBuffer buffer, byte[] blocks, int columns, int rows, int gridLength) {
+        byte[] gaps = new byte[blocks.length];
+        for (int row = 0; row < rows; row++) {
+            int top = row * scale;
+            int bottom = Math.min(top + scale, buffer.height);
+            for (int column = 0; column < columns; column++) {
+                int block = (row + 1) * gridLength + column + 1;
+                if (blocks[block] == BACKGROUND) {
+                    continue;
+                }
+                boolean settled = isSettled(blocks, block, gridLength);
+                int left = (top + 1) * buffer.rowLength + column * scale + 1;
+                int right = (top + 1) * buffer.rowLength + Math.min(column * scale + scale, buffer.width) + 1;
+                if ((settled || isSettledForeground(blocks, block - gridLength, gridLength))
+                        && hasBackground(buffer.pixels, left, right, 1)) {
+                    gaps[block] |= TOP_GAP;
+                }
+                if ((settled || isSettledForeground(blocks, block - 1, gridLength))
+                        && hasBackground(buffer.pixels, left, left + (bottom - top) * buffer.rowLength, buffer.rowLength)) {
+                    gaps[block] |= LEFT_GAP;
+                }
+            }
+        }
+        return gaps;
+    }
+
+    /**
+     * Looks for a background pixel among the pixels of the row or the column
+     * and counts the pixels compared until it is found.
+     *
+     * @param pixels are the ARGB colors of the pixel buffer.
+     * @param from   is the index of the first pixel.
+     * @param to     is the index after the last pixel.
+     * @param step   is the distance between the pixels, 1 for a row or the row length for a column.
+     * @return true if a background pixel is found.
+     */
+    private boolean hasBackground(int[] pixels, int from, int to, int step) {
+        for (int pixel = from; pixel < to; pixel += step) {
+            pixelsClassified++;
+            if (!classifier.isNotSimilarToBackground(pixels[pixel])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Says whether a background pixel was found on any edge of the block.
+     *
+     * @param gaps       are the gap flags of the blocks with the edge.
+     * @param block      is the index of the block.
+     * @param gridLength is the length of one row of the blocks including the edges.
+     * @return true if the block shall be classified pixel by pixel.
+     */
+    private static boolean hasGap(byte[] gaps, int block, int gridLength) {
+        return gaps[block] != 0 || (gaps[block + gridLength] & TOP_GAP) != 0 || (gaps[block + 1] & LEFT_GAP) != 0;
+    }
+
+    /**
+     * Says whether the block is a foreground one and all eight blocks around it are foreground too.
+     * The blocks of the edge are background, so the blocks around them are never looked at.
+     *
+     * @param blocks     are the classes of the blocks with the edge.
+     * @param block      is the index of the block.
+     * @param gridLength is the length of one row of the blocks including the edges.
+     * @return true if the block is a settled foreground block.
+     */
+    private static boolean isSettledForeground(byte[] blocks, int block, int gridLength) {
+        return blocks[block] != BACKGROUND && isSettled(blocks, block, gridLength);
+    }
+
+    /**
+     * Says whether the block and all eight blocks around it have the same class.
+     *
+     * @param blocks     are the classes of the blocks with the edge.
+     * @param block      is the index of the block.
+     * @param gridLength is the length of one row of the blocks including the edges.
+     * @return true if the pixels of the block need not be classified one by one.
+     */
+    private static boolean isSettled(byte[] blocks, int block, int gridLength) {
+        byte blockClass = blocks[block];
+        for (int row = block - gridLength; row <= block + gridLength; row += gridLength) {
+            if (blocks[row - 1] != blockClass || blocks[row] != blockClass || blocks[row + 1] != blockClass) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
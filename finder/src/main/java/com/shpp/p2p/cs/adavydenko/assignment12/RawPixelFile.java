@@ -0,0 +1,323 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves the decoded pixels of an image to a raw file and reads them back,
+ * so an image inspected many times is decoded only once.
+ * <p>
+ * The file has a 16-byte header of four big-endian ints: the magic number "SILR",
+ * the format version, the width and the height of the image. The ARGB colors of
+ * the pixels follow row after row as big-endian ints, without the edges the pixel
+ * buffer has. The file is read by mapping it to memory with FileChannel.map and
+ * copying its rows to the pixel buffer in bulk, there is no decoding at all.
+ * The streaming mode reads the mapped rows one by one instead, so the image is
+ * never in the heap as a whole.
+ * <p>
+ * A single mapping can not be larger than 2 GB, so the file is mapped in windows of
+ * whole rows (or of parts of a row if a row alone is larger than a window), and the
+ * next window is mapped when the rows of the previous one are read. The file is written
+ * the same way through a window-sized buffer, so the size of the image is only limited
+ * by the pixel buffer.
+ * <p>
+ * The foreground mask is not saved, because it depends on the similarity threshold,
+ * and the point of the file is to try different thresholds on the same image.
+ */
+public class RawPixelFile {
+
+    /**
+     * The first four bytes of every raw pixel file, "SILR" in ASCII.
+     */
+    static final int MAGIC = 0x53494C52;
+
+    /**
+     * The version of the file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The number of bytes of the header.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * The most bytes of pixels mapped or written at once.
+     */
+    static final int WINDOW_SIZE = 64 << 20;
+
+    /**
+     * Writes the image pixels of the buffer to the raw file.
+     *
+     * @param buffer is the buffer with the image pixels.
+     * @param file   is the file to write, it is replaced if it exists.
+     * @throws IOException if the file can not be written.
+     */
+    public static void write(PixelBuffer buffer, Path file) throws IOException {
+        write(buffer, file, WINDOW_SIZE);
+    }
+
+    /**
+     * Writes the image pixels of the buffer to the raw file, a window of pixels at a time.
+     *
+     * @param buffer     is the buffer with the image pixels.
+     * @param file       is the file to write, it is replaced if it exists.
+     * @param windowSize is the most bytes of pixels written at once.
+     * @throws IOException if the file can not be written.
+     */
+    static void write(PixelBuffer buffer, Path file, int windowSize) throws IOException {
+        long pixelCount = (long) buffer.width * buffer.height;
+        ByteBuffer window = ByteBuffer.allocateDirect(HEADER_SIZE
+                + 4 * (int) Math.min(windowPixels(buffer.width, windowSize), pixelCount));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            window.putInt(MAGIC).putInt(VERSION).putInt(buffer.width).putInt(buffer.height);
+            for (int y = 0; y < buffer.height; y++) {
+                int pixel = (y + 1) * buffer.rowLength + 1;
+                int rowEnd = pixel + buffer.width;
+                while (pixel < rowEnd) {
+                    if (!window.hasRemaining()) {
+                        writeWindow(channel, window);
+                    }
+                    int count = Math.min(rowEnd - pixel, window.remaining() / 4);
+                    window.asIntBuffer().put(buffer.pixels, pixel, count);
+                    window.position(window.position() + 4 * count);
+                    pixel += count;
+                }
+            }
+            writeWindow(channel, window);
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Writes the filled part of the window to the channel and clears the window.
+     *
+     * @param channel is the channel of the file.
+     * @param window  is the window with the bytes to write.
+     * @throws IOException if the bytes can not be written.
+     */
+    private static void writeWindow(FileChannel channel, ByteBuffer window) throws IOException {
+        window.flip();
+        while (window.hasRemaining()) {
+            channel.write(window);
+        }
+        window.clear();
+    }
+
+    /**
+     * Reads the raw file to a new pixel buffer.
+     *
+     * @param file is the raw file.
+     * @return the buffer with the image pixels, its edges are not filled yet.
+     * @throws IOException if the file can not be read or is not a raw pixel file.
+     */
+    public static PixelBuffer read(Path file) throws IOException {
+        PixelBuffer buffer = new PixelBuffer(0, 0);
+        read(file, buffer);
+        return buffer;
+    }
+
+    /**
+     * Reads the raw file to the existing pixel buffer, which is resized to the image.
+     *
+     * @param file   is the raw file.
+     * @param buffer is the buffer to put the image pixels to, its edges are not filled yet.
+     * @throws IOException if the file can not be read or is not a raw pixel file.
+     */
+    public static void read(Path file, PixelBuffer buffer) throws IOException {
+        try (RowReader rows = openRows(file)) {
+            buffer.resize(rows.getWidth(), rows.getHeight());
+            for (int y = 0; y < buffer.height; y++) {
+                rows.readRow(buffer.pixels, (y + 1) * buffer.rowLength + 1);
+            }
+        }
+    }
+
+    /**
+     * Opens the raw file to read its rows one by one from the mapped windows.
+     *
+     * @param file is the raw file.
+     * @return the reader positioned at the first row.
+     * @throws IOException if the file can not be read or is not a raw pixel file.
+     */
+    static RowReader openRows(Path file) throws IOException {
+        return openRows(file, WINDOW_SIZE);
+    }
+
+    /**
+     * Opens the raw file to read its rows one by one from the mapped windows.
+     *
+     * @param file       is the raw file.
+     * @param windowSize is the most bytes of pixels mapped at once.
+     * @return the reader positioned at the first row, it keeps the file open until closed.
+     * @throws IOException if the file can not be read or is not a raw pixel file.
+     */
+    static RowReader openRows(Path file, int windowSize) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Reads until the header is read or the file ends
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a raw pixel file of version " + VERSION + ": " + file);
+            }
+            int width = header.getInt(8);
+            int height = header.getInt(12);
+            if (width < 1 || height < 1 || channel.size() != HEADER_SIZE + 4L * width * height) {
+                throw new IOException("Damaged raw pixel file: " + file);
+            }
+            return new RowReader(channel, width, height, windowPixels(width, windowSize));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives the number of pixels of a window: as many whole rows as fit in it,
+     * or a part of a row if even one row does not fit.
+     *
+     * @param width      is the width of the image.
+     * @param windowSize is the most bytes of pixels in a window.
+     * @return the number of pixels, at least one.
+     */
+    private static int windowPixels(int width, int windowSize) {
+        int windowPixels = Math.max(1, windowSize / 4);
+        return width <= windowPixels ? windowPixels / width * width : windowPixels;
+    }
+
+    /**
+     * Says whether the file starts with the magic number of the raw pixel files.
+     *
+     * @param file is the file.
+     * @return true if the file is a raw pixel file.
+     * @throws IOException if the file can not be read.
+     */
+    public static boolean isRawFile(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // Reads until the four bytes are read or the file ends
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Gives the rows of a raw file, mapping the file window by window as the rows are read.
+     */
+    static class RowReader implements ImageRowSource {
+
+        /**
+         * The channel of the file, open until the reader is closed.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Width and height of the image.
+         */
+        private final int width;
+        private final int height;
+
+        /**
+         * The number of pixels of a window.
+         */
+        private final int windowPixels;
+
+        /**
+         * The pixels of the current window not read yet.
+         */
+        private IntBuffer window = IntBuffer.allocate(0);
+
+        /**
+         * The position in the file of the next window.
+         */
+        private long nextWindow = HEADER_SIZE;
+
+        /**
+         * The number of rows already read.
+         */
+        private int rowsRead;
+
+        /**
+         * Creates the reader.
+         *
+         * @param channel      is the channel of the file.
+         * @param width        is the width of the image.
+         * @param height       is the height of the image.
+         * @param windowPixels is the number of pixels of a window.
+         */
+        RowReader(FileChannel channel, int width, int height, int windowPixels) {
+            this.channel = channel;
+            this.width = width;
+            this.height = height;
+            this.windowPixels = windowPixels;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Copies the next row of the file, mapping the next window when the current one ends.
+         *
+         * @param argb   is the array to put the ARGB colors of the row pixels to.
+         * @param offset is the index of the first pixel of the row in the array.
+         * @throws IOException if all rows are already read or the file can not be mapped.
+         */
+        @Override
+        public void readRow(int[] argb, int offset) throws IOException {
+            if (rowsRead == height) {
+                throw new IOException("All " + height + " rows are already read");
+            }
+            int rowEnd = offset + width;
+            while (offset < rowEnd) {
+                if (!window.hasRemaining()) {
+                    mapNextWindow();
+                }
+                int count = Math.min(rowEnd - offset, window.remaining());
+                window.get(argb, offset, count);
+                offset += count;
+            }
+            rowsRead++;
+        }
+
+        /**
+         * Maps the window of the file following the current one.
+         *
+         * @throws IOException if the file can not be mapped.
+         */
+        private void mapNextWindow() throws IOException {
+            long size = Math.min(4L * windowPixels, channel.size() - nextWindow);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, nextWindow, size).asIntBuffer();
+            nextWindow += size;
+        }
+
+        /**
+         * Closes the file. The mapped windows are released by the garbage collector.
+         *
+         * @throws IOException if the file can not be closed.
+         */
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Finds silhouettes with the classic two-pass connected-component labeling algorithm.
+ * <p>
+ * The first pass goes through the image row by row and splits every row into runs of
+ * pixels of non-background color. A run that touches a run of the row above gets the same
+ * label, a run that touches several of them makes their labels equivalent in the union-find
+ * structure, and a run touching none gets a new label. The second pass replaces every label
+ * with the id of its silhouette. In the 8-connected mode a run also touches the runs above
+ * that only meet it by a corner, so the pixels right above it are looked through one pixel
+ * further on both sides.
+ * <p>
+ * Both passes read the memory strictly in order, which suits large images much better
+ * than the jumps of the depth-first search.
+ * <p>
+ * The idea of the algorithm was taken from:
+ * https://en.wikipedia.org/wiki/Connected-component_labeling#Two-pass
+ */
+public class ScanlineLabeler implements LabelingEngine {
+
+    /**
+     * The structure of the equivalent labels, it is kept between the searches.
+     */
+    private final UnionFind unionFind = new UnionFind();
+
+    /**
+     * The number of neighbors a pixel is connected to, 4 or 8.
+     */
+    private final int connectivity;
+
+    /**
+     * Creates the labeler connecting the pixels touching by a side.
+     */
+    public ScanlineLabeler() {
+        this(ForegroundMask.FOUR_CONNECTED);
+    }
+
+    /**
+     * Creates the labeler.
+     *
+     * @param connectivity is the number of neighbors a pixel is connected to, 4 or 8.
+     */
+    public ScanlineLabeler(int connectivity) {
+        this.connectivity = ForegroundMask.checkConnectivity(connectivity);
+    }
+
+    @Override
+    public ArrayList<Silhouette> findSilhouettes(ForegroundMask mask, LabelMap labelMap) {
+        int[] labels = labelMap.labels;
+        unionFind.clear();
+        ArrayList<Silhouette> parts = new ArrayList<>();
+
+        // The first pass labels the runs of each row
+        labelRuns(mask, labelMap, 1, mask.height, 0, connectivity, unionFind, parts);
+
+        // The second pass replaces the labels with the silhouette ids
+        ArrayList<Silhouette> silhouettes = new ArrayList<>();
+        int[] silhouetteIds = Silhouette.joinParts(parts, unionFind::find, labelMap, silhouettes);
+        for (int pixel = 0; pixel < labelMap.getLength(); pixel++) {
+            if (labels[pixel] != LabelMap.NO_SILHOUETTE) {
+                labels[pixel] = silhouetteIds[labels[pixel] - 1];
+            }
+        }
+        return silhouettes;
+    }
+
+    /**
+     * Makes the first pass of the algorithm over the rows of the mask. The labels of the row
+     * above the first row shall already be in the label map, the runs touching them are joined
+     * with the parts those labels belong to. The row below the last row shall be in the mask,
+     * it tells which pixels of the last row lie on the silhouette perimeter.
+     *
+     * @param mask      is the mask of the pixels of non-background color.
+     * @param labelMap  is the map to mark the runs with their labels in.
+     * @param firstRow  is the first row of the mask to label.
+     * @param lastRow   is the last row of the mask to label.
+     * @param topRow       is the y-coordinate of the image row the first row of the mask stands for.
+     * @param connectivity is the number of neighbors a pixel is connected to, 4 or 8.
+     * @param unionFind    is the structure of the equivalent labels, label L is its element L - 1.
+     * @param parts        are the pixels of each label, new labels are added to the end.
+     */
+    static void labelRuns(ForegroundMask mask, LabelMap labelMap, int firstRow, int lastRow, int topRow,
+                          int connectivity, UnionFind unionFind, ArrayList<Silhouette> parts) {
+        int[] labels = labelMap.labels;
+        int rowLength = mask.rowLength;
+        // How far beyond the run ends the runs above still touch it, the edges make this safe
+        int reach = connectivity == ForegroundMask.EIGHT_CONNECTED ? 1 : 0;
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            int rowStart = row * rowLength + 1;
+            int rowEnd = rowStart + mask.width;
+
+            int runStart = mask.nextForeground(rowStart, rowEnd);
+            while (runStart < rowEnd) {
+                int runEnd = mask.nextBackground(runStart, rowEnd);
+                int label = findLabelAbove(labels, runStart - reach, runEnd + reach, rowLength, unionFind);
+
+                if (label == LabelMap.NO_SILHOUETTE) {
+                    label = unionFind.add() + 1;
+                    parts.add(new Silhouette(label, labelMap));
+                }
+                Arrays.fill(labels, runStart, runEnd, label);
+                Silhouette part = parts.get(label - 1);
+                part.addRun(runStart - rowStart, runEnd - 1 - rowStart, topRow + row - 1);
+                addRunPixels(mask, labels, runStart, runEnd, part);
+
+                runStart = mask.nextForeground(runEnd, rowEnd);
+            }
+        }
+    }
+
+    /**
+     * Adds the colors and the perimeter pixels of the run to the part. The first and the last
+     * pixels of a run always lie on the perimeter, the others do if the pixel above or below
+     * is background. The row above is already labeled, so its labels are checked instead of
+     * the mask: in the streaming mode the mask of a band does not have the previous band.
+     *
+     * @param mask     is the mask of the pixels of non-background color.
+     * @param labels   are the labels of the pixels.
+     * @param runStart is the index of the first pixel of the run.
+     * @param runEnd   is the index of the first pixel after the run.
+     * @param part     is the part the run belongs to.
+     */
+    private static void addRunPixels(ForegroundMask mask, int[] labels, int runStart, int runEnd, Silhouette part) {
+        int rowLength = mask.rowLength;
+        int numOfPerimeterPixels = Math.min(2, runEnd - runStart);
+        for (int pixel = runStart + 1; pixel < runEnd - 1; pixel++) {
+            if (labels[pixel - rowLength] == LabelMap.NO_SILHOUETTE || !mask.isForeground(pixel + rowLength)) {
+                numOfPerimeterPixels++;
+            }
+        }
+        part.addPerimeterPixels(numOfPerimeterPixels);
+
+        if (mask.colors != null) {
+            part.addColors(mask.colors, runStart, runEnd);
+        }
+    }
+
+    /**
+     * Looks through the pixels right above the run and finds the labels of the runs
+     * the current run touches. All of them are made equivalent.
+     *
+     * @param labels    are the labels of the pixels.
+     * @param runStart  is the index of the first pixel of the run, or of the pixel before it in the 8-connected mode.
+     * @param runEnd    is the index of the first pixel after the run, or of the one after it in the 8-connected mode.
+     * @param rowLength is the length of one row of the label map.
+     * @param unionFind is the structure of the equivalent labels.
+     * @return the label of the first touched run or NO_SILHOUETTE if the run touches none.
+     */
+    private static int findLabelAbove(int[] labels, int runStart, int runEnd, int rowLength, UnionFind unionFind) {
+        int label = LabelMap.NO_SILHOUETTE;
+        int previousLabelAbove = LabelMap.NO_SILHOUETTE;
+
+        for (int pixel = runStart - rowLength; pixel < runEnd - rowLength; pixel++) {
+            int labelAbove = labels[pixel];
+            // Pixels of one run above have the same label, so it is enough to check where it changes
+            if (labelAbove != previousLabelAbove && labelAbove != LabelMap.NO_SILHOUETTE) {
+                if (label == LabelMap.NO_SILHOUETTE) {
+                    label = labelAbove;
+                } else {
+                    unionFind.union(label - 1, labelAbove - 1);
+                }
+            }
+            previousLabelAbove = labelAbove;
+        }
+        return label;
+    }
+}
@@ -0,0 +1,223 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.awt.*;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * Saves the silhouettes found on an image, not only their number: the label map as an image,
+ * the image with the silhouettes painted over it, and the pixels of each silhouette as runs.
+ * <p>
+ * All files are written straight from the label map row by row. Each row of the image is
+ * made from one row of the label map in a reused byte array and handed to PngRowWriter, so
+ * no BufferedImage of the whole image is created and no pixel is set with setRGB.
+ * <p>
+ * The objects not larger than the minimum size are not silhouettes, so they are saved as
+ * background. The silhouettes are numbered from 1 in the order of DetectionResult.getSilhouettes.
+ */
+public class SegmentationWriter {
+
+    /**
+     * The largest silhouette number a 16-bit label image can keep.
+     */
+    private static final int MAX_16_BIT_LABEL = 0xFFFF;
+
+    /**
+     * The largest silhouette number an 8-bit RGB label image can keep.
+     */
+    private static final int MAX_24_BIT_LABEL = 0xFFFFFF;
+
+    /**
+     * The share of the silhouette color in the overlay, from 0 to 256.
+     */
+    private static final int OVERLAY_OPACITY = 128;
+
+    /**
+     * The label map of the result.
+     */
+    private final LabelMap labelMap;
+
+    /**
+     * The silhouettes, the ones not larger than the minimum size excluded.
+     */
+    private final ArrayList<Silhouette> silhouettes;
+
+    /**
+     * The silhouette number of each id of the label map, zero for the too small objects.
+     */
+    private final int[] numbers;
+
+    /**
+     * Prepares the silhouette numbers of the result.
+     *
+     * @param result is the result of the search with its label map.
+     * @throws IllegalStateException if the result has no label map.
+     */
+    public SegmentationWriter(DetectionResult result) {
+        if (result.getLabelMap() == null) {
+            throw new IllegalStateException("The label map was not kept, the image was inspected band by band");
+        }
+        this.labelMap = result.getLabelMap();
+        this.silhouettes = result.getSilhouettes();
+
+        int maxId = 0;
+        for (Silhouette silhouette : result.getAllSilhouettes()) {
+            maxId = Math.max(maxId, silhouette.id);
+        }
+        numbers = new int[maxId + 1];
+        for (int i = 0; i < silhouettes.size(); i++) {
+            numbers[silhouettes.get(i).id] = i + 1;
+        }
+    }
+
+    /**
+     * Saves the label map as a PNG image where each pixel keeps the number of its silhouette,
+     * or zero for the background. Up to 65535 silhouettes the image is 16-bit grayscale, up to
+     * 16777215 it is 8-bit RGB, otherwise 16-bit RGB. The image has no alpha channel, so every
+     * pixel is opaque, and the number is the value of all its channel bits read as one
+     * big-endian integer, e.g. red * 65536 + green * 256 + blue in 8-bit RGB.
+     *
+     * @param file is the PNG file to write.
+     * @throws IOException if the file can not be written.
+     */
+    public void writeLabelImage(Path file) throws IOException {
+        int width = labelMap.width;
+        int colorType = silhouettes.size() > MAX_16_BIT_LABEL ? PngRowWriter.RGB : PngRowWriter.GRAYSCALE;
+        int bitDepth = silhouettes.size() > MAX_16_BIT_LABEL && silhouettes.size() <= MAX_24_BIT_LABEL ? 8 : 16;
+        int bytesPerPixel = (colorType == PngRowWriter.RGB ? 3 : 1) * bitDepth / 8;
+        byte[] row = new byte[bytesPerPixel * width];
+        try (PngRowWriter png = new PngRowWriter(new BufferedOutputStream(Files.newOutputStream(file)), width,
+                labelMap.height, colorType, bitDepth)) {
+            for (int y = 0; y < labelMap.height; y++) {
+                int rowStart = (y + 1) * labelMap.rowLength + 1;
+                int position = 0;
+                for (int x = 0; x < width; x++) {
+                    long number = numbers[labelMap.labels[rowStart + x]];
+                    for (int shift = 8 * (bytesPerPixel - 1); shift >= 0; shift -= 8) {
+                        row[position++] = (byte) (number >>> shift);
+                    }
+                }
+                png.writeRow(row);
+            }
+        }
+    }
+
+    /**
+     * Saves the image with each silhouette painted over it half-transparently
+     * in a color of its own. The background pixels keep their colors.
+     *
+     * @param pixelBuffer is the buffer with the image pixels the result was found on.
+     * @param file        is the PNG file to write.
+     * @throws IOException if the file can not be written.
+     */
+    public void writeOverlay(PixelBuffer pixelBuffer, Path file) throws IOException {
+        int width = labelMap.width;
+        int[] palette = createPalette(silhouettes.size());
+        byte[] row = new byte[3 * width];
+        try (PngRowWriter png = new PngRowWriter(new BufferedOutputStream(Files.newOutputStream(file)), width,
+                labelMap.height, PngRowWriter.RGB, 8)) {
+            for (int y = 0; y < labelMap.height; y++) {
+                int rowStart = (y + 1) * labelMap.rowLength + 1;
+                int position = 0;
+                for (int x = 0; x < width; x++) {
+                    int argb = pixelBuffer.pixels[rowStart + x];
+                    int number = numbers[labelMap.labels[rowStart + x]];
+                    if (number != 0) {
+                        argb = blend(argb, palette[number]);
+                    }
+                    row[position++] = (byte) (argb >> 16);
+                    row[position++] = (byte) (argb >> 8);
+                    row[position++] = (byte) argb;
+                }
+                png.writeRow(row);
+            }
+        }
+    }
+
+    /**
+     * Saves one JSON object per line for each silhouette: its number, its size, its bounding box
+     * and its pixels as runs. The runs are a flat array of (y, first x, length) triples going
+     * row by row, so a silhouette costs three numbers per row it crosses rather than
+     * one per pixel.
+     *
+     * @param file is the file to write.
+     * @throws IOException if the file can not be written.
+     */
+    public void writeMasks(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < silhouettes.size(); i++) {
+                Silhouette silhouette = silhouettes.get(i);
+                out.write("{\"silhouette\":" + (i + 1) + ",\"size\":" + silhouette.numOfPixels
+                        + ",\"box\":[" + silhouette.minX + "," + silhouette.minY + ","
+                        + silhouette.maxX + "," + silhouette.maxY + "],\"runs\":[");
+                writeRuns(silhouette, out);
+                out.write("]}\n");
+            }
+        }
+    }
+
+    /**
+     * Writes the runs of the silhouette pixels inside its bounding box.
+     *
+     * @param silhouette is the silhouette.
+     * @param out        is where the runs are written.
+     * @throws IOException if the runs can not be written.
+     */
+    private void writeRuns(Silhouette silhouette, Writer out) throws IOException {
+        int[] labels = labelMap.labels;
+        boolean first = true;
+        for (int y = silhouette.minY; y <= silhouette.maxY; y++) {
+            int rowStart = (y + 1) * labelMap.rowLength + 1;
+            int x = silhouette.minX;
+            while (x <= silhouette.maxX) {
+                if (labels[rowStart + x] != silhouette.id) {
+                    x++;
+                    continue;
+                }
+                int runStart = x;
+                while (x <= silhouette.maxX && labels[rowStart + x] == silhouette.id) {
+                    x++;
+                }
+                out.write((first ? "" : ",") + y + "," + runStart + "," + (x - runStart));
+                first = false;
+            }
+        }
+    }
+
+    /**
+     * Picks a color for every silhouette number, going around the hue circle by the golden
+     * ratio so the neighboring numbers get colors far from each other.
+     *
+     * @param numOfSilhouettes is the number of silhouettes.
+     * @return the RGB colors, the index is the silhouette number.
+     */
+    private static int[] createPalette(int numOfSilhouettes) {
+        int[] palette = new int[numOfSilhouettes + 1];
+        for (int number = 1; number <= numOfSilhouettes; number++) {
+            palette[number] = Color.HSBtoRGB((number * 0.618034f) % 1, 0.9f, 1f);
+        }
+        return palette;
+    }
+
+    /**
+     * Mixes the pixel color with the silhouette color.
+     *
+     * @param argb  is the color of the pixel.
+     * @param color is the color of the silhouette.
+     * @return the mixed RGB color.
+     */
+    private static int blend(int argb, int color) {
+        int mixed = 0;
+        for (int shift = 0; shift <= 16; shift += 8) {
+            int pixelChannel = (argb >> shift) & 0xFF;
+            int colorChannel = (color >> shift) & 0xFF;
+            mixed |= ((pixelChannel * (256 - OVERLAY_OPACITY) + colorChannel * OVERLAY_OPACITY) >> 8) << shift;
+        }
+        return mixed;
+    }
+}
@@ -0,0 +1,518 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Finds silhouettes on the frames of a fixed camera footage, where each frame
+ * differs from the previous one in a small region only.
+ * <p>
+ * The first frame is inspected as a whole. The detector keeps a copy of its pixels, its
+ * foreground mask and its label map. Each next frame is compared with the previous one tile by tile,
+ * and only the pixels of the changed tiles are classified again. The silhouettes having
+ * pixels in the changed tiles or right next to them are erased and found again, together
+ * with the new silhouettes of the changed tiles. All other silhouettes keep their pixels
+ * and their ids, so the work done per frame depends on the size of the change, not on
+ * the size of the frame. Only the changed tiles are copied to the pixels the detector
+ * keeps, so the caller may read every frame into the same buffer.
+ * <p>
+ * The background color is defined on the first frame and kept for the whole sequence.
+ * A frame of another size starts the sequence anew. The silhouette ids are kept between
+ * frames, so they are not numbered in the order of the first pixels as in other modes,
+ * but the results list the silhouettes in that order.
+ */
+public class SequenceDetector {
+
+    /**
+     * The width and height of the tiles the frames are compared by.
+     */
+    static final int TILE_SIZE = 64;
+
+    /**
+     * The proportion of similarity at which a pixel color is deemed the background color.
+     */
+    private final double similarityThreshold;
+
+    /**
+     * The minimum number of pixels of an object to be deemed a silhouette.
+     */
+    private final int minimumSize;
+
+    /**
+     * The way to pick the background color from the colors of the first frame edges.
+     */
+    private final BackgroundEstimator.Strategy backgroundStrategy;
+
+    /**
+     * The background color given by the user, or null if it is defined from the first frame.
+     */
+    private final Color userBgColor;
+
+    /**
+     * The number of neighbors a pixel is connected to, 4 or 8.
+     */
+    private final int connectivity;
+
+    /**
+     * The offsets of the connected neighbors of a pixel in the frames, the side ones first.
+     */
+    private int[] neighborOffsets;
+
+    /**
+     * The background color of the sequence.
+     */
+    private Color bgColor;
+
+    /**
+     * The classifier of the background color of the sequence.
+     */
+    private BackgroundClassifier classifier;
+
+    /**
+     * The copy of the pixels of the previous frame owned by the detector,
+     * the foreground mask and the label map of the previous frame.
+     */
+    private final PixelBuffer previous = new PixelBuffer(0, 0);
+    private ForegroundMask mask;
+    private LabelMap labelMap;
+
+    /**
+     * The silhouettes of the previous frame by their ids, the free ids have no silhouette.
+     */
+    private Silhouette[] silhouettes = new Silhouette[16];
+
+    /**
+     * The ids of the erased silhouettes, they are given to the new ones first.
+     */
+    private int[] freeIds = new int[16];
+    private int numOfFreeIds = 0;
+
+    /**
+     * The id given to a new silhouette if there are no free ids.
+     */
+    private int nextId = 1;
+
+    /**
+     * The number of the frame each silhouette id was last marked as affected in.
+     */
+    private int[] affectedInFrame = new int[16];
+
+    /**
+     * The index of the first pixel of each silhouette by its id. The silhouettes that are
+     * not found anew keep their pixels, so it is only looked for when a silhouette is found.
+     */
+    private int[] firstPixels = new int[16];
+
+    /**
+     * The number of frames inspected.
+     */
+    private int frameNumber = 0;
+
+    /**
+     * The number of tiles that changed in the last frame.
+     */
+    private int changedTiles = 0;
+
+    /**
+     * The number of pixels classified in the last frame.
+     */
+    private long pixelsClassified = 0;
+
+    /**
+     * A queue containing the silhouette pixels whose neighbors are not inspected yet.
+     */
+    private final PixelQueue queue = new PixelQueue();
+
+    /**
+     * Creates the detector.
+     *
+     * @param similarityThreshold is the proportion of similarity at which colors are deemed equivalent.
+     * @param minimumSize         is the minimum number of pixels of a silhouette.
+     * @param backgroundStrategy  is the way to pick the background color from the first frame edges.
+     * @param userBgColor         is the background color given by the user or null.
+     */
+    public SequenceDetector(double similarityThreshold, int minimumSize,
+                            BackgroundEstimator.Strategy backgroundStrategy, Color userBgColor) {
+        this(similarityThreshold, minimumSize, backgroundStrategy, userBgColor, ForegroundMask.FOUR_CONNECTED);
+    }
+
+    /**
+     * Creates the detector.
+     *
+     * @param similarityThreshold is the proportion of similarity at which colors are deemed equivalent.
+     * @param minimumSize         is the minimum number of pixels of a silhouette.
+     * @param backgroundStrategy  is the way to pick the background color from the first frame edges.
+     * @param userBgColor         is the background color given by the user or null.
+     * @param connectivity        is the number of neighbors a pixel is connected to, 4 or 8.
+     */
+    public SequenceDetector(double similarityThreshold, int minimumSize,
+                            BackgroundEstimator.Strategy backgroundStrategy, Color userBgColor, int connectivity) {
+        this.similarityThreshold = similarityThreshold;
+        this.minimumSize = minimumSize;
+        this.backgroundStrategy = backgroundStrategy;
+        this.userBgColor = userBgColor;
+        this.connectivity = ForegroundMask.checkConnectivity(connectivity);
+    }
+
+    /**
+     * Finds the silhouettes on the next frame updating the ones of the previous frame.
+     * The label map of the result is the one of the detector, so it is only valid
+     * until the next frame is inspected.
+     *
+     * @param frame is the buffer with the frame pixels. The detector copies the pixels it
+     *              needs, so the buffer may be reused for the next frame.
+     * @return the silhouettes of the frame.
+     */
+    public DetectionResult nextFrame(PixelBuffer frame) {
+        DetectionMetrics metrics = new DetectionMetrics();
+        frameNumber++;
+
+        queue.resetMaxSize();
+        long start = System.nanoTime();
+        if (mask == null || previous.width != frame.width || previous.height != frame.height) {
+            inspectFirstFrame(frame, metrics);
+        } else {
+            pixelsClassified = 0;
+            ArrayList<int[]> tiles = findChangedTiles(frame);
+            changedTiles = tiles.size();
+            long classifyEnd = System.nanoTime();
+            metrics.addStageNanos(DetectionMetrics.Stage.CLASSIFY, classifyEnd - start);
+
+            relabel(tiles);
+            metrics.addStageNanos(DetectionMetrics.Stage.LABEL, System.nanoTime() - classifyEnd);
+        }
+
+        ArrayList<Silhouette> ordered = orderSilhouettes();
+        DetectionResult result = new DetectionResult(bgColor, labelMap, ordered, minimumSize, metrics);
+        metrics.pixelsClassified = pixelsClassified;
+        metrics.componentsFound = ordered.size();
+        metrics.componentsFiltered = ordered.size() - result.getNumOfSilhouettes();
+        metrics.maxQueueDepth = queue.getMaxSize();
+        // The pixels of two frames are kept while they are compared
+        metrics.bufferBytes = 2 * 4L * previous.pixels.length + 8L * mask.bits.length + 4L * labelMap.labels.length;
+        return result;
+    }
+
+    /**
+     * @return the number of tiles that changed in the last frame.
+     */
+    public int getChangedTiles() {
+        return changedTiles;
+    }
+
+    /**
+     * @param width  is the width of the frame.
+     * @param height is the height of the frame.
+     * @return the number of tiles of the frame.
+     */
+    public static int countTiles(int width, int height) {
+        return ((width + TILE_SIZE - 1) / TILE_SIZE) * ((height + TILE_SIZE - 1) / TILE_SIZE);
+    }
+
+    /**
+     * Defines the background color and finds the silhouettes of the whole frame.
+     *
+     * @param frame   is the buffer with the frame pixels.
+     * @param metrics are the metrics of the frame.
+     */
+    private void inspectFirstFrame(PixelBuffer frame, DetectionMetrics metrics) {
+        long start = System.nanoTime();
+        previous.resize(frame.width, frame.height);
+        System.arraycopy(frame.pixels, 0, previous.pixels, 0, frame.rowLength * (frame.height + 2));
+        if (userBgColor != null) {
+            bgColor = userBgColor;
+        } else {
+            BackgroundEstimator estimator = new BackgroundEstimator(backgroundStrategy);
+            estimator.inspectBufferEdges(previous);
+            bgColor = estimator.getBackgroundColor();
+        }
+        previous.fillEdges(bgColor.getRGB());
+        classifier = new BackgroundClassifier(bgColor.getRGB(), similarityThreshold);
+        long stageEnd = System.nanoTime();
+        metrics.addStageNanos(DetectionMetrics.Stage.BACKGROUND, stageEnd - start);
+
+        start = stageEnd;
+        // The mask takes the colors of the silhouettes found later from the copy of the frame
+        mask = classifier.classify(previous);
+        neighborOffsets = mask.getNeighborOffsets(connectivity);
+        stageEnd = System.nanoTime();
+        metrics.addStageNanos(DetectionMetrics.Stage.CLASSIFY, stageEnd - start);
+
+        start = stageEnd;
+        labelMap = new LabelMap(frame.width, frame.height);
+        numOfFreeIds = 0;
+        ArrayList<Silhouette> found = new DepthFirstLabeler(connectivity).findSilhouettes(mask, labelMap);
+        nextId = found.size() + 1;
+        affectedInFrame = new int[Math.max(16, 2 * nextId)];
+        firstPixels = new int[affectedInFrame.length];
+        silhouettes = new Silhouette[affectedInFrame.length];
+        for (Silhouette silhouette : found) {
+            silhouettes[silhouette.id] = silhouette;
+            firstPixels[silhouette.id] = findFirstPixel(silhouette);
+        }
+        changedTiles = countTiles(frame.width, frame.height);
+        pixelsClassified = (long) frame.width * frame.height;
+        metrics.addStageNanos(DetectionMetrics.Stage.LABEL, System.nanoTime() - start);
+    }
+
+    /**
+     * Compares the frame with the previous one tile by tile, copies the pixels
+     * of the changed tiles and classifies them again.
+     *
+     * @param frame is the buffer with the frame pixels.
+     * @return the changed tiles as {first x, first y, last x, last y} in image coordinates.
+     */
+    private ArrayList<int[]> findChangedTiles(PixelBuffer frame) {
+        ArrayList<int[]> tiles = new ArrayList<>();
+        int rowLength = frame.rowLength;
+
+        for (int tileY = 0; tileY < frame.height; tileY += TILE_SIZE) {
+            int lastY = Math.min(tileY + TILE_SIZE, frame.height) - 1;
+            for (int tileX = 0; tileX < frame.width; tileX += TILE_SIZE) {
+                int lastX = Math.min(tileX + TILE_SIZE, frame.width) - 1;
+
+                boolean changed = false;
+                for (int y = tileY; y <= lastY && !changed; y++) {
+                    int from = (y + 1) * rowLength + tileX + 1;
+                    int to = from + lastX - tileX + 1;
+                    changed = Arrays.mismatch(frame.pixels, from, to, previous.pixels, from, to) >= 0;
+                }
+                if (changed) {
+                    tiles.add(new int[]{tileX, tileY, lastX, lastY});
+                    for (int y = tileY; y <= lastY; y++) {
+                        int from = (y + 1) * rowLength + tileX + 1;
+                        System.arraycopy(frame.pixels, from, previous.pixels, from, lastX - tileX + 1);
+                    }
+                    classifyTile(previous, tileX, tileY, lastX, lastY);
+                    pixelsClassified += (long) (lastX - tileX + 1) * (lastY - tileY + 1);
+                }
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Classifies the pixels of the tile and saves the result to the foreground mask.
+     *
+     * @param frame is the buffer with the frame pixels.
+     * @param firstX is the x-coordinate of the first column of the tile.
+     * @param firstY is the y-coordinate of the first row of the tile.
+     * @param lastX  is the x-coordinate of the last column of the tile.
+     * @param lastY  is the y-coordinate of the last row of the tile.
+     */
+    private void classifyTile(PixelBuffer frame, int firstX, int firstY, int lastX, int lastY) {
+        for (int y = firstY; y <= lastY; y++) {
+            int rowStart = (y + 1) * frame.rowLength + 1;
+            for (int pixel = rowStart + firstX; pixel <= rowStart + lastX; pixel++) {
+                if (classifier.isNotSimilarToBackground(frame.pixels[pixel])) {
+                    mask.setForeground(pixel);
+                } else {
+                    mask.clearForeground(pixel);
+                }
+            }
+        }
+    }
+
+    /**
+     * Erases the silhouettes having pixels in the changed tiles or right next to them,
+     * then finds the silhouettes among all unmarked foreground pixels of the changed tiles
+     * and of the bounding boxes of the erased silhouettes.
+     *
+     * @param tiles are the changed tiles.
+     */
+    private void relabel(ArrayList<int[]> tiles) {
+        int[] labels = labelMap.labels;
+        int rowLength = labelMap.rowLength;
+
+        /* The silhouettes touching the tiles from outside can join the new pixels of the tiles,
+         so the tiles are widened by one pixel. The map edges have no labels, so no checks are needed */
+        ArrayList<Silhouette> affected = new ArrayList<>();
+        for (int[] tile : tiles) {
+            for (int y = tile[1] - 1; y <= tile[3] + 1; y++) {
+                int rowStart = (y + 1) * rowLength + 1;
+                for (int pixel = rowStart + tile[0] - 1; pixel <= rowStart + tile[2] + 1; pixel++) {
+                    int label = labels[pixel];
+                    if (label != LabelMap.NO_SILHOUETTE && affectedInFrame[label] != frameNumber) {
+                        affectedInFrame[label] = frameNumber;
+                        affected.add(silhouettes[label]);
+                    }
+                }
+            }
+        }
+
+        // Erases the affected silhouettes from the label map
+        for (Silhouette silhouette : affected) {
+            for (int y = silhouette.minY; y <= silhouette.maxY; y++) {
+                int rowStart = (y + 1) * rowLength + 1;
+                for (int pixel = rowStart + silhouette.minX; pixel <= rowStart + silhouette.maxX; pixel++) {
+                    if (labels[pixel] == silhouette.id) {
+                        labels[pixel] = LabelMap.NO_SILHOUETTE;
+                    }
+                }
+            }
+            silhouettes[silhouette.id] = null;
+            freeId(silhouette.id);
+        }
+
+        for (int[] tile : tiles) {
+            findNewSilhouettes(tile[0], tile[1], tile[2], tile[3]);
+        }
+        for (Silhouette silhouette : affected) {
+            findNewSilhouettes(silhouette.minX, silhouette.minY, silhouette.maxX, silhouette.maxY);
+        }
+    }
+
+    /**
+     * Starts a search from every foreground pixel of the rectangle not belonging to any silhouette.
+     *
+     * @param firstX is the x-coordinate of the first column of the rectangle.
+     * @param firstY is the y-coordinate of the first row of the rectangle.
+     * @param lastX  is the x-coordinate of the last column of the rectangle.
+     * @param lastY  is the y-coordinate of the last row of the rectangle.
+     */
+    private void findNewSilhouettes(int firstX, int firstY, int lastX, int lastY) {
+        int[] labels = labelMap.labels;
+        for (int y = firstY; y <= lastY; y++) {
+            int rowStart = (y + 1) * labelMap.rowLength + 1;
+            int rowEnd = rowStart + lastX + 1;
+            for (int pixel = mask.nextForeground(rowStart + firstX, rowEnd); pixel < rowEnd;
+                 pixel = mask.nextForeground(pixel + 1, rowEnd)) {
+                if (labels[pixel] == LabelMap.NO_SILHOUETTE) {
+                    Silhouette silhouette = new Silhouette(takeId(), labelMap);
+                    silhouettes[silhouette.id] = silhouette;
+                    fill(pixel, silhouette);
+                    firstPixels[silhouette.id] = findFirstPixel(silhouette);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks all pixels connected to the starting one with the silhouette id
+     * using the iterative depth-first search.
+     *
+     * @param start      is the index of the starting pixel.
+     * @param silhouette is the silhouette the pixels belong to.
+     */
+    private void fill(int start, Silhouette silhouette) {
+        int rowLength = labelMap.rowLength;
+        markPixel(start, silhouette);
+        queue.push(start);
+
+        while (!queue.isEmpty()) {
+            int pixel = queue.pop();
+            // The edges of the mask are background, so all four neighbors exist
+            boolean inside = visitNeighbor(pixel + rowLength, silhouette);
+            inside &= visitNeighbor(pixel - rowLength, silhouette);
+            inside &= visitNeighbor(pixel + 1, silhouette);
+            inside &= visitNeighbor(pixel - 1, silhouette);
+            if (!inside) {
+                silhouette.addPerimeterPixels(1);
+            }
+            // The corner neighbors are connected in the 8-connected mode only
+            for (int i = 4; i < neighborOffsets.length; i++) {
+                visitNeighbor(pixel + neighborOffsets[i], silhouette);
+            }
+        }
+    }
+
+    /**
+     * Adds the neighbor pixel to the silhouette and to the work queue if it
+     * is not marked yet and has non-background color.
+     *
+     * @param pixel      is the index of the neighbor pixel.
+     * @param silhouette is the silhouette the neighbor pixel may belong to.
+     * @return true if the neighbor pixel has non-background color.
+     */
+    private boolean visitNeighbor(int pixel, Silhouette silhouette) {
+        if (!mask.isForeground(pixel)) {
+            return false;
+        }
+        if (labelMap.labels[pixel] == LabelMap.NO_SILHOUETTE) {
+            markPixel(pixel, silhouette);
+            queue.push(pixel);
+        }
+        return true;
+    }
+
+    /**
+     * Marks the pixel with the silhouette id and adds its coordinates and its color to the silhouette.
+     *
+     * @param pixel      is the index of the pixel.
+     * @param silhouette is the silhouette the pixel belongs to.
+     */
+    private void markPixel(int pixel, Silhouette silhouette) {
+        labelMap.labels[pixel] = silhouette.id;
+        int row = pixel / labelMap.rowLength;
+        silhouette.addPixel(pixel - row * labelMap.rowLength - 1, row - 1);
+        silhouette.addColor(mask.colors[pixel]);
+    }
+
+    /**
+     * Gives an id to a new silhouette, the ids of the erased ones are reused first.
+     *
+     * @return the id.
+     */
+    private int takeId() {
+        if (numOfFreeIds > 0) {
+            return freeIds[--numOfFreeIds];
+        }
+        if (nextId == affectedInFrame.length) {
+            affectedInFrame = Arrays.copyOf(affectedInFrame, affectedInFrame.length * 2);
+            firstPixels = Arrays.copyOf(firstPixels, affectedInFrame.length);
+            silhouettes = Arrays.copyOf(silhouettes, affectedInFrame.length);
+        }
+        return nextId++;
+    }
+
+    /**
+     * Makes the id of an erased silhouette free for the new ones.
+     *
+     * @param id is the id of the erased silhouette.
+     */
+    private void freeId(int id) {
+        if (numOfFreeIds == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[numOfFreeIds++] = id;
+    }
+
+    /**
+     * Lists the silhouettes in the order their first pixels appear in the frame.
+     * The first pixels and the ids are packed into longs, so the sort compares primitives.
+     *
+     * @return the ordered silhouettes.
+     */
+    private ArrayList<Silhouette> orderSilhouettes() {
+        long[] keys = new long[nextId - 1 - numOfFreeIds];
+        int i = 0;
+        for (int id = 1; id < nextId; id++) {
+            if (silhouettes[id] != null) {
+                keys[i++] = (long) firstPixels[id] << 32 | id;
+            }
+        }
+        Arrays.sort(keys);
+
+        ArrayList<Silhouette> ordered = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            ordered.add(silhouettes[(int) key]);
+        }
+        return ordered;
+    }
+
+    /**
+     * Finds the first pixel of the silhouette, it lies in the top row of its bounding box.
+     *
+     * @param silhouette is the silhouette.
+     * @return the index of the first pixel in the label map.
+     */
+    private int findFirstPixel(Silhouette silhouette) {
+        int rowStart = (silhouette.minY + 1) * labelMap.rowLength + 1;
+        int pixel = rowStart + silhouette.minX;
+        while (labelMap.labels[pixel] != silhouette.id) {
+            pixel++;
+        }
+        return pixel;
+    }
+}
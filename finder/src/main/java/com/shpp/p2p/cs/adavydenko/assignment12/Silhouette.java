@@ -0,0 +1,377 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.awt.*;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The class representing a silhouette found by the program
+ * on a user provided image. The object Silhouette contains
+ * information on how many pixels does this silhouette has
+ * and which pixels of the image exactly.
+ * <p>
+ * The pixels themselves are not copied to the silhouette. They are
+ * marked with the silhouette id in the label map shared by all silhouettes
+ * of the image, and the silhouette only keeps its bounding box to know
+ * which part of that map to look at.
+ * <p>
+ * While the pixels are found, the silhouette also sums their coordinates, the squares
+ * and the products of the coordinates, their colors and the number of perimeter pixels.
+ * The centroid, the orientation and the mean color are found from these sums, so
+ * they need no second pass over the pixels.
+ */
+public class Silhouette {
+    /**
+     * Number of pixels the silhouette has.
+     */
+    protected int numOfPixels = 0;
+
+    /**
+     * The id the pixels of this silhouette are marked with in the label map.
+     */
+    protected final int id;
+
+    /**
+     * The map of the whole image saying which silhouette each pixel belongs to.
+     * The silhouettes found while streaming the image band by band have no such
+     * map, then it is null.
+     */
+    protected final LabelMap labelMap;
+
+    /**
+     * The bounding box of the silhouette in image coordinates (inclusive).
+     */
+    protected int minX = Integer.MAX_VALUE;
+    protected int minY = Integer.MAX_VALUE;
+    protected int maxX = Integer.MIN_VALUE;
+    protected int maxY = Integer.MIN_VALUE;
+
+    /**
+     * The sums of the pixel coordinates, of their squares and of their products.
+     */
+    protected long sumX = 0;
+    protected long sumY = 0;
+    protected long sumXX = 0;
+    protected long sumYY = 0;
+    protected long sumXY = 0;
+
+    /**
+     * Number of silhouette pixels having a background pixel among their four neighbors.
+     */
+    protected int numOfPerimeterPixels = 0;
+
+    /**
+     * The sums of the red, green and blue channels of the pixel colors. The colors are
+     * only known if the foreground mask was classified from a pixel buffer, so the number
+     * of pixels whose colors were added is kept separately.
+     */
+    protected long sumRed = 0;
+    protected long sumGreen = 0;
+    protected long sumBlue = 0;
+    protected int numOfColoredPixels = 0;
+
+    /**
+     * Creates a silhouette without pixels yet.
+     *
+     * @param id       is the id the silhouette pixels are marked with in the label map.
+     * @param labelMap is the label map of the image.
+     */
+    public Silhouette(int id, LabelMap labelMap) {
+        this.id = id;
+        this.labelMap = labelMap;
+    }
+
+    /**
+     * Counts the pixel as the silhouette pixel and extends the bounding box
+     * to contain it. The pixel shall already be marked in the label map.
+     *
+     * @param x is the x-coordinate of the image pixel.
+     * @param y is the y-coordinate of the image pixel.
+     */
+    protected void addPixel(int x, int y) {
+        numOfPixels++;
+        if (x < minX) minX = x;
+        if (x > maxX) maxX = x;
+        if (y < minY) minY = y;
+        if (y > maxY) maxY = y;
+        sumX += x;
+        sumY += y;
+        sumXX += (long) x * x;
+        sumYY += (long) y * y;
+        sumXY += (long) x * y;
+    }
+
+    /**
+     * Counts a horizontal run of pixels of one image row as the silhouette pixels.
+     * The pixels shall already be marked in the label map.
+     *
+     * @param firstX is the x-coordinate of the first pixel of the run.
+     * @param lastX  is the x-coordinate of the last pixel of the run.
+     * @param y      is the y-coordinate of the row.
+     */
+    protected void addRun(int firstX, int lastX, int y) {
+        int length = lastX - firstX + 1;
+        numOfPixels += length;
+        if (firstX < minX) minX = firstX;
+        if (lastX > maxX) maxX = lastX;
+        if (y < minY) minY = y;
+        if (y > maxY) maxY = y;
+
+        // The sums over the run are arithmetic series, so they are found without a loop
+        long runSumX = (long) (firstX + lastX) * length / 2;
+        sumX += runSumX;
+        sumY += (long) y * length;
+        sumXX += sumOfSquares(lastX) - sumOfSquares(firstX - 1);
+        sumYY += (long) y * y * length;
+        sumXY += runSumX * y;
+    }
+
+    /**
+     * @param n is a number not smaller than -1.
+     * @return the sum of the squares of the numbers from 0 to n.
+     */
+    private static long sumOfSquares(long n) {
+        return n * (n + 1) * (2 * n + 1) / 6;
+    }
+
+    /**
+     * Adds the color of one silhouette pixel to the mean color.
+     *
+     * @param argb is the ARGB color of the pixel.
+     */
+    protected void addColor(int argb) {
+        sumRed += (argb >>> 16) & 0xFF;
+        sumGreen += (argb >>> 8) & 0xFF;
+        sumBlue += argb & 0xFF;
+        numOfColoredPixels++;
+    }
+
+    /**
+     * Adds the colors of several silhouette pixels lying one after another to the mean color.
+     *
+     * @param colors are the ARGB colors of the pixels.
+     * @param from   is the position of the first pixel.
+     * @param to     is the position right after the last pixel.
+     */
+    protected void addColors(int[] colors, int from, int to) {
+        long red = 0, green = 0, blue = 0;
+        for (int i = from; i < to; i++) {
+            red += (colors[i] >>> 16) & 0xFF;
+            green += (colors[i] >>> 8) & 0xFF;
+            blue += colors[i] & 0xFF;
+        }
+        sumRed += red;
+        sumGreen += green;
+        sumBlue += blue;
+        numOfColoredPixels += to - from;
+    }
+
+    /**
+     * Counts the silhouette pixels found to lie on its perimeter.
+     *
+     * @param count is the number of the perimeter pixels.
+     */
+    protected void addPerimeterPixels(int count) {
+        numOfPerimeterPixels += count;
+    }
+
+    /**
+     * Adds the pixels of another part of the same silhouette, found separately,
+     * to this silhouette. The pixels of the part shall be marked with the id of
+     * this silhouette in the label map by the caller.
+     *
+     * @param part is the part of the silhouette.
+     */
+    protected void absorb(Silhouette part) {
+        numOfPixels += part.numOfPixels;
+        minX = Math.min(minX, part.minX);
+        maxX = Math.max(maxX, part.maxX);
+        minY = Math.min(minY, part.minY);
+        maxY = Math.max(maxY, part.maxY);
+        sumX += part.sumX;
+        sumY += part.sumY;
+        sumXX += part.sumXX;
+        sumYY += part.sumYY;
+        sumXY += part.sumXY;
+        numOfPerimeterPixels += part.numOfPerimeterPixels;
+        sumRed += part.sumRed;
+        sumGreen += part.sumGreen;
+        sumBlue += part.sumBlue;
+        numOfColoredPixels += part.numOfColoredPixels;
+    }
+
+    /**
+     * Joins the parts of silhouettes found separately into whole silhouettes. The parts
+     * are numbered from zero, and the root of the parts of one silhouette shall be the
+     * part with the smallest number, so the silhouettes are numbered in the order their
+     * first parts were found.
+     *
+     * @param parts       are the parts of the silhouettes.
+     * @param findRoot    gives the root part of the silhouette the part belongs to.
+     * @param labelMap    is the label map of the image.
+     * @param silhouettes is the list to add the whole silhouettes to.
+     * @return the id of the whole silhouette of each part.
+     */
+    static int[] joinParts(List<Silhouette> parts, IntUnaryOperator findRoot, LabelMap labelMap,
+                           List<Silhouette> silhouettes) {
+        int[] silhouetteIds = new int[parts.size()];
+
+        for (int part = 0; part < parts.size(); part++) {
+            int root = findRoot.applyAsInt(part);
+            if (root == part) {
+                silhouettes.add(new Silhouette(silhouettes.size() + 1, labelMap));
+                silhouetteIds[part] = silhouettes.size();
+            } else {
+                silhouetteIds[part] = silhouetteIds[root]; // The root is smaller, so it already has an id
+            }
+            silhouettes.get(silhouetteIds[part] - 1).absorb(parts.get(part));
+        }
+        return silhouetteIds;
+    }
+
+    /**
+     * Calls the visitor for every pixel of the silhouette going row by row
+     * through the silhouette bounding box.
+     *
+     * @param visitor is the action to perform on each pixel.
+     * @throws IllegalStateException if the silhouette has no label map.
+     */
+    public void forEachPixel(PixelVisitor visitor) {
+        if (labelMap == null) {
+            throw new IllegalStateException("The pixels of silhouette " + id + " were not kept");
+        }
+        int[] labels = labelMap.labels;
+        int rowLength = labelMap.rowLength;
+
+        for (int y = minY; y <= maxY; y++) {
+            int rowStart = (y + 1) * rowLength + 1;
+            for (int x = minX; x <= maxX; x++) {
+                if (labels[rowStart + x] == id) {
+                    visitor.visit(x, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the id of the silhouette in the label map.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the number of pixels the silhouette has.
+     */
+    public int getNumOfPixels() {
+        return numOfPixels;
+    }
+
+    /**
+     * @return the x-coordinate of the leftmost silhouette pixel.
+     */
+    public int getMinX() {
+        return minX;
+    }
+
+    /**
+     * @return the y-coordinate of the topmost silhouette pixel.
+     */
+    public int getMinY() {
+        return minY;
+    }
+
+    /**
+     * @return the x-coordinate of the rightmost silhouette pixel.
+     */
+    public int getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * @return the y-coordinate of the bottommost silhouette pixel.
+     */
+    public int getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * @return the width of the silhouette bounding box.
+     */
+    public int getWidth() {
+        return maxX - minX + 1;
+    }
+
+    /**
+     * @return the height of the silhouette bounding box.
+     */
+    public int getHeight() {
+        return maxY - minY + 1;
+    }
+
+    /**
+     * @return the x-coordinate of the silhouette centroid.
+     */
+    public double getCentroidX() {
+        return (double) sumX / numOfPixels;
+    }
+
+    /**
+     * @return the y-coordinate of the silhouette centroid.
+     */
+    public double getCentroidY() {
+        return (double) sumY / numOfPixels;
+    }
+
+    /**
+     * @return the second central moment along the x-axis, the variance of the x-coordinates.
+     */
+    public double getMomentXX() {
+        double centroidX = getCentroidX();
+        return (double) sumXX / numOfPixels - centroidX * centroidX;
+    }
+
+    /**
+     * @return the second central moment along the y-axis, the variance of the y-coordinates.
+     */
+    public double getMomentYY() {
+        double centroidY = getCentroidY();
+        return (double) sumYY / numOfPixels - centroidY * centroidY;
+    }
+
+    /**
+     * @return the mixed second central moment, the covariance of the coordinates.
+     */
+    public double getMomentXY() {
+        return (double) sumXY / numOfPixels - getCentroidX() * getCentroidY();
+    }
+
+    /**
+     * Finds the angle between the x-axis and the axis the silhouette is the longest along.
+     * The y-axis of the image points down, so positive angles turn clockwise. The angle
+     * means nothing for the silhouettes as long in every direction, like circles and squares.
+     *
+     * @return the angle in radians from -pi/2 to pi/2.
+     */
+    public double getOrientation() {
+        return 0.5 * Math.atan2(2 * getMomentXY(), getMomentXX() - getMomentYY());
+    }
+
+    /**
+     * @return the number of silhouette pixels touching the background by a side.
+     */
+    public int getNumOfPerimeterPixels() {
+        return numOfPerimeterPixels;
+    }
+
+    /**
+     * @return the mean color of the silhouette pixels or null if their colors were not known.
+     */
+    public Color getMeanColor() {
+        if (numOfColoredPixels == 0) {
+            return null;
+        }
+        return new Color((int) (sumRed / numOfColoredPixels), (int) (sumGreen / numOfColoredPixels),
+                (int) (sumBlue / numOfColoredPixels));
+    }
+}
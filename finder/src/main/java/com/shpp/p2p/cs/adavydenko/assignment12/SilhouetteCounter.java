@@ -0,0 +1,147 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+/**
+ * Counts the silhouettes without keeping them. It is the cheapest way to answer
+ * "how many silhouettes are there" or "are there at least N of them".
+ * <p>
+ * Every object is found with the same depth-first search as the labelers use, but its
+ * pixels are only counted in a local variable and erased from the foreground mask as
+ * they are visited, so neither a label map nor a Silhouette object is created. An object
+ * not larger than the minimum size is forgotten as soon as its search ends. The counting
+ * can stop as soon as the wanted number of silhouettes is found.
+ * <p>
+ * The counter erases the mask it inspects, so the mask can not be used afterwards.
+ */
+public class SilhouetteCounter {
+
+    /**
+     * Objects of this number of pixels or fewer are not counted.
+     */
+    private final int minimumSize;
+
+    /**
+     * The number of silhouettes after which the counting stops.
+     */
+    private final int stopAfter;
+
+    /**
+     * The number of neighbors a pixel is connected to, 4 or 8.
+     */
+    private final int connectivity;
+
+    /**
+     * A queue containing the silhouette pixels whose neighbors are not inspected yet.
+     */
+    private final PixelQueue queue = new PixelQueue();
+
+    /**
+     * Creates the counter counting all silhouettes.
+     *
+     * @param minimumSize is the size of the objects not counted.
+     */
+    public SilhouetteCounter(int minimumSize) {
+        this(minimumSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates the counter.
+     *
+     * @param minimumSize is the size of the objects not counted.
+     * @param stopAfter   is the number of silhouettes after which the counting stops.
+     */
+    public SilhouetteCounter(int minimumSize, int stopAfter) {
+        this(minimumSize, stopAfter, ForegroundMask.FOUR_CONNECTED);
+    }
+
+    /**
+     * Creates the counter.
+     *
+     * @param minimumSize  is the size of the objects not counted.
+     * @param stopAfter    is the number of silhouettes after which the counting stops.
+     * @param connectivity is the number of neighbors a pixel is connected to, 4 or 8.
+     */
+    public SilhouetteCounter(int minimumSize, int stopAfter, int connectivity) {
+        if (stopAfter < 1) {
+            throw new IllegalArgumentException("The number to stop after shall be positive: " + stopAfter);
+        }
+        this.minimumSize = minimumSize;
+        this.stopAfter = stopAfter;
+        this.connectivity = ForegroundMask.checkConnectivity(connectivity);
+    }
+
+    /**
+     * Counts the silhouettes of the mask erasing the mask on the way.
+     *
+     * @param mask is the mask of the pixels of non-background color.
+     * @return the number of silhouettes, but not more than the number to stop after.
+     */
+    public int count(ForegroundMask mask) {
+        int numOfSilhouettes = 0;
+        int end = mask.getLength();
+        int[] neighborOffsets = mask.getNeighborOffsets(connectivity);
+
+        // The first foreground pixel left is always the first pixel of a new object
+        for (int pixel = mask.nextForeground(0, end); pixel < end; pixel = mask.nextForeground(pixel, end)) {
+            if (countPixels(pixel, mask, neighborOffsets) > minimumSize) {
+                numOfSilhouettes++;
+                if (numOfSilhouettes == stopAfter) {
+                    break;
+                }
+            }
+        }
+        return numOfSilhouettes;
+    }
+
+    /**
+     * Counts the pixels of the object the pixel belongs to erasing them from the mask.
+     *
+     * @param start           is the index of the first pixel of the object.
+     * @param mask            is the mask of the pixels of non-background color.
+     * @param neighborOffsets are the offsets of the connected neighbors, the side ones first.
+     * @return the number of pixels of the object.
+     */
+    private long countPixels(int start, ForegroundMask mask, int[] neighborOffsets) {
+        // Length of one row of the mask, the neighbors above and below are that far away
+        int rowLength = mask.rowLength;
+        long numOfPixels = 0;
+
+        mask.clearForeground(start);
+        queue.push(start);
+        while (!queue.isEmpty()) {
+            int pixel = queue.pop();
+            numOfPixels++;
+
+            // The edges of the mask are background, so all four neighbors exist
+            visitNeighbor(pixel + rowLength, mask);
+            visitNeighbor(pixel - rowLength, mask);
+            visitNeighbor(pixel + 1, mask);
+            visitNeighbor(pixel - 1, mask);
+            // The corner neighbors are connected in the 8-connected mode only
+            for (int i = 4; i < neighborOffsets.length; i++) {
+                visitNeighbor(pixel + neighborOffsets[i], mask);
+            }
+        }
+        return numOfPixels;
+    }
+
+    /**
+     * Erases the neighbor pixel from the mask and adds it to the work queue
+     * if it has non-background color.
+     *
+     * @param pixel is the index of the neighbor pixel in the mask.
+     * @param mask  is the mask of the pixels of non-background color.
+     */
+    private void visitNeighbor(int pixel, ForegroundMask mask) {
+        if (mask.isForeground(pixel)) {
+            mask.clearForeground(pixel);
+            queue.push(pixel);
+        }
+    }
+
+    /**
+     * @return the number of silhouettes after which the counting stops.
+     */
+    public int getStopAfter() {
+        return stopAfter;
+    }
+}
@@ -0,0 +1,484 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Finds silhouettes on images. The detector only keeps its settings, everything it
+ * creates while inspecting an image belongs to that single call, so one detector can
+ * inspect any number of images one after another or on several threads at once.
+ * The buffers of the search can also be kept in a workspace and reused from image
+ * to image, then each thread shall use its own workspace.
+ * <p>
+ * The inspection of an image consists of the stages:
+ * --- defining the background color from the image edges;
+ * --- copying the image pixels to the pixel buffer;
+ * --- classifying each pixel as a background or a silhouette one;
+ * --- grouping the silhouette pixels into silhouettes with the labeling engine.
+ */
+public class SilhouetteDetector {
+
+    /**
+     * The proportion of similarity at which a pixel color is deemed the background color.
+     */
+    private final double similarityThreshold;
+
+    /**
+     * The minimum number of pixels of an object to be deemed a silhouette.
+     */
+    private final int minimumSize;
+
+    /**
+     * The name of the single-threaded labeling engine.
+     */
+    private final String engineName;
+
+    /**
+     * The number of threads searching for silhouettes on one image.
+     */
+    private final int parallelism;
+
+    /**
+     * The number of image rows decoded at once in the streaming mode.
+     */
+    private final int bandHeight;
+
+    /**
+     * The number of image pixels per side of a block in the pyramid mode.
+     */
+    private final int pyramidScale;
+
+    /**
+     * The way to pick the background color from the colors of the image edges.
+     */
+    private final BackgroundEstimator.Strategy backgroundStrategy;
+
+    /**
+     * The background color given by the user, or null if it is defined from the image edges.
+     */
+    private final Color backgroundColor;
+
+    /**
+     * The number of pixels per side of the local background tiles, or zero for one global background.
+     */
+    private final int backgroundTile;
+
+    /**
+     * The number of silhouettes after which the counting stops, or zero to count all of them.
+     */
+    private final int stopAfter;
+
+    /**
+     * The number of neighbors a pixel is connected to, 4 or 8.
+     */
+    private final int connectivity;
+
+    /**
+     * Creates the detector with the settings.
+     *
+     * @param settings are the parameters of the silhouettes search.
+     */
+    public SilhouetteDetector(DetectorSettings settings) {
+        this.similarityThreshold = settings.getSimilarityThreshold();
+        this.minimumSize = settings.getMinimumSize();
+        this.engineName = settings.getEngine();
+        this.parallelism = settings.getParallelism();
+        this.bandHeight = settings.getBandHeight();
+        this.pyramidScale = settings.getPyramidScale();
+        if (pyramidScale < 1) {
+            throw new IllegalArgumentException("The pyramid scale shall be positive: " + pyramidScale);
+        }
+        this.backgroundStrategy = settings.getBackgroundStrategy();
+        this.backgroundColor = settings.getBackgroundColor();
+        this.backgroundTile = settings.getBackgroundTile();
+        if (backgroundTile != 0 && backgroundTile < 2) {
+            throw new IllegalArgumentException("The background tile size shall be at least 2: " + backgroundTile);
+        }
+        this.stopAfter = settings.getStopAfter();
+        this.connectivity = settings.getConnectivity();
+        createLabelingEngine(); // Fails right away if the engine name or the connectivity is wrong
+    }
+
+    /**
+     * Reads the image file and finds the silhouettes on it. The raw pixel files
+     * are mapped to memory instead of being decoded.
+     *
+     * @param file is the image file or the raw pixel file.
+     * @return the silhouettes found.
+     * @throws IOException if the image can not be read.
+     */
+    public DetectionResult detect(File file) throws IOException {
+        return detect(file, newWorkspace());
+    }
+
+    /**
+     * Reads the image file to the pixel buffer of the workspace and finds the silhouettes
+     * on it with the buffers of the workspace.
+     *
+     * @param file      is the image file or the raw pixel file.
+     * @param workspace is the workspace created by this detector.
+     * @return the silhouettes found, valid until the workspace is used again.
+     * @throws IOException if the image can not be read.
+     */
+    public DetectionResult detect(File file, DetectorWorkspace workspace) throws IOException {
+        DetectionMetrics metrics = new DetectionMetrics();
+        readPixels(file, metrics, workspace.pixelBuffer);
+        return detect(workspace.pixelBuffer, metrics, workspace);
+    }
+
+    /**
+     * Reads the image file.
+     *
+     * @param file is the image file.
+     * @return the decoded image.
+     * @throws IOException if the image can not be read or its format is unknown.
+     */
+    public static BufferedImage readImage(File file) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("Unknown image format: " + file);
+        }
+        return image;
+    }
+
+    /**
+     * Reads the pixels of the image file to a pixel buffer. A raw pixel file is mapped
+     * to memory and copied, any other file is decoded with ImageIO and then copied.
+     *
+     * @param file    is the image file or the raw pixel file.
+     * @param metrics are the metrics to add the decoding and copying times to.
+     * @return the buffer with the image pixels, its edges are not filled yet.
+     * @throws IOException if the file can not be read or its format is unknown.
+     */
+    static PixelBuffer readPixels(File file, DetectionMetrics metrics) throws IOException {
+        PixelBuffer pixelBuffer = new PixelBuffer(0, 0);
+        readPixels(file, metrics, pixelBuffer);
+        return pixelBuffer;
+    }
+
+    /**
+     * Reads the pixels of the image file to the existing pixel buffer,
+     * which is resized to the image.
+     *
+     * @param file        is the image file or the raw pixel file.
+     * @param metrics     are the metrics to add the decoding and copying times to.
+     * @param pixelBuffer is the buffer to put the image pixels to, its edges are not filled yet.
+     * @throws IOException if the file can not be read or its format is unknown.
+     */
+    static void readPixels(File file, DetectionMetrics metrics, PixelBuffer pixelBuffer) throws IOException {
+        long start = System.nanoTime();
+        if (RawPixelFile.isRawFile(file.toPath())) {
+            RawPixelFile.read(file.toPath(), pixelBuffer);
+            metrics.addStageNanos(DetectionMetrics.Stage.DECODE, System.nanoTime() - start);
+            return;
+        }
+
+        BufferedImage image = readImage(file);
+        long decodeEnd = System.nanoTime();
+        metrics.addStageNanos(DetectionMetrics.Stage.DECODE, decodeEnd - start);
+
+        pixelBuffer.readImage(image);
+        metrics.addStageNanos(DetectionMetrics.Stage.BUFFER, System.nanoTime() - decodeEnd);
+    }
+
+    /**
+     * Converts the image to a pixel buffer and finds the silhouettes on it.
+     *
+     * @param image is the image.
+     * @return the silhouettes found.
+     */
+    public DetectionResult detect(BufferedImage image) {
+        return detect(image, newWorkspace());
+    }
+
+    /**
+     * Copies the image to the pixel buffer of the workspace and finds the silhouettes
+     * on it with the buffers of the workspace.
+     *
+     * @param image     is the image.
+     * @param workspace is the workspace created by this detector.
+     * @return the silhouettes found, valid until the workspace is used again.
+     */
+    public DetectionResult detect(BufferedImage image, DetectorWorkspace workspace) {
+        DetectionMetrics metrics = new DetectionMetrics();
+        long start = System.nanoTime();
+        workspace.pixelBuffer.readImage(image);                          // Copies image pixel colors to the buffer
+        metrics.addStageNanos(DetectionMetrics.Stage.BUFFER, System.nanoTime() - start);
+        return detect(workspace.pixelBuffer, metrics, workspace);
+    }
+
+    /**
+     * Finds the silhouettes on the image kept in the pixel buffer.
+     * The edges of the buffer are filled with the background color.
+     *
+     * @param pixelBuffer is the buffer with the image pixels.
+     * @return the silhouettes found.
+     */
+    public DetectionResult detect(PixelBuffer pixelBuffer) {
+        return detect(pixelBuffer, new DetectionMetrics());
+    }
+
+    /**
+     * Finds the silhouettes on the image kept in the pixel buffer with the buffers of a new workspace.
+     *
+     * @param pixelBuffer is the buffer with the image pixels.
+     * @param metrics     are the metrics of the search.
+     * @return the silhouettes found.
+     */
+    DetectionResult detect(PixelBuffer pixelBuffer, DetectionMetrics metrics) {
+        return detect(pixelBuffer, metrics, newWorkspace());
+    }
+
+    /**
+     * Finds the silhouettes on the image kept in the pixel buffer with the buffers
+     * of the workspace, comparing every pixel with the background color.
+     *
+     * @param pixelBuffer is the buffer with the image pixels.
+     * @param metrics     are the metrics of the search.
+     * @param workspace   is the workspace created by this detector.
+     * @return the silhouettes found.
+     */
+    DetectionResult detect(PixelBuffer pixelBuffer, DetectionMetrics metrics, DetectorWorkspace workspace) {
+        return detect(pixelBuffer, metrics, workspace, 1);
+    }
+
+    /**
+     * Reads the image file and finds the silhouettes on it coarse to fine: only the blocks
+     * on the borders of the silhouettes found on the downsampled image are classified
+     * at full resolution. See PyramidClassifier for what the result can miss.
+     *
+     * @param file is the image file or the raw pixel file.
+     * @return the silhouettes found.
+     * @throws IOException if the image can not be read.
+     */
+    public DetectionResult detectPyramid(File file) throws IOException {
+        DetectorWorkspace workspace = newWorkspace();
+        DetectionMetrics metrics = new DetectionMetrics();
+        readPixels(file, metrics, workspace.pixelBuffer);
+        return detect(workspace.pixelBuffer, metrics, workspace, pyramidScale);
+    }
+
+    /**
+     * Finds the silhouettes on the image kept in the pixel buffer coarse to fine.
+     * The edges of the buffer are filled with the background color.
+     *
+     * @param pixelBuffer is the buffer with the image pixels.
+     * @return the silhouettes found.
+     */
+    public DetectionResult detectPyramid(PixelBuffer pixelBuffer) {
+        return detect(pixelBuffer, new DetectionMetrics(), newWorkspace(), pyramidScale);
+    }
+
+    /**
+     * Defines background color, classifies the pixels of the buffer and looks for
+     * silhouettes among the pixels of non-background color. With the scale larger than one
+     * the pixels are classified coarse to fine, otherwise every pixel is classified. The mask,
+     * the label map, the color histogram and the labeling engine are taken from the workspace.
+     * The time of each stage and the amount of work done are saved to the metrics.
+     *
+     * @param pixelBuffer is the buffer with the image pixels.
+     * @param metrics     are the metrics of the search.
+     * @param workspace   is the workspace created by this detector.
+     * @param scale       is the number of image pixels per side of a pyramid block, or 1.
+     * @return the silhouettes found.
+     */
+    private DetectionResult detect(PixelBuffer pixelBuffer, DetectionMetrics metrics, DetectorWorkspace workspace,
+                                   int scale) {
+        long start = System.nanoTime();
+        Color bgColor = getBackgroundColor(pixelBuffer, workspace.histogram); // Defines background color
+        pixelBuffer.fillEdges(bgColor.getRGB());
+        long stageEnd = System.nanoTime();
+        metrics.addStageNanos(DetectionMetrics.Stage.BACKGROUND, stageEnd - start);
+
+        start = stageEnd;
+        ForegroundMask mask = workspace.mask;                            // Marks pixels of non-background color
+        long pixelsClassified = (long) pixelBuffer.width * pixelBuffer.height;
+        if (scale > 1) {
+            PyramidClassifier pyramid = new PyramidClassifier(
+                    new BackgroundClassifier(bgColor.getRGB(), similarityThreshold), scale, minimumSize);
+            pyramid.classify(pixelBuffer, mask);
+            pixelsClassified = pyramid.getPixelsClassified();
+        } else {
+            classifyImagePixels(pixelBuffer, bgColor, mask);
+        }
+        stageEnd = System.nanoTime();
+        metrics.addStageNanos(DetectionMetrics.Stage.CLASSIFY, stageEnd - start);
+
+        start = stageEnd;
+        LabelMap labelMap = workspace.labelMap;
+        labelMap.reset(pixelBuffer.width, pixelBuffer.height);
+        LabelingEngine engine = workspace.engine;
+        ArrayList<Silhouette> silhouettes = engine.findSilhouettes(mask, labelMap);
+        metrics.addStageNanos(DetectionMetrics.Stage.LABEL, System.nanoTime() - start);
+
+        DetectionResult result = new DetectionResult(bgColor, labelMap, silhouettes, minimumSize, metrics);
+        metrics.pixelsClassified = pixelsClassified;
+        metrics.componentsFound = silhouettes.size();
+        metrics.componentsFiltered = silhouettes.size() - result.getNumOfSilhouettes();
+        metrics.maxQueueDepth = engine.getMaxQueueDepth();
+        metrics.bufferBytes = 4L * pixelBuffer.pixels.length + 8L * mask.bits.length + 4L * labelMap.labels.length;
+        return result;
+    }
+
+    /**
+     * Reads the image file and counts the silhouettes on it without keeping them.
+     *
+     * @param file is the image file or the raw pixel file.
+     * @return the number of silhouettes, but not more than the number to stop after.
+     * @throws IOException if the image can not be read.
+     */
+    public int count(File file) throws IOException {
+        return count(readPixels(file, new DetectionMetrics()));
+    }
+
+    /**
+     * Counts the silhouettes on the image kept in the pixel buffer without keeping them.
+     * The objects not larger than the minimum size are forgotten as soon as they are found,
+     * and if the number to stop after is set, the counting stops when that many silhouettes
+     * are found. The edges of the buffer are filled with the background color.
+     *
+     * @param pixelBuffer is the buffer with the image pixels.
+     * @return the number of silhouettes, but not more than the number to stop after.
+     */
+    public int count(PixelBuffer pixelBuffer) {
+        Color bgColor = getBackgroundColor(pixelBuffer, new ColorHistogram());
+        pixelBuffer.fillEdges(bgColor.getRGB());
+        ForegroundMask mask = new ForegroundMask(pixelBuffer.width, pixelBuffer.height);
+        classifyImagePixels(pixelBuffer, bgColor, mask);
+        SilhouetteCounter counter = new SilhouetteCounter(minimumSize,
+                stopAfter > 0 ? stopAfter : Integer.MAX_VALUE, connectivity);
+        return counter.count(mask);
+    }
+
+    /**
+     * Reads the image file once and counts the silhouettes on it for every combination
+     * of the similarity threshold and the minimum size. The background color is defined
+     * once with the settings of this detector, its own threshold and minimum size are not used.
+     *
+     * @param file         is the image file or the raw pixel file.
+     * @param thresholds   are the similarity thresholds.
+     * @param minimumSizes are the minimum silhouette sizes.
+     * @return the number of silhouettes, the rows are the thresholds and the columns are the minimum sizes.
+     * @throws IOException if the image can not be read.
+     */
+    public int[][] sweep(File file, double[] thresholds, int[] minimumSizes) throws IOException {
+        PixelBuffer pixelBuffer = readPixels(file, new DetectionMetrics());
+        Color bgColor = getBackgroundColor(pixelBuffer, new ColorHistogram());
+        pixelBuffer.fillEdges(bgColor.getRGB());
+        return new ThresholdSweep(thresholds, minimumSizes, connectivity).run(pixelBuffer, bgColor.getRGB());
+    }
+
+    /**
+     * Creates the detector of a frame sequence with the settings of this detector.
+     * Only the single-threaded depth-first search is used for the sequences.
+     *
+     * @return the new sequence detector.
+     */
+    public SequenceDetector newSequence() {
+        return new SequenceDetector(similarityThreshold, minimumSize, backgroundStrategy, backgroundColor,
+                connectivity);
+    }
+
+    /**
+     * Creates an empty workspace with a labeling engine of the settings of this detector.
+     * Its buffers are allocated for the first image inspected with it.
+     *
+     * @return the new workspace.
+     */
+    public DetectorWorkspace newWorkspace() {
+        return new DetectorWorkspace(createLabelingEngine());
+    }
+
+    /**
+     * Says whether the counting stopped because enough silhouettes were found,
+     * so the image may have even more of them.
+     *
+     * @param numOfSilhouettes is the number of silhouettes counted.
+     * @return true if the counting stopped early.
+     */
+    public boolean stopsAfter(int numOfSilhouettes) {
+        return stopAfter > 0 && numOfSilhouettes >= stopAfter;
+    }
+
+    /**
+     * Finds the silhouettes decoding the image band by band, so the whole image is
+     * never kept in memory. The silhouettes not larger than the minimum size are
+     * dropped and the result has no label map.
+     *
+     * @param file is the image file.
+     * @return the silhouettes found.
+     * @throws IOException if the image can not be read.
+     */
+    public DetectionResult detectStreaming(File file) throws IOException {
+        StreamingDetector detector = new StreamingDetector(bandHeight, similarityThreshold, minimumSize,
+                backgroundStrategy, backgroundColor, connectivity);
+        ArrayList<Silhouette> silhouettes = detector.findSilhouettes(file);
+        return new DetectionResult(detector.getBgColor(), null, silhouettes, minimumSize, detector.getMetrics());
+    }
+
+    /**
+     * Defines which color shall be deemed as background color. The color given
+     * by the user is taken as it is, otherwise it is picked from the image edges.
+     * Afterwards the edges of the buffer shall be filled with background color:
+     * the buffer has additional one-pixel-thick rows / columns on the very top, bottom,
+     * left and right edges, this is the way to prevent the program from throwing
+     * an error when a silhouette touches image edge.
+     *
+     * @param pixelBuffer is the buffer with the image pixels.
+     * @param histogram   is the histogram to count the edge colors in.
+     * @return background color as Color object.
+     */
+    private Color getBackgroundColor(PixelBuffer pixelBuffer, ColorHistogram histogram) {
+        if (backgroundColor != null) {
+            return backgroundColor;
+        }
+        BackgroundEstimator estimator = new BackgroundEstimator(backgroundStrategy, histogram);
+        estimator.inspectBufferEdges(pixelBuffer);
+        return estimator.getBackgroundColor();
+    }
+
+    /**
+     * Compares each pixel of the image with the background color exactly once
+     * and saves the result to the foreground mask. If the local background tiles are set,
+     * each pixel is compared with the background around it, which starts from the given color.
+     *
+     * @param pixelBuffer is the buffer of the image pixel colors.
+     * @param bgColor     is the background color.
+     * @param mask        is the mask to save the pixels of non-background color to, it is reset first.
+     */
+    private void classifyImagePixels(PixelBuffer pixelBuffer, Color bgColor, ForegroundMask mask) {
+        if (backgroundTile > 0) {
+            new LocalBackgroundClassifier(bgColor.getRGB(), similarityThreshold, backgroundTile)
+                    .classify(pixelBuffer, mask);
+        } else {
+            new BackgroundClassifier(bgColor.getRGB(), similarityThreshold).classify(pixelBuffer, mask);
+        }
+    }
+
+    /**
+     * Creates the parallel strip labeler if more than one thread shall be used,
+     * otherwise the labeler of the chosen name. The labelers keep their work queues,
+     * so every workspace gets its own one.
+     *
+     * @return the labeling engine.
+     */
+    private LabelingEngine createLabelingEngine() {
+        if (parallelism > 1) {
+            return new ParallelStripLabeler(parallelism, connectivity);
+        }
+        switch (engineName) {
+            case "dfs":
+                return new DepthFirstLabeler(connectivity);
+            case "bfs":
+                return new BreadthFirstLabeler(connectivity);
+            case "scanline":
+                return new ScanlineLabeler(connectivity);
+            default:
+                throw new IllegalArgumentException("Unknown labeling engine: " + engineName);
+        }
+    }
+}
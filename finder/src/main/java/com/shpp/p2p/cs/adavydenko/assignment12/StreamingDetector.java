@@ -0,0 +1,593 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.TreeMap;
+
+/**
+ * Finds silhouettes on images too large to be kept in memory at once.
+ * <p>
+ * The image is decoded band by band, each band being a few hundred full-width rows.
+ * The runs of the band are labeled with the first pass of the scanline algorithm. Only
+ * the labels of the last row of the band and the statistics of the silhouettes touching
+ * it are carried to the next band. A silhouette not touching that row can not grow any more,
+ * so it is finished right away and dropped if it is not larger than the minimum size.
+ * This way the memory used is bounded by the band size, not by the image size.
+ * <p>
+ * The silhouettes have no label map, only their sizes and bounding boxes are kept.
+ * The raw pixel files and the PNG images PngRowReader supports are read row by row in
+ * one pass, and one more pass over the rows defines the background color from the image
+ * edges. Other images
+ * are decoded with ImageIO a band at a time. Most formats are decoded sequentially, so
+ * reading a band that way decodes all rows above it again and the decoding time grows
+ * with the number of bands times the size of the image, but never takes more memory than a band.
+ * <p>
+ * The detector keeps the state of the image being inspected, so a new one shall
+ * be created for each image.
+ */
+public class StreamingDetector {
+
+    /**
+     * The number of image rows decoded at once if the user does not say otherwise.
+     */
+    static final int DEFAULT_BAND_HEIGHT = 256;
+
+    /**
+     * The smallest number of pixels decoded at once when ImageIO decodes the image by
+     * regions. Each region may decode all rows above it again, so the regions are
+     * larger than the bands to need fewer of them.
+     */
+    static final int MIN_REGION_PIXELS = 4 * 1024 * 1024;
+
+    /**
+     * The number of image rows decoded at once.
+     */
+    private final int bandHeight;
+
+    /**
+     * The proportion of similarity between a pixel color and the background color
+     * at which the pixel is deemed a background one.
+     */
+    private final double similarityThreshold;
+
+    /**
+     * Silhouettes of this number of pixels or fewer are dropped as soon as they are finished.
+     */
+    private final int minimumSize;
+
+    /**
+     * The way to pick the background color from the colors of the image edges.
+     */
+    private final BackgroundEstimator.Strategy backgroundStrategy;
+
+    /**
+     * The background color given by the user, or null if it is defined from the image edges.
+     */
+    private final Color userBgColor;
+
+    /**
+     * The number of neighbors a pixel is connected to, 4 or 8.
+     */
+    private final int connectivity;
+
+    /**
+     * The background color defined from the image edges.
+     */
+    private Color bgColor;
+
+    /**
+     * Finished silhouettes larger than the minimum size, keyed by the order their first
+     * pixels appear in the image.
+     */
+    private final TreeMap<Long, Silhouette> finished = new TreeMap<>();
+
+    /**
+     * The structure of the equivalent labels of the current band.
+     */
+    private final UnionFind unionFind = new UnionFind();
+
+    /**
+     * The pixels of each label of the current band. The first labels stand
+     * for the silhouettes carried from the previous bands.
+     */
+    private ArrayList<Silhouette> parts = new ArrayList<>();
+
+    /**
+     * The labels of the last row of the previous band.
+     */
+    private int[] carriedLabels;
+
+    /**
+     * The order of the first pixels of the silhouettes carried from the previous bands.
+     */
+    private long[] carriedOrder = new long[0];
+
+    /**
+     * The number of labels created in the previous bands, the labels are created
+     * in the order their first pixels appear in the image.
+     */
+    private long labelsCreated = 0;
+
+    /**
+     * The time of the search stages summed over all bands and the amount of work done.
+     */
+    private final DetectionMetrics metrics = new DetectionMetrics();
+
+    /**
+     * Creates the detector.
+     *
+     * @param bandHeight          is the number of image rows decoded at once.
+     * @param similarityThreshold is the proportion of similarity at which colors are deemed equivalent.
+     * @param minimumSize         is the size of the silhouettes to drop.
+     */
+    public StreamingDetector(int bandHeight, double similarityThreshold, int minimumSize) {
+        this(bandHeight, similarityThreshold, minimumSize, BackgroundEstimator.Strategy.MODE, null);
+    }
+
+    /**
+     * Creates the detector.
+     *
+     * @param bandHeight          is the number of image rows decoded at once.
+     * @param similarityThreshold is the proportion of similarity at which colors are deemed equivalent.
+     * @param minimumSize         is the size of the silhouettes to drop.
+     * @param backgroundStrategy  is the way to pick the background color from the image edges.
+     * @param userBgColor         is the background color given by the user or null.
+     */
+    public StreamingDetector(int bandHeight, double similarityThreshold, int minimumSize,
+                             BackgroundEstimator.Strategy backgroundStrategy, Color userBgColor) {
+        this(bandHeight, similarityThreshold, minimumSize, backgroundStrategy, userBgColor,
+                ForegroundMask.FOUR_CONNECTED);
+    }
+
+    /**
+     * Creates the detector.
+     *
+     * @param bandHeight          is the number of image rows decoded at once.
+     * @param similarityThreshold is the proportion of similarity at which colors are deemed equivalent.
+     * @param minimumSize         is the size of the silhouettes to drop.
+     * @param backgroundStrategy  is the way to pick the background color from the image edges.
+     * @param userBgColor         is the background color given by the user or null.
+     * @param connectivity        is the number of neighbors a pixel is connected to, 4 or 8.
+     */
+    public StreamingDetector(int bandHeight, double similarityThreshold, int minimumSize,
+                             BackgroundEstimator.Strategy backgroundStrategy, Color userBgColor, int connectivity) {
+        if (bandHeight < 1) {
+            throw new IllegalArgumentException("Band height shall be positive: " + bandHeight);
+        }
+        this.bandHeight = bandHeight;
+        this.similarityThreshold = similarityThreshold;
+        this.minimumSize = minimumSize;
+        this.backgroundStrategy = backgroundStrategy;
+        this.userBgColor = userBgColor;
+        this.connectivity = ForegroundMask.checkConnectivity(connectivity);
+    }
+
+    /**
+     * Finds the silhouettes larger than the minimum size on the image.
+     *
+     * @param file is the image file.
+     * @return the silhouettes numbered in the order their first pixels appear in the image.
+     * @throws IOException if the image can not be read.
+     */
+    public ArrayList<Silhouette> findSilhouettes(File file) throws IOException {
+        try (ImageRowSource rows = openRows(file)) {
+            if (rows != null) {
+                long start = System.nanoTime();
+                if (userBgColor != null) {
+                    bgColor = userBgColor;
+                } else {
+                    try (ImageRowSource edges = openRows(file)) {
+                        bgColor = getBackgroundColor(edges);
+                    }
+                }
+                metrics.addStageNanos(DetectionMetrics.Stage.BACKGROUND, System.nanoTime() - start);
+                return findSilhouettes(rows);
+            }
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                throw new IOException("Can not open " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unknown image format: " + file);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, false, true);
+                return findSilhouettes(reader);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Opens the file to be read row by row if it is a raw pixel file or a PNG image
+     * PngRowReader supports.
+     *
+     * @param file is the image file or the raw pixel file.
+     * @return the source of the rows, or null if the file shall be decoded with ImageIO.
+     * @throws IOException if the file can not be read.
+     */
+    private static ImageRowSource openRows(File file) throws IOException {
+        if (RawPixelFile.isRawFile(file.toPath())) {
+            return RawPixelFile.openRows(file.toPath());
+        }
+        return PngRowReader.open(file.toPath());
+    }
+
+    /**
+     * Defines the background color from the image edges and labels the image band by band
+     * decoding it with ImageIO a band at a time.
+     *
+     * @param reader is the reader of the image.
+     * @return the silhouettes numbered in the order their first pixels appear in the image.
+     * @throws IOException if the image can not be read.
+     */
+    private ArrayList<Silhouette> findSilhouettes(ImageReader reader) throws IOException {
+        long start = System.nanoTime();
+        bgColor = userBgColor != null ? userBgColor
+                : getBackgroundColor(reader, reader.getWidth(0), reader.getHeight(0));
+        metrics.addStageNanos(DetectionMetrics.Stage.BACKGROUND, System.nanoTime() - start);
+        int regionHeight = Math.max(bandHeight, MIN_REGION_PIXELS / reader.getWidth(0));
+        return findSilhouettes(new RegionRowSource(reader, regionHeight));
+    }
+
+    /**
+     * Labels the image band by band reading its rows in order. The background color shall be defined.
+     *
+     * @param source is the source of the image rows.
+     * @return the silhouettes numbered in the order their first pixels appear in the image.
+     * @throws IOException if the image can not be read.
+     */
+    private ArrayList<Silhouette> findSilhouettes(ImageRowSource source) throws IOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        BackgroundClassifier classifier = new BackgroundClassifier(bgColor.getRGB(), similarityThreshold);
+        carriedLabels = new int[width];
+        PixelBuffer pixelBuffer = new PixelBuffer(width, Math.min(bandHeight + 1, height));
+        ForegroundMask mask = new ForegroundMask(width, pixelBuffer.height);
+        long stageEnd = System.nanoTime();
+
+        for (int y = 0; y < height; y += bandHeight) {
+            int rows = Math.min(bandHeight, height - y);
+            // One row below the band is decoded too, it tells which pixels of the last band row lie on the perimeter
+            int decodedRows = Math.min(rows + 1, height - y);
+
+            long start = stageEnd;
+            int firstNewRow = 0;
+            if (y > 0) {
+                // The row decoded below the previous band is the first row of this one
+                System.arraycopy(pixelBuffer.pixels, (pixelBuffer.height) * pixelBuffer.rowLength + 1,
+                        pixelBuffer.pixels, pixelBuffer.rowLength + 1, width);
+                firstNewRow = 1;
+            }
+            pixelBuffer.resize(width, decodedRows);
+            for (int row = firstNewRow; row < decodedRows; row++) {
+                source.readRow(pixelBuffer.pixels, (row + 1) * pixelBuffer.rowLength + 1);
+            }
+            stageEnd = System.nanoTime();
+            metrics.addStageNanos(DetectionMetrics.Stage.DECODE, stageEnd - start);
+
+            start = stageEnd;
+            classifier.classify(pixelBuffer, mask);
+            stageEnd = System.nanoTime();
+            metrics.addStageNanos(DetectionMetrics.Stage.CLASSIFY, stageEnd - start);
+
+            start = stageEnd;
+            labelBand(mask, y, rows);
+            stageEnd = System.nanoTime();
+            metrics.addStageNanos(DetectionMetrics.Stage.LABEL, stageEnd - start);
+
+            /* Only one band is kept at once, so the largest band tells the memory needed,
+             the label map of the band has as many cells as its pixel buffer */
+            metrics.pixelsClassified += (long) width * rows;
+            metrics.bufferBytes = Math.max(metrics.bufferBytes,
+                    4L * pixelBuffer.pixels.length + 8L * mask.bits.length + 4L * pixelBuffer.pixels.length);
+        }
+        finishCarriedSilhouettes();
+
+        // Numbers the silhouettes in the order their first pixels appear in the image
+        ArrayList<Silhouette> silhouettes = new ArrayList<>();
+        for (Silhouette part : finished.values()) {
+            Silhouette silhouette = new Silhouette(silhouettes.size() + 1, null);
+            silhouette.absorb(part);
+            silhouettes.add(silhouette);
+        }
+        return silhouettes;
+    }
+
+    /**
+     * @return the background color of the last inspected image.
+     */
+    public Color getBgColor() {
+        return bgColor;
+    }
+
+    /**
+     * The streaming search has no work queue, so the queue depth stays zero.
+     *
+     * @return the time of the search stages summed over all bands and the amount of work done.
+     */
+    public DetectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Counts the colors of the three-pixel-thick image edges reading each edge separately.
+     *
+     * @param reader is the reader of the image.
+     * @param width  is the width of the image.
+     * @param height is the height of the image.
+     * @return the background color.
+     * @throws IOException if the image can not be read.
+     */
+    private Color getBackgroundColor(ImageReader reader, int width, int height) throws IOException {
+        BackgroundEstimator estimator = new BackgroundEstimator(backgroundStrategy);
+        int edgeRows = Math.min(BackgroundEstimator.EDGE_THICKNESS, height);
+        int edgeColumns = Math.min(BackgroundEstimator.EDGE_THICKNESS, width);
+
+        estimator.inspectRegion(readRegion(reader, 0, 0, width, edgeRows));
+        estimator.inspectRegion(readRegion(reader, 0, height - edgeRows, width, edgeRows));
+        estimator.inspectRegion(readRegion(reader, 0, 0, edgeColumns, height));
+        estimator.inspectRegion(readRegion(reader, width - edgeColumns, 0, edgeColumns, height));
+        return estimator.getBackgroundColor();
+    }
+
+    /**
+     * Counts the colors of the three-pixel-thick image edges in one pass over the rows.
+     * The pixels are counted in the same order as BackgroundEstimator.inspectImageEdges
+     * counts them, so the background color is the same.
+     *
+     * @param source is the source of the image rows positioned at the first row.
+     * @return the background color.
+     * @throws IOException if the image can not be read.
+     */
+    private Color getBackgroundColor(ImageRowSource source) throws IOException {
+        BackgroundEstimator estimator = new BackgroundEstimator(backgroundStrategy);
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int edgeRows = Math.min(BackgroundEstimator.EDGE_THICKNESS, height);
+        int edgeColumns = Math.min(BackgroundEstimator.EDGE_THICKNESS, width);
+
+        // The bottom rows and the side columns are kept until the top edge is counted
+        int[] row = new int[width];
+        int[] bottomRows = new int[edgeRows * width];
+        int[] leftColumns = new int[height * edgeColumns];
+        int[] rightColumns = new int[height * edgeColumns];
+        for (int y = 0; y < height; y++) {
+            source.readRow(row, 0);
+            if (y < edgeRows) {
+                estimator.inspectPixels(row, 0, width);
+            }
+            if (y >= height - edgeRows) {
+                System.arraycopy(row, 0, bottomRows, (y - height + edgeRows) * width, width);
+            }
+            System.arraycopy(row, 0, leftColumns, y * edgeColumns, edgeColumns);
+            System.arraycopy(row, width - edgeColumns, rightColumns, y * edgeColumns, edgeColumns);
+        }
+        estimator.inspectPixels(bottomRows, 0, bottomRows.length);
+        estimator.inspectPixels(leftColumns, 0, leftColumns.length);
+        estimator.inspectPixels(rightColumns, 0, rightColumns.length);
+        return estimator.getBackgroundColor();
+    }
+
+    /**
+     * Decodes a rectangular region of the image.
+     *
+     * @param reader is the reader of the image.
+     * @param x      is the x-coordinate of the left top pixel of the region.
+     * @param y      is the y-coordinate of the left top pixel of the region.
+     * @param width  is the width of the region.
+     * @param height is the height of the region.
+     * @return the decoded region.
+     * @throws IOException if the image can not be read.
+     */
+    private static BufferedImage readRegion(ImageReader reader, int x, int y, int width, int height)
+            throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(x, y, width, height));
+        return reader.read(0, param);
+    }
+
+    /**
+     * Labels the runs of the band continuing the silhouettes carried from the previous band,
+     * then finishes the silhouettes that do not reach the last row of the band.
+     *
+     * @param mask is the mask of the band and of the row below it.
+     * @param top  is the y-coordinate of the first row of the band in the image.
+     * @param rows is the number of rows of the band.
+     */
+    private void labelBand(ForegroundMask mask, int top, int rows) {
+        LabelMap labelMap = new LabelMap(mask.width, mask.height);
+        // The top edge row of the map keeps the labels of the last row of the previous band
+        System.arraycopy(carriedLabels, 0, labelMap.labels, 1, mask.width);
+
+        ScanlineLabeler.labelRuns(mask, labelMap, 1, rows, top, connectivity, unionFind, parts);
+        carryLastRow(labelMap, rows);
+    }
+
+    /**
+     * Finishes the silhouettes not touching the last row of the band and carries the
+     * others to the next band under new labels numbered from one.
+     *
+     * @param labelMap is the label map of the band.
+     * @param lastRow  is the last row of the band in the label map.
+     */
+    private void carryLastRow(LabelMap labelMap, int lastRow) {
+        int[] labels = labelMap.labels;
+        int lastRowStart = lastRow * labelMap.rowLength + 1;
+        int carriedCount = carriedOrder.length;
+
+        // The new label of each silhouette reaching the last row, its root part is marked first
+        int[] newLabels = new int[parts.size()];
+        for (int x = 0; x < labelMap.width; x++) {
+            int label = labels[lastRowStart + x];
+            if (label != LabelMap.NO_SILHOUETTE) {
+                newLabels[unionFind.find(label - 1)] = -1;
+            }
+        }
+
+        // The roots are numbered in their order, so the order of the first pixels is kept
+        ArrayList<Silhouette> newParts = new ArrayList<>();
+        long[] newOrder = new long[parts.size()];
+        Silhouette[] finishing = new Silhouette[parts.size()];
+        long[] finishingOrder = new long[parts.size()];
+        for (int part = 0; part < parts.size(); part++) {
+            int root = unionFind.find(part);
+            if (root == part) {
+                long order = part < carriedCount ? carriedOrder[part] : labelsCreated + part - carriedCount;
+                if (newLabels[part] == -1) {
+                    newParts.add(new Silhouette(newParts.size() + 1, null));
+                    newLabels[part] = newParts.size();
+                    newOrder[newParts.size() - 1] = order;
+                } else {
+                    finishing[part] = new Silhouette(0, null);
+                    finishingOrder[part] = order;
+                }
+            }
+            if (newLabels[root] > 0) {
+                newParts.get(newLabels[root] - 1).absorb(parts.get(part));
+            } else {
+                finishing[root].absorb(parts.get(part));
+            }
+        }
+
+        // Keeps the finished silhouettes larger than the minimum size only
+        for (int part = 0; part < parts.size(); part++) {
+            if (finishing[part] != null) {
+                finish(finishingOrder[part], finishing[part]);
+            }
+        }
+
+        for (int x = 0; x < labelMap.width; x++) {
+            int label = labels[lastRowStart + x];
+            carriedLabels[x] = label == LabelMap.NO_SILHOUETTE ? label : newLabels[unionFind.find(label - 1)];
+        }
+
+        labelsCreated += parts.size() - carriedCount;
+        carriedOrder = Arrays.copyOf(newOrder, newParts.size());
+        parts = newParts;
+        unionFind.clear();
+        for (int i = 0; i < newParts.size(); i++) {
+            unionFind.add();
+        }
+    }
+
+    /**
+     * Finishes the silhouettes reaching the bottom edge of the image.
+     */
+    private void finishCarriedSilhouettes() {
+        for (int part = 0; part < parts.size(); part++) {
+            finish(carriedOrder[part], parts.get(part));
+        }
+    }
+
+    /**
+     * Keeps the finished silhouette if it is larger than the minimum size
+     * and counts it in the metrics.
+     *
+     * @param order      is the order of the first pixel of the silhouette in the image.
+     * @param silhouette is the finished silhouette.
+     */
+    private void finish(long order, Silhouette silhouette) {
+        metrics.componentsFound++;
+        if (silhouette.numOfPixels > minimumSize) {
+            finished.put(order, silhouette);
+        } else {
+            metrics.componentsFiltered++;
+        }
+    }
+
+    /**
+     * Gives the rows of an image decoded with ImageIO many rows at a time.
+     * Each group of rows is decoded as a region of its own and copied to a pixel buffer.
+     */
+    private static class RegionRowSource implements ImageRowSource {
+
+        /**
+         * The reader of the image.
+         */
+        private final ImageReader reader;
+
+        /**
+         * Width and height of the image.
+         */
+        private final int width;
+        private final int height;
+
+        /**
+         * The number of rows decoded at once.
+         */
+        private final int regionHeight;
+
+        /**
+         * The pixels of the rows decoded last, empty before the first row is read.
+         */
+        private final PixelBuffer region = new PixelBuffer(0, 0);
+
+        /**
+         * The y-coordinate of the first row of the region in the image.
+         */
+        private int regionTop = 0;
+
+        /**
+         * The y-coordinate of the next row to read.
+         */
+        private int nextRow = 0;
+
+        /**
+         * Creates the source.
+         *
+         * @param reader       is the reader of the image.
+         * @param regionHeight is the number of rows decoded at once.
+         * @throws IOException if the size of the image can not be read.
+         */
+        RegionRowSource(ImageReader reader, int regionHeight) throws IOException {
+            this.reader = reader;
+            this.width = reader.getWidth(0);
+            this.height = reader.getHeight(0);
+            this.regionHeight = regionHeight;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public void readRow(int[] argb, int offset) throws IOException {
+            if (nextRow == height) {
+                throw new IOException("All " + height + " rows are already read");
+            }
+            if (nextRow == regionTop + region.height) {
+                regionTop = nextRow;
+                region.readImage(readRegion(reader, 0, regionTop, width, Math.min(regionHeight, height - regionTop)));
+            }
+            System.arraycopy(region.pixels, (nextRow - regionTop + 1) * region.rowLength + 1, argb, offset, width);
+            nextRow++;
+        }
+
+        /**
+         * Does nothing, the reader is disposed by the one who created it.
+         */
+        @Override
+        public void close() {
+        }
+    }
+}
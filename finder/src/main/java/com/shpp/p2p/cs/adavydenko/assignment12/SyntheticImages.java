@@ -0,0 +1,56 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Draws images with a known background and random silhouettes to measure
+ * and check the silhouettes search without any image files.
+ * <p>
+ * The images have a white background with black ellipses on it. Some pixels can be
+ * replaced with random colors to imitate posterized pixels and JPEG artifacts.
+ * The same seed always gives the same image.
+ */
+public class SyntheticImages {
+
+    /**
+     * The colors of the background and of the silhouettes.
+     */
+    private static final Color BACKGROUND = Color.WHITE;
+    private static final Color SILHOUETTE = Color.BLACK;
+
+    /**
+     * Draws the image.
+     *
+     * @param width           is the width of the image.
+     * @param height          is the height of the image.
+     * @param silhouetteCount is the number of ellipses drawn (they can overlap).
+     * @param maxDiameter     is the largest width or height of an ellipse.
+     * @param noise           is the share of pixels replaced with random colors, from 0 to 1.
+     * @param seed            is the seed of the random numbers.
+     * @return the image of the 3-byte BGR type, the type most decoded JPEG and PNG images have.
+     */
+    public static BufferedImage generate(int width, int height, int silhouetteCount, int maxDiameter,
+                                         double noise, long seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(seed);
+        Graphics2D graphics = image.createGraphics();
+
+        graphics.setColor(BACKGROUND);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(SILHOUETTE);
+        for (int i = 0; i < silhouetteCount; i++) {
+            int ellipseWidth = 1 + random.nextInt(Math.max(1, maxDiameter));
+            int ellipseHeight = 1 + random.nextInt(Math.max(1, maxDiameter));
+            graphics.fillOval(random.nextInt(width), random.nextInt(height), ellipseWidth, ellipseHeight);
+        }
+        graphics.dispose();
+
+        long noisyPixels = (long) (noise * width * height);
+        for (long i = 0; i < noisyPixels; i++) {
+            image.setRGB(random.nextInt(width), random.nextInt(height), random.nextInt() | 0xFF000000);
+        }
+        return image;
+    }
+}
@@ -0,0 +1,221 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.Arrays;
+
+/**
+ * Counts the silhouettes of one image for many similarity thresholds and minimum
+ * sizes at once, so the parameters can be tuned without running the program again.
+ * <p>
+ * A larger threshold only adds pixels to the silhouettes, it never removes any.
+ * So the pixels are sorted by their distance to the background color once, from the
+ * farthest to the nearest, and the thresholds are visited from the smallest to the largest.
+ * At each threshold only the pixels that became silhouette pixels are added, and each
+ * of them is joined with its silhouette neighbors in the union-find structure.
+ * The number of silhouettes larger than each minimum size is updated on every join,
+ * so the counts of all combinations are ready without labeling the image again.
+ */
+public class ThresholdSweep {
+
+    /**
+     * The similarity thresholds to count the silhouettes for.
+     */
+    private final double[] thresholds;
+
+    /**
+     * The minimum silhouette sizes to count the silhouettes for.
+     */
+    private final int[] minimumSizes;
+
+    /**
+     * The number of neighbors a pixel is connected to, 4 or 8.
+     */
+    private final int connectivity;
+
+    /**
+     * The parent of each silhouette pixel in the union-find structure,
+     * the roots are their own parents.
+     */
+    private int[] parents;
+
+    /**
+     * The number of pixels of each silhouette, kept at its root pixel.
+     */
+    private int[] sizes;
+
+    /**
+     * The number of silhouettes larger than each minimum size.
+     */
+    private int[] counts;
+
+    /**
+     * Creates the sweep.
+     *
+     * @param thresholds   are the similarity thresholds.
+     * @param minimumSizes are the minimum silhouette sizes.
+     */
+    public ThresholdSweep(double[] thresholds, int[] minimumSizes) {
+        this(thresholds, minimumSizes, ForegroundMask.FOUR_CONNECTED);
+    }
+
+    /**
+     * Creates the sweep.
+     *
+     * @param thresholds   are the similarity thresholds.
+     * @param minimumSizes are the minimum silhouette sizes.
+     * @param connectivity is the number of neighbors a pixel is connected to, 4 or 8.
+     */
+    public ThresholdSweep(double[] thresholds, int[] minimumSizes, int connectivity) {
+        this.thresholds = thresholds.clone();
+        this.minimumSizes = minimumSizes.clone();
+        this.connectivity = ForegroundMask.checkConnectivity(connectivity);
+    }
+
+    /**
+     * Counts the silhouettes for every combination of the threshold and the minimum size.
+     *
+     * @param buffer  is the buffer with the image pixels, its edges filled with the background color.
+     * @param bgArgb  is the ARGB background color.
+     * @return the number of silhouettes, the rows are the thresholds and the columns
+     * are the minimum sizes in the order they were given.
+     */
+    public int[][] run(PixelBuffer buffer, int bgArgb) {
+        BackgroundClassifier classifier = new BackgroundClassifier(bgArgb, 0);
+        int[] order = sortByDistance(buffer, classifier);
+
+        // The thresholds from the one giving the fewest silhouette pixels to the one giving the most
+        Integer[] thresholdOrder = new Integer[thresholds.length];
+        int[] minSquaredDistances = new int[thresholds.length];
+        for (int i = 0; i < thresholds.length; i++) {
+            thresholdOrder[i] = i;
+            minSquaredDistances[i] = BackgroundClassifier.findMinSquaredDistance(thresholds[i]);
+        }
+        Arrays.sort(thresholdOrder, (first, second) ->
+                Integer.compare(minSquaredDistances[second], minSquaredDistances[first]));
+
+        ForegroundMask mask = new ForegroundMask(buffer.width, buffer.height);
+        int[] neighborOffsets = mask.getNeighborOffsets(connectivity);
+        parents = new int[buffer.pixels.length];
+        sizes = new int[buffer.pixels.length];
+        counts = new int[minimumSizes.length];
+        int[][] results = new int[thresholds.length][];
+
+        int added = 0;
+        for (int threshold : thresholdOrder) {
+            // Adds the pixels far enough from the background color for this threshold
+            while (added < order.length
+                    && classifier.squaredDistance(buffer.pixels[order[added]]) >= minSquaredDistances[threshold]) {
+                addPixel(order[added], mask, neighborOffsets);
+                added++;
+            }
+            results[threshold] = counts.clone();
+        }
+        return results;
+    }
+
+    /**
+     * Sorts the image pixels by their squared distance to the background color with
+     * the counting sort, as the distances are small integers.
+     *
+     * @param buffer     is the buffer with the image pixels.
+     * @param classifier is the classifier of the background color.
+     * @return the indexes of the pixels in the buffer from the farthest to the nearest.
+     */
+    private static int[] sortByDistance(PixelBuffer buffer, BackgroundClassifier classifier) {
+        int[] starts = new int[BackgroundClassifier.MAX_SQUARED_DISTANCE + 2];
+        for (int y = 1; y <= buffer.height; y++) {
+            int rowStart = y * buffer.rowLength + 1;
+            for (int pixel = rowStart; pixel < rowStart + buffer.width; pixel++) {
+                starts[BackgroundClassifier.MAX_SQUARED_DISTANCE - classifier.squaredDistance(buffer.pixels[pixel]) + 1]++;
+            }
+        }
+        // The first position of each distance, the farthest distance goes first
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+
+        int[] order = new int[buffer.width * buffer.height];
+        for (int y = 1; y <= buffer.height; y++) {
+            int rowStart = y * buffer.rowLength + 1;
+            for (int pixel = rowStart; pixel < rowStart + buffer.width; pixel++) {
+                order[starts[BackgroundClassifier.MAX_SQUARED_DISTANCE
+                        - classifier.squaredDistance(buffer.pixels[pixel])]++] = pixel;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Makes the pixel a silhouette of its own and joins it with the neighbor silhouettes.
+     *
+     * @param pixel           is the index of the pixel in the buffer.
+     * @param mask            is the mask of the pixels added so far.
+     * @param neighborOffsets are the offsets of the connected neighbors.
+     */
+    private void addPixel(int pixel, ForegroundMask mask, int[] neighborOffsets) {
+        mask.setForeground(pixel);
+        parents[pixel] = pixel;
+        sizes[pixel] = 1;
+        for (int i = 0; i < minimumSizes.length; i++) {
+            if (1 > minimumSizes[i]) {
+                counts[i]++;
+            }
+        }
+
+        // The edges of the buffer never become silhouette pixels, so all neighbors exist
+        for (int offset : neighborOffsets) {
+            joinIfForeground(pixel, pixel + offset, mask);
+        }
+    }
+
+    /**
+     * Joins the silhouettes of the pixel and its neighbor if the neighbor is a silhouette pixel.
+     * The counts of the silhouettes larger than each minimum size are updated: the two
+     * joined silhouettes are replaced with the one of their total size.
+     *
+     * @param pixel    is the index of the pixel.
+     * @param neighbor is the index of the neighbor pixel.
+     * @param mask     is the mask of the pixels added so far.
+     */
+    private void joinIfForeground(int pixel, int neighbor, ForegroundMask mask) {
+        if (!mask.isForeground(neighbor)) {
+            return;
+        }
+        int first = find(pixel);
+        int second = find(neighbor);
+        if (first == second) {
+            return;
+        }
+
+        int firstSize = sizes[first];
+        int secondSize = sizes[second];
+        int joinedSize = firstSize + secondSize;
+        for (int i = 0; i < minimumSizes.length; i++) {
+            int minimumSize = minimumSizes[i];
+            counts[i] += (joinedSize > minimumSize ? 1 : 0)
+                    - (firstSize > minimumSize ? 1 : 0) - (secondSize > minimumSize ? 1 : 0);
+        }
+
+        // The smaller silhouette is linked under the larger one to keep the paths short
+        if (firstSize < secondSize) {
+            parents[first] = second;
+            sizes[second] = joinedSize;
+        } else {
+            parents[second] = first;
+            sizes[first] = joinedSize;
+        }
+    }
+
+    /**
+     * Finds the root of the silhouette the pixel belongs to and halves the path to it on the way.
+     *
+     * @param pixel is the index of the pixel.
+     * @return the index of the root pixel.
+     */
+    private int find(int pixel) {
+        while (parents[pixel] != pixel) {
+            parents[pixel] = parents[parents[pixel]];
+            pixel = parents[pixel];
+        }
+        return pixel;
+    }
+}
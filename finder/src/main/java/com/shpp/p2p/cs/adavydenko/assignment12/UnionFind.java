@@ -0,0 +1,85 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.Arrays;
+
+/**
+ * A growable union-find (disjoint set) structure for a single thread.
+ * <p>
+ * Like in the concurrent one, a root is always linked under the smaller root,
+ * so the root of a set is its smallest element.
+ */
+public class UnionFind {
+
+    /**
+     * The number of elements the structure can hold before it grows for the first time.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * The parent of each element, the roots are their own parents.
+     */
+    private int[] parents = new int[INITIAL_CAPACITY];
+
+    /**
+     * The number of elements in the structure.
+     */
+    private int size = 0;
+
+    /**
+     * Adds a new element in its own set.
+     *
+     * @return the new element, elements are numbered from zero.
+     */
+    public int add() {
+        if (size == parents.length) {
+            parents = Arrays.copyOf(parents, parents.length * 2);
+        }
+        parents[size] = size;
+        return size++;
+    }
+
+    /**
+     * Finds the root of the set the element belongs to and halves
+     * the path to it on the way.
+     *
+     * @param element is the element.
+     * @return the smallest element of the set.
+     */
+    public int find(int element) {
+        while (parents[element] != element) {
+            parents[element] = parents[parents[element]];
+            element = parents[element];
+        }
+        return element;
+    }
+
+    /**
+     * Joins the sets of both elements into one.
+     *
+     * @param first  is an element of the first set.
+     * @param second is an element of the second set.
+     */
+    public void union(int first, int second) {
+        first = find(first);
+        second = find(second);
+        if (first < second) {
+            parents[second] = first;
+        } else if (second < first) {
+            parents[first] = second;
+        }
+    }
+
+    /**
+     * @return the number of elements in the structure.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all elements keeping the already allocated array.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
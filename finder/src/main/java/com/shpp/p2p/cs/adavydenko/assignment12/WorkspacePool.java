@@ -0,0 +1,51 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps the workspaces of one detector for the threads inspecting images at the same time.
+ * A thread takes a workspace, inspects an image and gives the workspace back. A new
+ * workspace is only created if all of them are taken, so the pool holds as many
+ * workspaces as there were images inspected at once.
+ */
+public class WorkspacePool {
+
+    /**
+     * The detector the workspaces are created by.
+     */
+    private final SilhouetteDetector detector;
+
+    /**
+     * The workspaces nobody uses now.
+     */
+    private final ConcurrentLinkedQueue<DetectorWorkspace> free = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param detector is the detector the workspaces are used with.
+     */
+    public WorkspacePool(SilhouetteDetector detector) {
+        this.detector = detector;
+    }
+
+    /**
+     * Takes a free workspace or creates a new one.
+     *
+     * @return the workspace, it shall be given back with release.
+     */
+    public DetectorWorkspace acquire() {
+        DetectorWorkspace workspace = free.poll();
+        return workspace != null ? workspace : detector.newWorkspace();
+    }
+
+    /**
+     * Gives the workspace back to the pool. The results found with it
+     * shall not be used afterwards.
+     *
+     * @param workspace is the workspace taken with acquire.
+     */
+    public void release(DetectorWorkspace workspace) {
+        free.offer(workspace);
+    }
+}
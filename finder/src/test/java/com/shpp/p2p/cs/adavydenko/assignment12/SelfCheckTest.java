@@ -0,0 +1,1261 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that every labeling engine and every mode of the silhouettes search gives
+ * exactly the same silhouettes as a simple reference search, so the fast paths can be
+ * changed without fear. It runs with the other tests of the build ("mvn test"), so it
+ * guards every merge: it takes a few seconds and fails if anything differs.
+ * <p>
+ * The images are drawn in memory from a seed, so every run with the same seed checks
+ * the same images. Besides the random ones there are images made to break the fast
+ * paths: spirals and serpentines giving one very long silhouette, checkerboards where
+ * the 4- and 8-connected searches disagree on every pixel, a single blob covering
+ * almost the whole image, silhouettes touching the edges and the corners, images one
+ * pixel wide or high, images taller than two strips of the parallel labeler, and colors
+ * right around the similarity threshold.
+ * <p>
+ * The reference classifies each pixel with the original floating point formula and
+ * labels the pixels with a plain breadth-first search, one silhouette at a time.
+ * With the background color the mode reports, each mode shall find the same silhouettes
+ * in the same order with the same sizes, bounding boxes and perimeters, and mark the
+ * same pixels in its label map. The pyramid mode is an approximation by design, so it
+ * is checked at scales 2 to 8 on its own images only: solid rectangles and discs at
+ * least three blocks across, more than a pixel apart, where it shall be exact.
+ * The local background is not checked at all.
+ * <p>
+ * System properties (all optional, e.g. "mvn test -Dselfcheck.seed=7 -Dselfcheck.cases=40"):
+ * --- selfcheck.seed the seed of the images, 1 by default;
+ * --- selfcheck.cases the number of images of each shape, 12 by default;
+ * --- selfcheck.verbose=true prints every image checked.
+ */
+public class SelfCheckTest {
+
+    /**
+     * The shapes of the images drawn.
+     */
+    private static final List<String> SHAPES = Arrays.asList("random", "tall", "spiral", "serpentine", "comb",
+            "checkerboard", "blob", "edges", "diagonal", "line", "threshold");
+
+    /**
+     * The background color of the images drawn. The modes define their own
+     * background color from the image edges, which is usually this one.
+     */
+    private static final int BACKGROUND = 0xFFFFFFFF;
+
+    /**
+     * The minimum silhouette sizes the images are checked with.
+     */
+    private static final int[] MINIMUM_SIZES = {0, 1, 5, Assignment12Part1.MINIMUM_SILHOUETTE_SIZE};
+
+    /**
+     * The thresholds and the minimum sizes of the threshold sweep.
+     */
+    private static final double[] SWEEP_THRESHOLDS = {0.9, Assignment12Part1.COLORS_SIMILARITY_THRESHOLD, 0.97};
+    private static final int[] SWEEP_MINIMUM_SIZES = {0, 5, Assignment12Part1.MINIMUM_SILHOUETTE_SIZE};
+
+    /**
+     * The band heights of the streaming mode, the thinnest ones make a band seam on every row.
+     */
+    private static final int[] BAND_HEIGHTS = {1, 2, 3, 16};
+
+    /**
+     * The block sizes of the pyramid mode.
+     */
+    private static final int[] PYRAMID_SCALES = {2, 4, 8};
+
+    /**
+     * The colors of the shapes of the pyramid images, all far from the background.
+     */
+    private static final int[] LARGE_SHAPE_COLORS = {0xFF000000, 0xFF8B0000, 0xFF1F3F7F, 0xFF206020};
+
+    /**
+     * The number of failures printed in full, the rest are only counted.
+     */
+    private static final int MAX_FAILURES_PRINTED = 20;
+
+    /**
+     * The seed of the images and the number of images of each shape.
+     */
+    private static final long SEED = Long.getLong("selfcheck.seed", 1);
+    private static final int CASES = Integer.getInteger("selfcheck.cases", 12);
+
+    /**
+     * Says whether every image checked is printed.
+     */
+    private static final boolean VERBOSE = Boolean.getBoolean("selfcheck.verbose");
+
+    /**
+     * The directory the image files of the file modes are written to, deleted after each test.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * The workspaces reused for all images of each connectivity, so the buffers left
+     * by a larger image are checked to be cleared for a smaller one.
+     */
+    private final SilhouetteDetector[] reusingDetectors = new SilhouetteDetector[9];
+    private final DetectorWorkspace[] reusedWorkspaces = new DetectorWorkspace[9];
+
+    /**
+     * The number of comparisons made and of the ones that failed.
+     */
+    private int checks = 0;
+    private int failures = 0;
+
+    /**
+     * The failures printed in full.
+     */
+    private final StringBuilder failuresPrinted = new StringBuilder();
+
+    /**
+     * Creates the check, JUnit creates one for each test.
+     */
+    public SelfCheckTest() {
+        for (int connectivity : new int[]{ForegroundMask.FOUR_CONNECTED, ForegroundMask.EIGHT_CONNECTED}) {
+            reusingDetectors[connectivity] = new SilhouetteDetector(new DetectorSettings()
+                    .setEngine("scanline").setMinimumSize(0).setConnectivity(connectivity));
+            reusedWorkspaces[connectivity] = reusingDetectors[connectivity].newWorkspace();
+        }
+    }
+
+    /**
+     * @return the shapes of the images drawn.
+     */
+    static List<String> shapes() {
+        return SHAPES;
+    }
+
+    /**
+     * Checks all engines and modes on the images of the shape.
+     *
+     * @param shape is the name of the shape.
+     * @throws IOException if the image files can not be written.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("shapes")
+    void allModesMatchReference(String shape) throws IOException {
+        for (int i = 0; i < CASES; i++) {
+            Random random = new Random(SEED * 1_000_003 + shape.hashCode() * 31L + i);
+            checkImage(shape + " #" + i, generate(shape, random), random);
+        }
+        assertNoFailures();
+    }
+
+    /**
+     * Checks the pyramid mode on the images of large shapes.
+     */
+    @Test
+    void pyramidIsExactOnLargeShapes() {
+        for (int i = 0; i < CASES; i++) {
+            Random random = new Random(SEED * 1_000_003 + "pyramid".hashCode() * 31L + i);
+            checkPyramid("pyramid #" + i, random);
+        }
+        assertNoFailures();
+    }
+
+    /**
+     * Checks the work queue depth reported with a reused workspace.
+     */
+    @Test
+    void queueDepthIsPerImage() {
+        checkQueueDepth();
+        assertNoFailures();
+    }
+
+    /**
+     * Checks the label image of more silhouettes than a 16-bit grayscale image can number.
+     *
+     * @throws IOException if the label image can not be written or read.
+     */
+    @Test
+    void labelImageNumbersOver65535Silhouettes() throws IOException {
+        checkWideLabelImage();
+        assertNoFailures();
+    }
+
+    /**
+     * Fails the test with the failures printed if there are any.
+     */
+    private void assertNoFailures() {
+        assertEquals(0, failures, () -> failures + " of " + checks + " checks failed (seed " + SEED + "):\n"
+                + failuresPrinted);
+    }
+
+    /**
+     * Checks all engines and modes on the image with both connectivities.
+     *
+     * @param name   is the name of the image printed with the failures.
+     * @param image  is the image.
+     * @param random is the source of the random choices of the check.
+     * @throws IOException if the image files can not be written.
+     */
+    private void checkImage(String name, BufferedImage image, Random random) throws IOException {
+        if (VERBOSE) {
+            System.out.println(name + " " + image.getWidth() + "x" + image.getHeight());
+        }
+        File pngFile = directory.resolve("image.png").toFile();
+        ImageIO.write(image, "png", pngFile);
+        File interlacedFile = directory.resolve("interlaced.png").toFile();
+        writeInterlaced(image, interlacedFile);
+        PixelBuffer rawPixels = PixelBuffer.fromImage(image);
+        File rawFile = directory.resolve("image.png.silr").toFile();
+        RawPixelFile.write(rawPixels, rawFile.toPath());
+        checkRawWindows(name + " " + image.getWidth() + "x" + image.getHeight(), rawPixels, rawFile.toPath());
+
+        for (int connectivity : new int[]{ForegroundMask.FOUR_CONNECTED, ForegroundMask.EIGHT_CONNECTED}) {
+            int minimumSize = MINIMUM_SIZES[random.nextInt(MINIMUM_SIZES.length)];
+            String caseName = name + " " + image.getWidth() + "x" + image.getHeight()
+                    + " connectivity " + connectivity + " min size " + minimumSize;
+            DetectorSettings settings = new DetectorSettings().setMinimumSize(minimumSize)
+                    .setConnectivity(connectivity);
+
+            // The depth-first search defines the background color all other modes shall agree on
+            DetectionResult first = new SilhouetteDetector(settings.setEngine("dfs")).detect(image);
+            int bgArgb = first.getBgColor().getRGB();
+            Reference reference = new Reference(image, bgArgb, Assignment12Part1.COLORS_SIMILARITY_THRESHOLD,
+                    connectivity);
+            compare(caseName, "dfs", reference, first, false);
+
+            for (String engine : new String[]{"bfs", "scanline"}) {
+                compare(caseName, engine, reference,
+                        new SilhouetteDetector(settings.setEngine(engine)).detect(image), false);
+            }
+            settings.setEngine("dfs");
+            for (int parallelism : new int[]{2, 5}) {
+                compare(caseName, "parallel " + parallelism, reference,
+                        new SilhouetteDetector(settings.setParallelism(parallelism)).detect(image), false);
+            }
+            settings.setParallelism(1);
+
+            SilhouetteDetector detector = new SilhouetteDetector(settings);
+            compare(caseName, "reused workspace", reference,
+                    reusingDetectors[connectivity].detect(image, reusedWorkspaces[connectivity]), false);
+            compare(caseName, "raw file", reference, detector.detect(rawFile), false);
+
+            int expectedCount = reference.countLargerThan(minimumSize);
+            checkEqual(caseName, "count", expectedCount, detector.count(PixelBuffer.fromImage(image)));
+            int stopAfter = 1 + random.nextInt(3);
+            checkEqual(caseName, "count stopping after " + stopAfter, Math.min(stopAfter, expectedCount),
+                    new SilhouetteDetector(settings.setStopAfter(stopAfter)).count(PixelBuffer.fromImage(image)));
+            settings.setStopAfter(0);
+
+            int bandHeight = BAND_HEIGHTS[random.nextInt(BAND_HEIGHTS.length)];
+            compare(caseName, "streaming with bands of " + bandHeight, reference,
+                    new SilhouetteDetector(settings.setBandHeight(bandHeight)).detectStreaming(pngFile), true);
+            compare(caseName, "streaming interlaced with bands of " + bandHeight, reference,
+                    new SilhouetteDetector(settings).detectStreaming(interlacedFile), true);
+            compare(caseName, "streaming raw file with bands of " + bandHeight, reference,
+                    new SilhouetteDetector(settings).detectStreaming(rawFile), true);
+
+            checkSweep(caseName, image, bgArgb, connectivity);
+            checkLabelImage(caseName, reference, first);
+            checkSequence(caseName, image, random, settings);
+        }
+    }
+
+    /**
+     * Compares the silhouettes of a mode with the reference ones and its label map,
+     * if it has one, with the reference labels.
+     *
+     * @param caseName  is the name of the image and the settings.
+     * @param mode      is the name of the mode.
+     * @param reference is the reference search with the background color of the first mode.
+     * @param result    is the result of the mode.
+     * @param keptOnly  says whether the mode only returns the silhouettes larger than the minimum size.
+     */
+    private void compare(String caseName, String mode, Reference reference, DetectionResult result,
+                         boolean keptOnly) {
+        if (result.getBgColor().getRGB() != reference.bgArgb) {
+            fail(caseName, mode, String.format("background %08X instead of %08X",
+                    result.getBgColor().getRGB(), reference.bgArgb));
+            return;
+        }
+        List<Silhouette> silhouettes = result.getAllSilhouettes();
+        int[] expected = keptOnly ? reference.findLargerThan(result.getMinimumSize()) : reference.findAll();
+        if (!checkEqual(caseName, mode + " silhouettes", expected.length, silhouettes.size())) {
+            return;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            int component = expected[i];
+            Silhouette silhouette = silhouettes.get(i);
+            String actual = describe(silhouette.getNumOfPixels(), silhouette.getMinX(), silhouette.getMinY(),
+                    silhouette.getMaxX(), silhouette.getMaxY(), silhouette.getNumOfPerimeterPixels());
+            if (!checkEqual(caseName, mode + " silhouette " + (i + 1), reference.describe(component), actual)) {
+                return;
+            }
+        }
+
+        LabelMap labelMap = result.getLabelMap();
+        if (labelMap == null || keptOnly) {
+            return;
+        }
+        checks++;
+        for (int y = 0; y < reference.height; y++) {
+            for (int x = 0; x < reference.width; x++) {
+                int component = reference.labels[y * reference.width + x];
+                int expectedLabel = component == 0 ? LabelMap.NO_SILHOUETTE : silhouettes.get(component - 1).getId();
+                if (labelMap.getLabel(x, y) != expectedLabel) {
+                    fail(caseName, mode + " label map", "pixel (" + x + ", " + y + ") is "
+                            + labelMap.getLabel(x, y) + " instead of " + expectedLabel);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the counts of the threshold sweep with the reference searches at each threshold.
+     *
+     * @param caseName     is the name of the image and the settings.
+     * @param image        is the image.
+     * @param bgArgb       is the background color.
+     * @param connectivity is the number of neighbors a pixel is connected to.
+     */
+    private void checkSweep(String caseName, BufferedImage image, int bgArgb, int connectivity) {
+        PixelBuffer buffer = PixelBuffer.fromImage(image);
+        buffer.fillEdges(bgArgb);
+        int[][] counts = new ThresholdSweep(SWEEP_THRESHOLDS, SWEEP_MINIMUM_SIZES, connectivity).run(buffer, bgArgb);
+        for (int t = 0; t < SWEEP_THRESHOLDS.length; t++) {
+            Reference reference = new Reference(image, bgArgb, SWEEP_THRESHOLDS[t], connectivity);
+            for (int m = 0; m < SWEEP_MINIMUM_SIZES.length; m++) {
+                checkEqual(caseName, "sweep at " + SWEEP_THRESHOLDS[t] + " and min size " + SWEEP_MINIMUM_SIZES[m],
+                        reference.countLargerThan(SWEEP_MINIMUM_SIZES[m]), counts[t][m]);
+            }
+        }
+    }
+
+    /**
+     * Writes and reads the raw file in windows of part of a row and of three whole rows,
+     * so the file is written and mapped in many windows, and compares the file and
+     * the rows read with the ones of a single window.
+     *
+     * @param caseName is the name of the image.
+     * @param pixels   is the buffer with the image pixels.
+     * @param rawFile  is the raw file of the image written in a single window.
+     * @throws IOException if the raw file can not be written or read.
+     */
+    private void checkRawWindows(String caseName, PixelBuffer pixels, Path rawFile) throws IOException {
+        Path windowedFile = directory.resolve("windowed.silr");
+        for (int windowSize : new int[]{4 * (pixels.width * 2 / 3 + 1), 4 * 3 * pixels.width}) {
+            String mode = "raw file in windows of " + windowSize + " bytes";
+            RawPixelFile.write(pixels, windowedFile, windowSize);
+            checkEqual(caseName, mode + ", first different byte", -1L, Files.mismatch(rawFile, windowedFile));
+
+            try (RawPixelFile.RowReader rows = RawPixelFile.openRows(rawFile, windowSize)) {
+                int[] row = new int[pixels.width];
+                for (int y = 0; y < pixels.height; y++) {
+                    rows.readRow(row, 0);
+                    int rowStart = (y + 1) * pixels.rowLength + 1;
+                    if (!checkEqual(caseName, mode + ", row " + y + " first different pixel", -1,
+                            Arrays.mismatch(row, 0, pixels.width, pixels.pixels, rowStart, rowStart + pixels.width))) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the label image of the result, reads it back and compares
+     * the silhouette numbers of its pixels with the reference ones.
+     *
+     * @param caseName  is the name of the image and the settings.
+     * @param reference is the reference search.
+     * @param result    is the result with a label map.
+     * @throws IOException if the label image can not be written or read.
+     */
+    private void checkLabelImage(String caseName, Reference reference, DetectionResult result) throws IOException {
+        File file = directory.resolve("labels.png").toFile();
+        new SegmentationWriter(result).writeLabelImage(file.toPath());
+        Raster raster = ImageIO.read(file).getRaster();
+
+        // The kept silhouettes are numbered from 1, the smaller ones are background
+        int[] numbers = new int[reference.sizes.length];
+        int[] kept = reference.findLargerThan(result.getMinimumSize());
+        for (int i = 0; i < kept.length; i++) {
+            numbers[kept[i]] = i + 1;
+        }
+        checks++;
+        int bits = raster.getSampleModel().getSampleSize(0);
+        for (int y = 0; y < reference.height; y++) {
+            for (int x = 0; x < reference.width; x++) {
+                int expected = numbers[reference.labels[y * reference.width + x]];
+                // The number is the value of all channel bits of the pixel, the red ones first
+                long number = 0;
+                for (int band = 0; band < raster.getNumBands(); band++) {
+                    number = number << bits | raster.getSample(x, y, band);
+                }
+                if (number != expected) {
+                    fail(caseName, "label image", "pixel (" + x + ", " + y + ") is "
+                            + number + " instead of " + expected);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the label image of an image of dots two pixels apart, each one a silhouette of its
+     * own with both connectivities, so there are more silhouettes than 16 bits can number.
+     *
+     * @throws IOException if the label image can not be written or read.
+     */
+    private void checkWideLabelImage() throws IOException {
+        BufferedImage image = createImage(520, 520);
+        for (int y = 0; y < image.getHeight(); y += 2) {
+            for (int x = 0; x < image.getWidth(); x += 2) {
+                image.setRGB(x, y, 0xFF000000);
+            }
+        }
+        String caseName = "dots " + image.getWidth() + "x" + image.getHeight();
+        DetectionResult result = new SilhouetteDetector(new DetectorSettings().setMinimumSize(0)).detect(image);
+        checkEqual(caseName, "silhouettes", 260 * 260, result.getNumOfSilhouettes());
+        checkLabelImage(caseName, new Reference(image, result.getBgColor().getRGB(),
+                Assignment12Part1.COLORS_SIMILARITY_THRESHOLD, ForegroundMask.FOUR_CONNECTED), result);
+    }
+
+    /**
+     * Makes a few frames from the image, each one with a few rectangles changed, and
+     * compares the result of the sequence mode on each frame with the reference one.
+     * One sequence gets each frame in a new buffer, the other one in the same buffer.
+     *
+     * @param caseName is the name of the image and the settings.
+     * @param image    is the first frame.
+     * @param random   is the source of the changes.
+     * @param settings are the settings of the sequence.
+     */
+    private void checkSequence(String caseName, BufferedImage image, Random random, DetectorSettings settings) {
+        SequenceDetector sequence = new SilhouetteDetector(settings).newSequence();
+        SequenceDetector reusingSequence = new SilhouetteDetector(settings).newSequence();
+        PixelBuffer reusedBuffer = new PixelBuffer(0, 0);
+        BufferedImage frame = copy(image);
+        for (int frameNumber = 0; frameNumber < 4; frameNumber++) {
+            if (frameNumber > 0) {
+                Graphics2D graphics = frame.createGraphics();
+                for (int i = random.nextInt(4); i >= 0; i--) {
+                    graphics.setColor(new Color(random.nextBoolean() ? BACKGROUND : pickColor(random), true));
+                    graphics.fillRect(random.nextInt(frame.getWidth()), random.nextInt(frame.getHeight()),
+                            1 + random.nextInt(Math.max(1, frame.getWidth() / 2)),
+                            1 + random.nextInt(Math.max(1, frame.getHeight() / 2)));
+                }
+                graphics.dispose();
+            }
+            DetectionResult result = sequence.nextFrame(PixelBuffer.fromImage(frame));
+            Reference reference = new Reference(frame, result.getBgColor().getRGB(),
+                    Assignment12Part1.COLORS_SIMILARITY_THRESHOLD, settings.getConnectivity());
+            compare(caseName, "sequence frame " + frameNumber, reference, result, false);
+            reusedBuffer.readImage(frame);
+            compare(caseName, "sequence frame " + frameNumber + " in a reused buffer", reference,
+                    reusingSequence.nextFrame(reusedBuffer), false);
+        }
+    }
+
+    /**
+     * Checks the pyramid mode on an image of large shapes with both connectivities.
+     *
+     * @param name   is the name of the image printed with the failures.
+     * @param random is the source of the image, the scale and the minimum sizes.
+     */
+    private void checkPyramid(String name, Random random) {
+        int scale = PYRAMID_SCALES[random.nextInt(PYRAMID_SCALES.length)];
+        BufferedImage image = drawLargeShapes(60 + random.nextInt(240), 60 + random.nextInt(240), scale, random);
+        if (VERBOSE) {
+            System.out.println(name + " " + image.getWidth() + "x" + image.getHeight() + " scale " + scale);
+        }
+        for (int connectivity : new int[]{ForegroundMask.FOUR_CONNECTED, ForegroundMask.EIGHT_CONNECTED}) {
+            int minimumSize = MINIMUM_SIZES[random.nextInt(MINIMUM_SIZES.length)];
+            String caseName = name + " " + image.getWidth() + "x" + image.getHeight()
+                    + " connectivity " + connectivity + " min size " + minimumSize;
+            DetectorSettings settings = new DetectorSettings().setMinimumSize(minimumSize)
+                    .setConnectivity(connectivity).setPyramidScale(scale);
+            DetectionResult result = new SilhouetteDetector(settings).detectPyramid(PixelBuffer.fromImage(image));
+            compare(caseName, "pyramid scale " + scale, new Reference(image, result.getBgColor().getRGB(),
+                    Assignment12Part1.COLORS_SIMILARITY_THRESHOLD, connectivity), result, false);
+        }
+    }
+
+    /**
+     * Checks that the work queue depth of an image inspected with a reused workspace is
+     * the depth of that image alone, not the largest one of all images the workspace saw.
+     */
+    private void checkQueueDepth() {
+        BufferedImage large = createImage(40, 40);
+        BufferedImage small = createImage(40, 40);
+        Graphics2D graphics = large.createGraphics();
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(5, 5, 15, 20);
+        graphics.dispose();
+        graphics = small.createGraphics();
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(5, 5, 4, 5);
+        graphics.dispose();
+
+        for (String engine : new String[]{"dfs", "bfs"}) {
+            for (int parallelism : new int[]{1, 2}) {
+                SilhouetteDetector detector = new SilhouetteDetector(new DetectorSettings().setMinimumSize(0)
+                        .setEngine(engine).setParallelism(parallelism));
+                DetectorWorkspace workspace = detector.newWorkspace();
+                detector.detect(large, workspace);
+                checkEqual("queue depth " + engine + " parallel " + parallelism, "after a larger image",
+                        detector.detect(small).getMetrics().getMaxQueueDepth(),
+                        detector.detect(small, workspace).getMetrics().getMaxQueueDepth());
+            }
+        }
+    }
+
+    /**
+     * Counts the comparison and records a failure if the values differ.
+     *
+     * @param caseName is the name of the image and the settings.
+     * @param what     is the name of the value compared.
+     * @param expected is the reference value.
+     * @param actual   is the value of the mode.
+     * @return true if the values are equal.
+     */
+    private boolean checkEqual(String caseName, String what, Object expected, Object actual) {
+        checks++;
+        if (expected.equals(actual)) {
+            return true;
+        }
+        fail(caseName, what, actual + " instead of " + expected);
+        return false;
+    }
+
+    /**
+     * Records a failure and prints it if not too many were printed already.
+     *
+     * @param caseName is the name of the image and the settings.
+     * @param what     is the name of the value compared.
+     * @param message  tells how the value differs.
+     */
+    private void fail(String caseName, String what, String message) {
+        failures++;
+        if (failures <= MAX_FAILURES_PRINTED) {
+            failuresPrinted.append("FAILED ").append(caseName).append(": ").append(what).append(": ")
+                    .append(message).append('\n');
+        }
+    }
+
+    /**
+     * Writes the image as an interlaced PNG, which the streaming mode can not read row by row
+     * and decodes with ImageIO instead.
+     *
+     * @param image is the image.
+     * @param file  is the file to write.
+     * @throws IOException if the file can not be written.
+     */
+    private static void writeInterlaced(BufferedImage image, File file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        Files.deleteIfExists(file.toPath());
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Makes the text the silhouette features are compared as.
+     *
+     * @param size      is the number of pixels.
+     * @param minX      is the leftmost x.
+     * @param minY      is the topmost y.
+     * @param maxX      is the rightmost x.
+     * @param maxY      is the bottommost y.
+     * @param perimeter is the number of perimeter pixels.
+     * @return the features as text.
+     */
+    private static String describe(int size, int minX, int minY, int maxX, int maxY, int perimeter) {
+        return size + " pixels in (" + minX + ", " + minY + ")-(" + maxX + ", " + maxY + "), "
+                + perimeter + " on the perimeter";
+    }
+
+    /**
+     * Draws the image of the shape.
+     *
+     * @param shape  is the name of the shape.
+     * @param random is the source of the sizes and the colors.
+     * @return the image.
+     */
+    private static BufferedImage generate(String shape, Random random) {
+        switch (shape) {
+            case "random":
+                return drawRectangles(1 + random.nextInt(96), 1 + random.nextInt(96), random, false);
+            case "tall":
+                // Taller than two strips of the parallel labeler, so silhouettes cross the strip seams
+                return drawRectangles(1 + random.nextInt(24), 130 + random.nextInt(270), random, false);
+            case "spiral":
+                return drawSpiral(8 + random.nextInt(150), random);
+            case "serpentine":
+                return drawComb(4 + random.nextInt(120), 3 + random.nextInt(200), true, random);
+            case "comb":
+                return drawComb(4 + random.nextInt(120), 3 + random.nextInt(200), false, random);
+            case "checkerboard":
+                return drawCheckerboard(1 + random.nextInt(80), 1 + random.nextInt(80), random);
+            case "blob":
+                return drawBlob(40 + random.nextInt(260), 40 + random.nextInt(260), random);
+            case "edges":
+                return drawEdges(1 + random.nextInt(64), 1 + random.nextInt(64), random);
+            case "diagonal":
+                return drawDiagonals(2 + random.nextInt(80), 2 + random.nextInt(80), random);
+            case "line":
+                return random.nextBoolean() ? drawNoise(1, 1 + random.nextInt(300), random)
+                        : drawNoise(1 + random.nextInt(300), 1, random);
+            default:
+                return drawRectangles(1 + random.nextInt(64), 1 + random.nextInt(64), random, true);
+        }
+    }
+
+    /**
+     * Creates an image filled with the background color.
+     *
+     * @param width  is the width of the image.
+     * @param height is the height of the image.
+     * @return the image of the ARGB type, so the alpha channel is compared too.
+     */
+    private static BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, BACKGROUND);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Picks a silhouette color: a dark one, a half-transparent one, a transparent white
+     * or a color close to the background, which may be on either side of the threshold.
+     *
+     * @param random is the source of the colors.
+     * @return the ARGB color.
+     */
+    private static int pickColor(Random random) {
+        switch (random.nextInt(6)) {
+            case 0:
+                return 0xFF000000;
+            case 1:
+                return 0xFF000000 | random.nextInt(0x808080);
+            case 2:
+                return 0x80000000;
+            case 3:
+                return 0x00FFFFFF;
+            case 4:
+                return pickOnThreshold(random);
+            default:
+                return pickNearBackground(random);
+        }
+    }
+
+    /**
+     * Picks a color whose squared distance to the background is either the smallest one
+     * deemed not similar at one of the sweep thresholds or one less, so an off-by-one
+     * in any comparison with the threshold changes the silhouettes.
+     *
+     * @param random is the source of the colors.
+     * @return the ARGB color.
+     */
+    private static int pickOnThreshold(Random random) {
+        double threshold = SWEEP_THRESHOLDS[random.nextInt(SWEEP_THRESHOLDS.length)];
+        int squaredDistance = 0;
+        while (!Reference.isNotSimilar(squaredDistance, threshold)) {
+            squaredDistance++;
+        }
+        squaredDistance -= random.nextInt(2);
+
+        // Splits the squared distance into the squares of the four channel differences
+        while (true) {
+            int[] differences = new int[4];
+            int rest = squaredDistance;
+            for (int channel = 0; channel < 3; channel++) {
+                differences[channel] = random.nextInt((int) Math.sqrt(rest) + 1);
+                rest -= differences[channel] * differences[channel];
+            }
+            differences[3] = (int) Math.round(Math.sqrt(rest));
+            if (differences[3] * differences[3] == rest) {
+                int argb = 0;
+                for (int channel = 0; channel < 4; channel++) {
+                    argb |= (255 - differences[channel]) << (8 * channel);
+                }
+                return argb;
+            }
+        }
+    }
+
+    /**
+     * Picks a color differing from the background by a few units per channel,
+     * so it is as likely to be deemed background as not.
+     *
+     * @param random is the source of the colors.
+     * @return the ARGB color.
+     */
+    private static int pickNearBackground(Random random) {
+        int argb = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            argb |= (255 - random.nextInt(random.nextInt(4) == 0 ? 32 : 16)) << shift;
+        }
+        return argb;
+    }
+
+    /**
+     * Picks a color close to the background or right on the threshold.
+     *
+     * @param random is the source of the colors.
+     * @return the ARGB color.
+     */
+    private static int pickNearThreshold(Random random) {
+        return random.nextBoolean() ? pickOnThreshold(random) : pickNearBackground(random);
+    }
+
+    /**
+     * Draws random rectangles and ellipses, some of them out of the image, and random pixels.
+     *
+     * @param width         is the width of the image.
+     * @param height        is the height of the image.
+     * @param random        is the source of the shapes.
+     * @param nearThreshold says whether all colors shall be close to the background.
+     * @return the image.
+     */
+    private static BufferedImage drawRectangles(int width, int height, Random random, boolean nearThreshold) {
+        BufferedImage image = createImage(width, height);
+        Graphics2D graphics = image.createGraphics();
+        for (int i = random.nextInt(16); i > 0; i--) {
+            graphics.setColor(new Color(nearThreshold ? pickNearThreshold(random) : pickColor(random), true));
+            int x = random.nextInt(width + 8) - 4;
+            int y = random.nextInt(height + 8) - 4;
+            int w = 1 + random.nextInt(Math.max(1, width / 2));
+            int h = 1 + random.nextInt(Math.max(1, height / 2));
+            if (random.nextBoolean()) {
+                graphics.fillRect(x, y, w, h);
+            } else {
+                graphics.fillOval(x, y, w, h);
+            }
+        }
+        graphics.dispose();
+        addNoise(image, random.nextDouble() * 0.05, random, nearThreshold);
+        return image;
+    }
+
+    /**
+     * Draws solid rectangles and discs at least three pyramid blocks across, with at least
+     * two background pixels between their bounding boxes. Half of the shapes are put two or
+     * three pixels to the right of or below another one, so narrow gaps run through the
+     * blocks the pyramid mode would settle. On such an image the pyramid mode
+     * shall be exact: every pixel of a shape is next to a block center the shape covers, and
+     * every background gap crosses a block edge.
+     *
+     * @param width  is the width of the image.
+     * @param height is the height of the image.
+     * @param scale  is the block size of the pyramid mode.
+     * @param random is the source of the shapes.
+     * @return the image.
+     */
+    private static BufferedImage drawLargeShapes(int width, int height, int scale, Random random) {
+        BufferedImage image = createImage(width, height);
+        Graphics2D graphics = image.createGraphics();
+        List<Rectangle> shapes = new ArrayList<>();
+        for (int attempt = 0; attempt < 40; attempt++) {
+            int w = 3 * scale + random.nextInt(40);
+            int h = random.nextBoolean() ? w : 3 * scale + random.nextInt(40);
+            if (w > width || h > height) {
+                continue;
+            }
+            Rectangle shape = new Rectangle(random.nextInt(width - w + 1), random.nextInt(height - h + 1), w, h);
+            if (!shapes.isEmpty() && random.nextBoolean()) {
+                Rectangle neighbor = shapes.get(random.nextInt(shapes.size()));
+                int gap = 2 + random.nextInt(2);
+                if (random.nextBoolean()) {
+                    shape.setLocation(neighbor.x + neighbor.width + gap, neighbor.y + random.nextInt(neighbor.height));
+                } else {
+                    shape.setLocation(neighbor.x + random.nextInt(neighbor.width), neighbor.y + neighbor.height + gap);
+                }
+                if (shape.x + w > width || shape.y + h > height) {
+                    continue;
+                }
+            }
+            Rectangle apart = new Rectangle(shape.x - 2, shape.y - 2, w + 4, h + 4);
+            if (shapes.stream().anyMatch(apart::intersects)) {
+                continue;
+            }
+            shapes.add(shape);
+            graphics.setColor(new Color(LARGE_SHAPE_COLORS[random.nextInt(LARGE_SHAPE_COLORS.length)]));
+            if (w == h && random.nextBoolean()) {
+                graphics.fillOval(shape.x, shape.y, w, h);
+            } else {
+                graphics.fillRect(shape.x, shape.y, w, h);
+            }
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * Draws a square spiral one pixel thick with one pixel between its turns,
+     * which is a single silhouette as long as the image area allows.
+     *
+     * @param size   is the side of the image.
+     * @param random is the source of the color.
+     * @return the image.
+     */
+    private static BufferedImage drawSpiral(int size, Random random) {
+        BufferedImage image = createImage(size, size);
+        int color = random.nextBoolean() ? 0xFF000000 : pickColor(random);
+        int left = 0;
+        int top = 0;
+        int right = size - 1;
+        int bottom = size - 1;
+        while (left <= right && top <= bottom) {
+            for (int x = left; x <= right; x++) {
+                image.setRGB(x, top, color);
+            }
+            for (int y = top; y <= bottom; y++) {
+                image.setRGB(right, y, color);
+            }
+            if (bottom > top + 1) {
+                for (int x = left; x <= right; x++) {
+                    image.setRGB(x, bottom, color);
+                }
+            }
+            for (int y = top + 2; y <= bottom; y++) {
+                image.setRGB(left, y, color);
+            }
+            left += 2;
+            top += 2;
+            right -= 2;
+            bottom -= 2;
+            if (left <= right) {
+                image.setRGB(left - 1, top, color); // Joins the ring to the next one
+            }
+        }
+        addNoise(image, random.nextDouble() * 0.01, random, false);
+        return image;
+    }
+
+    /**
+     * Draws vertical teeth one pixel wide with one pixel between them. The teeth of
+     * a serpentine are joined at the top and the bottom in turn, the teeth of a comb
+     * are all joined at the bottom, so a search going row by row meets many parts
+     * that turn out to be one silhouette.
+     *
+     * @param width      is the width of the image.
+     * @param height     is the height of the image.
+     * @param serpentine says whether the teeth are joined in turn.
+     * @param random     is the source of the color.
+     * @return the image.
+     */
+    private static BufferedImage drawComb(int width, int height, boolean serpentine, Random random) {
+        BufferedImage image = createImage(width, height);
+        int color = random.nextBoolean() ? 0xFF000000 : pickColor(random);
+        int top = random.nextInt(2);
+        int bottom = height - 1 - random.nextInt(2);
+        for (int x = 0; x < width; x += 2) {
+            for (int y = top; y <= bottom; y++) {
+                image.setRGB(x, y, color);
+            }
+            if (x + 1 < width) {
+                boolean joinedAtTop = serpentine && (x / 2) % 2 == 1;
+                image.setRGB(x + 1, joinedAtTop ? top : bottom, color);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Draws a checkerboard. With the cells one pixel wide every cell is a silhouette of its own
+     * for the 4-connected search, while the 8-connected search joins all of them.
+     *
+     * @param width  is the width of the image.
+     * @param height is the height of the image.
+     * @param random is the source of the cell size and the colors.
+     * @return the image.
+     */
+    private static BufferedImage drawCheckerboard(int width, int height, Random random) {
+        BufferedImage image = createImage(width, height);
+        int cell = 1 + random.nextInt(3);
+        int offset = random.nextInt(2);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if ((x / cell + y / cell + offset) % 2 == 0) {
+                    image.setRGB(x, y, random.nextInt(20) == 0 ? pickColor(random) : 0xFF000000);
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Draws one blob covering almost the whole image with a few holes, so one search
+     * goes over nearly all pixels. Sometimes the blob covers the edges too, so its color
+     * becomes the background and the holes become the silhouettes.
+     *
+     * @param width  is the width of the image.
+     * @param height is the height of the image.
+     * @param random is the source of the holes.
+     * @return the image.
+     */
+    private static BufferedImage drawBlob(int width, int height, Random random) {
+        BufferedImage image = createImage(width, height);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.BLACK);
+        int border = random.nextInt(3) == 0 ? 0 : 2;
+        graphics.fillRect(border, border, width - 2 * border, height - 2 * border);
+        graphics.setColor(Color.WHITE);
+        for (int i = random.nextInt(10); i > 0; i--) {
+            graphics.fillOval(random.nextInt(width), random.nextInt(height), 1 + random.nextInt(12),
+                    1 + random.nextInt(12));
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * Draws lines along the edges of the image, pixels in its corners and rectangles
+     * partly out of it, so the silhouettes touch the one-pixel background edge of the buffers.
+     *
+     * @param width  is the width of the image.
+     * @param height is the height of the image.
+     * @param random is the source of the lines.
+     * @return the image.
+     */
+    private static BufferedImage drawEdges(int width, int height, Random random) {
+        BufferedImage image = createImage(width, height);
+        Graphics2D graphics = image.createGraphics();
+        for (int i = random.nextInt(6); i >= 0; i--) {
+            graphics.setColor(new Color(pickColor(random), true));
+            int length = 1 + random.nextInt(Math.max(1, Math.max(width, height) / 3));
+            switch (random.nextInt(4)) {
+                case 0:
+                    graphics.fillRect(random.nextInt(width), 0, length, 1 + random.nextInt(2));
+                    break;
+                case 1:
+                    graphics.fillRect(random.nextInt(width), height - 1 - random.nextInt(2), length, 2);
+                    break;
+                case 2:
+                    graphics.fillRect(0, random.nextInt(height), 1 + random.nextInt(2), length);
+                    break;
+                default:
+                    graphics.fillRect(width - 1 - random.nextInt(2), random.nextInt(height), 2, length);
+            }
+        }
+        graphics.dispose();
+        int[][] corners = {{0, 0}, {width - 1, 0}, {0, height - 1}, {width - 1, height - 1}};
+        for (int[] corner : corners) {
+            if (random.nextBoolean()) {
+                image.setRGB(corner[0], corner[1], pickColor(random));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Draws diagonal lines one pixel thick, which are whole for the 8-connected search
+     * and fall apart into single pixels for the 4-connected one.
+     *
+     * @param width  is the width of the image.
+     * @param height is the height of the image.
+     * @param random is the source of the lines.
+     * @return the image.
+     */
+    private static BufferedImage drawDiagonals(int width, int height, Random random) {
+        BufferedImage image = createImage(width, height);
+        for (int i = random.nextInt(8); i >= 0; i--) {
+            int color = pickColor(random);
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            int stepX = random.nextBoolean() ? 1 : -1;
+            for (int length = random.nextInt(2 * Math.max(width, height)); length > 0; length--) {
+                if (x < 0 || x >= width || y < 0 || y >= height) {
+                    break;
+                }
+                image.setRGB(x, y, color);
+                x += stepX;
+                y++;
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Draws random pixels only, mostly for the images one pixel wide or high.
+     *
+     * @param width  is the width of the image.
+     * @param height is the height of the image.
+     * @param random is the source of the pixels.
+     * @return the image.
+     */
+    private static BufferedImage drawNoise(int width, int height, Random random) {
+        BufferedImage image = createImage(width, height);
+        addNoise(image, random.nextDouble() * 0.6, random, false);
+        return image;
+    }
+
+    /**
+     * Replaces a share of the pixels with silhouette colors.
+     *
+     * @param image         is the image.
+     * @param share         is the share of the pixels replaced, from 0 to 1.
+     * @param random        is the source of the pixels.
+     * @param nearThreshold says whether all colors shall be close to the background.
+     */
+    private static void addNoise(BufferedImage image, double share, Random random, boolean nearThreshold) {
+        long pixels = (long) (share * image.getWidth() * image.getHeight());
+        for (long i = 0; i < pixels; i++) {
+            image.setRGB(random.nextInt(image.getWidth()), random.nextInt(image.getHeight()),
+                    nearThreshold ? pickNearThreshold(random) : pickColor(random));
+        }
+    }
+
+    /**
+     * Copies the image.
+     *
+     * @param image is the image.
+     * @return the copy of the ARGB type.
+     */
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                copy.setRGB(x, y, image.getRGB(x, y));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * The silhouettes found by the reference search: every pixel is classified with the
+     * original floating point formula and the silhouettes are collected one by one with
+     * a breadth-first search, numbered in the order the rows are scanned.
+     */
+    private static class Reference {
+
+        /**
+         * Width and height of the image.
+         */
+        final int width;
+        final int height;
+
+        /**
+         * The background color.
+         */
+        final int bgArgb;
+
+        /**
+         * The silhouette number of each pixel row after row, from 1, or zero for the background.
+         */
+        final int[] labels;
+
+        /**
+         * The features of each silhouette, the index is the silhouette number, the cell 0 is unused.
+         */
+        int[] sizes = new int[1];
+        int[] minX = new int[1];
+        int[] minY = new int[1];
+        int[] maxX = new int[1];
+        int[] maxY = new int[1];
+        int[] perimeters = new int[1];
+
+        /**
+         * Finds the silhouettes on the image.
+         *
+         * @param image               is the image.
+         * @param bgArgb              is the background color.
+         * @param similarityThreshold is the proportion of similarity at which colors are deemed equivalent.
+         * @param connectivity        is the number of neighbors a pixel is connected to, 4 or 8.
+         */
+        Reference(BufferedImage image, int bgArgb, double similarityThreshold, int connectivity) {
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+            this.bgArgb = bgArgb;
+            this.labels = new int[width * height];
+
+            boolean[] foreground = new boolean[width * height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    foreground[y * width + x] = isNotSimilar(image.getRGB(x, y), bgArgb, similarityThreshold);
+                }
+            }
+
+            int[] queue = new int[width * height];
+            int numOfSilhouettes = 0;
+            for (int start = 0; start < foreground.length; start++) {
+                if (!foreground[start] || labels[start] != 0) {
+                    continue;
+                }
+                numOfSilhouettes++;
+                grow(numOfSilhouettes);
+                labels[start] = numOfSilhouettes;
+                int size = 0;
+                queue[size++] = start;
+                for (int next = 0; next < size; next++) {
+                    int x = queue[next] % width;
+                    int y = queue[next] / width;
+                    addPixel(numOfSilhouettes, x, y, foreground);
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dx = -1; dx <= 1; dx++) {
+                            boolean side = dx == 0 || dy == 0;
+                            if ((dx == 0 && dy == 0) || (!side && connectivity == ForegroundMask.FOUR_CONNECTED)) {
+                                continue;
+                            }
+                            int neighborX = x + dx;
+                            int neighborY = y + dy;
+                            if (neighborX < 0 || neighborX >= width || neighborY < 0 || neighborY >= height) {
+                                continue;
+                            }
+                            int neighbor = neighborY * width + neighborX;
+                            if (foreground[neighbor] && labels[neighbor] == 0) {
+                                labels[neighbor] = numOfSilhouettes;
+                                queue[size++] = neighbor;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Compares the colors the way the very first version of the program did.
+         *
+         * @param argb                is the color of the pixel.
+         * @param bgArgb              is the background color.
+         * @param similarityThreshold is the proportion of similarity at which colors are deemed equivalent.
+         * @return true if the pixel is a silhouette one.
+         */
+        private static boolean isNotSimilar(int argb, int bgArgb, double similarityThreshold) {
+            Color color = new Color(argb, true);
+            Color bgColor = new Color(bgArgb, true);
+            return isNotSimilar(Math.pow(bgColor.getRed() - color.getRed(), 2)
+                    + Math.pow(bgColor.getGreen() - color.getGreen(), 2)
+                    + Math.pow(bgColor.getBlue() - color.getBlue(), 2)
+                    + Math.pow(bgColor.getAlpha() - color.getAlpha(), 2), similarityThreshold);
+        }
+
+        /**
+         * Compares the colors at the squared distance the way the very first version of the program did.
+         *
+         * @param squaredDistance     is the sum of squared differences of the four channels.
+         * @param similarityThreshold is the proportion of similarity at which colors are deemed equivalent.
+         * @return true if the colors are not similar.
+         */
+        static boolean isNotSimilar(double squaredDistance, double similarityThreshold) {
+            double colorDifference = Math.pow(squaredDistance, 0.5);
+            double colorEquivalenceCoefficient = (Assignment12Part1.COLORS_ARE_TOTALLY_EQUIVALENT - colorDifference)
+                    / Assignment12Part1.COLORS_ARE_TOTALLY_EQUIVALENT;
+            return !(colorEquivalenceCoefficient > similarityThreshold);
+        }
+
+        /**
+         * Makes room for the features of one more silhouette.
+         *
+         * @param number is the number of the new silhouette.
+         */
+        private void grow(int number) {
+            if (number == sizes.length) {
+                int length = sizes.length * 2;
+                sizes = Arrays.copyOf(sizes, length);
+                minX = Arrays.copyOf(minX, length);
+                minY = Arrays.copyOf(minY, length);
+                maxX = Arrays.copyOf(maxX, length);
+                maxY = Arrays.copyOf(maxY, length);
+                perimeters = Arrays.copyOf(perimeters, length);
+            }
+            minX[number] = Integer.MAX_VALUE;
+            minY[number] = Integer.MAX_VALUE;
+            maxX[number] = -1;
+            maxY[number] = -1;
+        }
+
+        /**
+         * Adds the pixel to the features of the silhouette. The pixel is on the perimeter
+         * if a side neighbor is a background pixel or out of the image.
+         *
+         * @param number     is the number of the silhouette.
+         * @param x          is the x coordinate of the pixel.
+         * @param y          is the y coordinate of the pixel.
+         * @param foreground says which pixels are silhouette ones.
+         */
+        private void addPixel(int number, int x, int y, boolean[] foreground) {
+            sizes[number]++;
+            minX[number] = Math.min(minX[number], x);
+            minY[number] = Math.min(minY[number], y);
+            maxX[number] = Math.max(maxX[number], x);
+            maxY[number] = Math.max(maxY[number], y);
+            if (x == 0 || !foreground[y * width + x - 1] || x == width - 1 || !foreground[y * width + x + 1]
+                    || y == 0 || !foreground[(y - 1) * width + x] || y == height - 1
+                    || !foreground[(y + 1) * width + x]) {
+                perimeters[number]++;
+            }
+        }
+
+        /**
+         * @return the numbers of all silhouettes in order.
+         */
+        int[] findAll() {
+            return findLargerThan(-1);
+        }
+
+        /**
+         * Finds the silhouettes larger than the minimum size.
+         *
+         * @param minimumSize is the minimum size.
+         * @return their numbers in order.
+         */
+        int[] findLargerThan(int minimumSize) {
+            ArrayList<Integer> numbers = new ArrayList<>();
+            for (int number = 1; number < sizes.length && sizes[number] > 0; number++) {
+                if (sizes[number] > minimumSize) {
+                    numbers.add(number);
+                }
+            }
+            return numbers.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * Counts the silhouettes larger than the minimum size.
+         *
+         * @param minimumSize is the minimum size.
+         * @return the number of silhouettes.
+         */
+        int countLargerThan(int minimumSize) {
+            return findLargerThan(minimumSize).length;
+        }
+
+        /**
+         * Makes the text the features of the silhouette are compared as.
+         *
+         * @param number is the number of the silhouette.
+         * @return the features as text.
+         */
+        String describe(int number) {
+            return SelfCheckTest.describe(sizes[number], minX[number], minY[number], maxX[number], maxY[number],
+                    perimeters[number]);
+        }
+    }
+}
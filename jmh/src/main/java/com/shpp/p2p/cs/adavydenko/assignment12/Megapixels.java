@@ -0,0 +1,29 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the megapixels processed by a benchmark, so JMH reports the throughput
+ * in megapixels per second next to the operations per second.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Megapixels {
+
+    /**
+     * The megapixels processed in the current iteration.
+     */
+    public double megapixels;
+
+    /**
+     * Starts counting the iteration anew.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+        megapixels = 0;
+    }
+}
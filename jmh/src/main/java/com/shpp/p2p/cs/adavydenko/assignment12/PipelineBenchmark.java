@@ -0,0 +1,181 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each stage of the silhouettes search and the whole search on synthetic images.
+ * <p>
+ * Each stage runs on the input the previous stage gives, prepared once per trial by
+ * SyntheticImageState, so a change to one stage shows up in its own benchmark. The "megapixels"
+ * counter gives the throughput in megapixels per second. Run with "-prof gc" to see
+ * the bytes allocated per operation (gc.alloc.rate.norm):
+ * <p>
+ * java -jar jmh/target/benchmarks.jar PipelineBenchmark -prof gc -p size=1024
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PipelineBenchmark {
+
+    /**
+     * The labeling engine and the buffers of the labeling stage.
+     */
+    @State(Scope.Thread)
+    public static class LabelingState {
+
+        /**
+         * The name of the engine as the "--engine" argument takes it.
+         */
+        @Param({"dfs", "bfs", "scanline"})
+        public String engine;
+
+        /**
+         * The workspace whose engine and label map are used.
+         */
+        DetectorWorkspace workspace;
+
+        /**
+         * Creates the engine.
+         */
+        @Setup
+        public void createEngine() {
+            workspace = new SilhouetteDetector(new DetectorSettings().setEngine(engine)).newWorkspace();
+        }
+    }
+
+    /**
+     * The detector and the workspace it reuses from image to image.
+     */
+    @State(Scope.Thread)
+    public static class WorkspaceState {
+
+        /**
+         * The number of threads searching for silhouettes on one image.
+         */
+        @Param({"1", "4"})
+        public int parallelism;
+
+        /**
+         * The detector of the parallelism.
+         */
+        SilhouetteDetector detector;
+
+        /**
+         * The workspace kept between the runs.
+         */
+        DetectorWorkspace workspace;
+
+        /**
+         * Creates the detector and its workspace.
+         */
+        @Setup
+        public void createWorkspace() {
+            detector = new SilhouetteDetector(new DetectorSettings().setParallelism(parallelism));
+            workspace = detector.newWorkspace();
+        }
+    }
+
+    /**
+     * The mask the classification benchmark writes to, kept between the runs.
+     */
+    @State(Scope.Thread)
+    public static class MaskState {
+
+        /**
+         * The mask.
+         */
+        ForegroundMask mask = new ForegroundMask(0, 0);
+    }
+
+    /**
+     * Defines the background color from the edges of the pixel buffer.
+     *
+     * @param image      is the image.
+     * @param megapixels counts the pixels processed.
+     * @return the background color.
+     */
+    @Benchmark
+    public Color background(SyntheticImageState image, Megapixels megapixels) {
+        BackgroundEstimator estimator = new BackgroundEstimator();
+        estimator.inspectBufferEdges(image.buffer);
+        megapixels.megapixels += image.getMegapixels();
+        return estimator.getBackgroundColor();
+    }
+
+    /**
+     * Compares every pixel with the background color.
+     *
+     * @param image      is the image.
+     * @param state      keeps the mask.
+     * @param megapixels counts the pixels processed.
+     * @return the foreground mask.
+     */
+    @Benchmark
+    public ForegroundMask classify(SyntheticImageState image, MaskState state, Megapixels megapixels) {
+        image.classifier.classify(image.buffer, state.mask);
+        megapixels.megapixels += image.getMegapixels();
+        return state.mask;
+    }
+
+    /**
+     * Labels the silhouettes of the foreground mask with the engine.
+     *
+     * @param image      is the image.
+     * @param labeling   is the engine with its label map.
+     * @param megapixels counts the pixels processed.
+     * @return the silhouettes.
+     */
+    @Benchmark
+    public ArrayList<Silhouette> label(SyntheticImageState image, LabelingState labeling, Megapixels megapixels) {
+        LabelMap labelMap = labeling.workspace.labelMap;
+        labelMap.reset(image.size, image.size);
+        megapixels.megapixels += image.getMegapixels();
+        return labeling.workspace.engine.findSilhouettes(image.mask, labelMap);
+    }
+
+    /**
+     * Runs the whole search on the decoded image the way the program does for a single image:
+     * copying the pixels, defining the background, classifying and labeling.
+     *
+     * @param image      is the image.
+     * @param megapixels counts the pixels processed.
+     * @return the result.
+     */
+    @Benchmark
+    public DetectionResult endToEnd(SyntheticImageState image, Megapixels megapixels) {
+        megapixels.megapixels += image.getMegapixels();
+        return new SilhouetteDetector(new DetectorSettings()).detect(image.image);
+    }
+
+    /**
+     * Runs the whole search on the decoded image with a workspace kept between the images,
+     * the way a service inspecting many images of the same size does. The bytes allocated
+     * per operation are checked by AllocationTest.
+     *
+     * @param image      is the image.
+     * @param state      keeps the detector and its workspace.
+     * @param megapixels counts the pixels processed.
+     * @return the result.
+     */
+    @Benchmark
+    public DetectionResult reusedWorkspace(SyntheticImageState image, WorkspaceState state, Megapixels megapixels) {
+        megapixels.megapixels += image.getMegapixels();
+        return state.detector.detect(image.image, state.workspace);
+    }
+}
@@ -0,0 +1,83 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * The synthetic image the benchmarks run on, drawn once per trial with SyntheticImages,
+ * together with the inputs of each stage prepared from it: the pixel buffer with the
+ * edges filled, the background color and its classifier, and the foreground mask.
+ * <p>
+ * The parameters can be narrowed on the command line, e.g. "-p size=1024 -p noise=0".
+ */
+@State(Scope.Benchmark)
+public class SyntheticImageState {
+
+    /**
+     * The side of the square image.
+     */
+    @Param({"256", "1024", "4096", "8192"})
+    public int size;
+
+    /**
+     * The number of silhouettes drawn (they can overlap).
+     */
+    @Param({"16", "1024"})
+    public int silhouettes;
+
+    /**
+     * The largest width or height of a silhouette.
+     */
+    @Param({"16", "256"})
+    public int silhouetteSize;
+
+    /**
+     * The share of pixels replaced with random colors.
+     */
+    @Param({"0", "0.01"})
+    public double noise;
+
+    /**
+     * The image and its pixels copied to a buffer with the edges filled with the background color.
+     */
+    BufferedImage image;
+    PixelBuffer buffer;
+
+    /**
+     * The background color of the image and the classifier comparing pixels with it.
+     */
+    Color bgColor;
+    BackgroundClassifier classifier;
+
+    /**
+     * The pixels of non-background color, the input of the labeling.
+     */
+    ForegroundMask mask;
+
+    /**
+     * Draws the image and prepares the inputs of the stages.
+     */
+    @Setup
+    public void drawImage() {
+        image = SyntheticImages.generate(size, size, silhouettes, silhouetteSize, noise, size);
+        BackgroundEstimator estimator = new BackgroundEstimator();
+        estimator.inspectImageEdges(image);
+        bgColor = estimator.getBackgroundColor();
+        buffer = PixelBuffer.fromImage(image);
+        buffer.fillEdges(bgColor.getRGB());
+        classifier = new BackgroundClassifier(bgColor.getRGB(), Assignment12Part1.COLORS_SIMILARITY_THRESHOLD);
+        mask = classifier.classify(buffer);
+    }
+
+    /**
+     * @return the number of megapixels of the image.
+     */
+    double getMegapixels() {
+        return (double) size * size / 1e6;
+    }
+}
@@ -0,0 +1,69 @@
+package com.shpp.p2p.cs.adavydenko.assignment12;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a workspace kept between images of the same size makes the search allocate
+ * almost nothing per image, with one thread and with several threads searching each image.
+ * <p>
+ * The check runs the reusedWorkspace benchmark in a forked JVM with the GC profiler of JMH,
+ * which counts the bytes allocated by all threads of the JVM, the workers of the parallel
+ * labeler included, and divides them by the number of images inspected (gc.alloc.rate.norm).
+ * The images are 1024 x 1024 pixels with a few silhouettes and no noise, so a single array
+ * of the size of the image (4 MB) allocated per image is far above the limit, while the
+ * silhouettes and the result the search returns fit well within it.
+ */
+public class AllocationTest {
+
+    /**
+     * The most bytes an image may allocate once the workspace has grown to its size.
+     */
+    private static final double MAX_BYTES_PER_IMAGE = 64 * 1024;
+
+    /**
+     * The name of the secondary result of the GC profiler with the bytes allocated per operation.
+     */
+    private static final String ALLOCATION_RESULT = "gc.alloc.rate.norm";
+
+    @Test
+    public void reusedWorkspaceAllocatesAlmostNothing() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PipelineBenchmark.class.getName() + ".reusedWorkspace$")
+                .param("size", "1024")
+                .param("silhouettes", "16")
+                .param("silhouetteSize", "256")
+                .param("noise", "0")
+                .param("parallelism", "1", "4")
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.seconds(1))
+                .forks(1)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        assertEquals(2, results.size(), "Expected a run at parallelism 1 and 4");
+
+        for (RunResult result : results) {
+            String parallelism = result.getParams().getParam("parallelism");
+            Result<?> allocation = result.getSecondaryResults().get(ALLOCATION_RESULT);
+            assertTrue(allocation != null, "The GC profiler gave no " + ALLOCATION_RESULT);
+            assertTrue(allocation.getScore() < MAX_BYTES_PER_IMAGE, String.format(
+                    "At parallelism %s an image allocates %.0f bytes, at most %.0f expected",
+                    parallelism, allocation.getScore(), MAX_BYTES_PER_IMAGE));
+        }
+    }
+}